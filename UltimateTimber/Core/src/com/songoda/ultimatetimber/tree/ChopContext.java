@@ -0,0 +1,82 @@
+package com.songoda.ultimatetimber.tree;
+
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Everything about the player and their tool that matters while a tree is being felled, looked up once when it is chopped
+ * The same values are used for every block of the tree, so permissions and enchantments aren't checked per block
+ */
+public class ChopContext {
+
+    private final Player player;
+    private final ItemStack tool;
+    private final boolean hasSilkTouch;
+    private final boolean hasBonusLoot;
+    private final double doubleDropChance;
+    private final boolean creative;
+
+    public ChopContext(Player player, ItemStack tool, boolean hasSilkTouch, boolean hasBonusLoot, double doubleDropChance, boolean creative) {
+        this.player = player;
+        this.tool = tool;
+        this.hasSilkTouch = hasSilkTouch;
+        this.hasBonusLoot = hasBonusLoot;
+        this.doubleDropChance = doubleDropChance;
+        this.creative = creative;
+    }
+
+    /**
+     * Gets the player who chopped the tree
+     *
+     * @return The player who chopped the tree
+     */
+    public Player getPlayer() {
+        return this.player;
+    }
+
+    /**
+     * Gets a copy of the tool the tree was chopped with, as it was when the tree was chopped
+     *
+     * @return The tool, or null if the player had nothing in their hand
+     */
+    public ItemStack getTool() {
+        return this.tool == null ? null : this.tool.clone();
+    }
+
+    /**
+     * Checks if the tool has silk touch
+     *
+     * @return True if the tool has silk touch, otherwise false
+     */
+    public boolean hasSilkTouch() {
+        return this.hasSilkTouch;
+    }
+
+    /**
+     * Checks if the player gets the bonus loot multiplier
+     *
+     * @return True if the player has the ultimatetimber.bonusloot permission, otherwise false
+     */
+    public boolean hasBonusLoot() {
+        return this.hasBonusLoot;
+    }
+
+    /**
+     * Gets the chance of each drop being doubled by hooks such as mcMMO
+     *
+     * @return The double drop chance, between 0 and 1
+     */
+    public double getDoubleDropChance() {
+        return this.doubleDropChance;
+    }
+
+    /**
+     * Checks if the player was in creative mode
+     *
+     * @return True if the player was in creative mode, otherwise false
+     */
+    public boolean isCreative() {
+        return this.creative;
+    }
+
+}
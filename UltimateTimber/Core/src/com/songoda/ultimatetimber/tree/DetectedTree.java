@@ -6,10 +6,18 @@ public class DetectedTree {
 
     private TreeDefinition treeDefinition;
     private TreeBlockSet<Block> detectedTreeBlocks;
+    private boolean truncated;
+    private int unexploredBlocks;
 
     public DetectedTree(TreeDefinition treeDefinition, TreeBlockSet<Block> detectedTreeBlocks) {
+        this(treeDefinition, detectedTreeBlocks, false, 0);
+    }
+
+    public DetectedTree(TreeDefinition treeDefinition, TreeBlockSet<Block> detectedTreeBlocks, boolean truncated, int unexploredBlocks) {
         this.treeDefinition = treeDefinition;
         this.detectedTreeBlocks = detectedTreeBlocks;
+        this.truncated = truncated;
+        this.unexploredBlocks = unexploredBlocks;
     }
 
     /**
@@ -30,4 +38,23 @@ public class DetectedTree {
         return this.detectedTreeBlocks;
     }
 
+    /**
+     * Checks if the detection stopped before the entire tree was found
+     * This happens when the log limit, block budget or time budget of the detection is reached
+     *
+     * @return True if only part of the tree was detected, otherwise false
+     */
+    public boolean isTruncated() {
+        return this.truncated;
+    }
+
+    /**
+     * Gets the number of blocks that were queued to be searched but skipped because the detection was truncated
+     *
+     * @return The number of unexplored blocks
+     */
+    public int getUnexploredBlocks() {
+        return this.unexploredBlocks;
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.songoda.ultimatetimber.tree;
 
+import com.songoda.ultimatetimber.utils.BlockKey;
 import org.bukkit.Location;
 import org.bukkit.entity.FallingBlock;
 
@@ -7,10 +8,16 @@ public class FallingTreeBlock implements ITreeBlock<FallingBlock> {
 
     private final FallingBlock fallingBlock;
     private final TreeBlockType treeBlockType;
+    private final long originKey;
 
     public FallingTreeBlock(FallingBlock fallingBlock, TreeBlockType treeBlockType) {
+        this(fallingBlock, treeBlockType, BlockKey.pack(fallingBlock.getLocation().getBlockX(), fallingBlock.getLocation().getBlockY(), fallingBlock.getLocation().getBlockZ()));
+    }
+
+    public FallingTreeBlock(FallingBlock fallingBlock, TreeBlockType treeBlockType, long originKey) {
         this.fallingBlock = fallingBlock;
         this.treeBlockType = treeBlockType;
+        this.originKey = originKey;
     }
 
     @Override
@@ -28,4 +35,15 @@ public class FallingTreeBlock implements ITreeBlock<FallingBlock> {
         return this.treeBlockType;
     }
 
+    /**
+     * Gets the packed coordinates of the block this falling block was spawned from
+     * Falling blocks move, so they are always indexed by where they started
+     *
+     * @return The packed block key of the original block
+     */
+    @Override
+    public long getKey() {
+        return this.originKey;
+    }
+
 }
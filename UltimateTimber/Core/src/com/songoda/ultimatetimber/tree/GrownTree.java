@@ -0,0 +1,106 @@
+package com.songoda.ultimatetimber.tree;
+
+import com.songoda.ultimatetimber.utils.BlockKey;
+
+import java.util.Arrays;
+
+/**
+ * The shape of a tree that grew from a sapling, stored as packed block keys
+ * Logs are sorted lowest y first so the base of the tree always comes first
+ */
+public class GrownTree {
+
+    private final long[] logs;
+    private final long[] leaves;
+
+    public GrownTree(long[] logs, long[] leaves) {
+        this.logs = logs;
+        this.leaves = leaves;
+
+        // Sort by y, trees are small and mostly grown bottom up so an insertion sort is plenty
+        for (int i = 1; i < logs.length; i++) {
+            long key = logs[i];
+            int y = BlockKey.getY(key);
+            int j = i - 1;
+            for (; j >= 0 && BlockKey.getY(logs[j]) > y; j--)
+                logs[j + 1] = logs[j];
+            logs[j + 1] = key;
+        }
+    }
+
+    /**
+     * Gets the keys of the logs of this tree, lowest y first
+     * The returned array is shared and must not be modified
+     *
+     * @return The packed keys of the logs
+     */
+    public long[] getLogs() {
+        return this.logs;
+    }
+
+    /**
+     * Gets the keys of the leaves of this tree
+     * The returned array is shared and must not be modified
+     *
+     * @return The packed keys of the leaves
+     */
+    public long[] getLeaves() {
+        return this.leaves;
+    }
+
+    /**
+     * Gets the key of the lowest log of this tree
+     *
+     * @return The packed key of the base log
+     */
+    public long getBase() {
+        return this.logs[0];
+    }
+
+    /**
+     * Writes this tree to the end of an array
+     * The format is the number of logs, the number of leaves, then the keys of the logs and leaves
+     *
+     * @param data   The array to write to
+     * @param offset The index to start writing at
+     * @return The index after the last written value
+     */
+    public int write(long[] data, int offset) {
+        data[offset++] = this.logs.length;
+        data[offset++] = this.leaves.length;
+        System.arraycopy(this.logs, 0, data, offset, this.logs.length);
+        offset += this.logs.length;
+        System.arraycopy(this.leaves, 0, data, offset, this.leaves.length);
+        return offset + this.leaves.length;
+    }
+
+    /**
+     * Gets the number of values this tree takes up when written to an array
+     *
+     * @return The number of values written by {@link #write(long[], int)}
+     */
+    public int getWrittenSize() {
+        return 2 + this.logs.length + this.leaves.length;
+    }
+
+    /**
+     * Reads a tree written by {@link #write(long[], int)}
+     *
+     * @param data   The array to read from
+     * @param offset The index to start reading at
+     * @return The GrownTree, or null if the data is malformed
+     */
+    public static GrownTree read(long[] data, int offset) {
+        if (offset + 2 > data.length)
+            return null;
+
+        int logCount = (int) data[offset], leafCount = (int) data[offset + 1];
+        if (logCount <= 0 || leafCount < 0 || offset + 2L + logCount + leafCount > data.length)
+            return null;
+
+        long[] logs = Arrays.copyOfRange(data, offset + 2, offset + 2 + logCount);
+        long[] leaves = Arrays.copyOfRange(data, offset + 2 + logCount, offset + 2 + logCount + leafCount);
+        return new GrownTree(logs, leaves);
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.songoda.ultimatetimber.tree;
 
+import com.songoda.ultimatetimber.utils.BlockKey;
 import org.bukkit.Location;
 
 public interface ITreeBlock<BlockType> {
@@ -25,4 +26,15 @@ public interface ITreeBlock<BlockType> {
      */
     TreeBlockType getTreeBlockType();
 
+    /**
+     * Gets the packed coordinates this TreeBlock is indexed by in a TreeBlockSet
+     * This must not change while the TreeBlock is in a TreeBlockSet
+     *
+     * @return The packed block key of this TreeBlock
+     */
+    default long getKey() {
+        Location location = this.getLocation();
+        return BlockKey.pack(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
 }
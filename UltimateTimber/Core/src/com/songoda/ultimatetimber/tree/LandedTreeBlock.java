@@ -0,0 +1,49 @@
+package com.songoda.ultimatetimber.tree;
+
+import org.bukkit.Location;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * A tree block that was animated without an entity
+ * Remembers the block it used to be, and where it landed
+ */
+public class LandedTreeBlock implements ITreeBlock<BlockData> {
+
+    private final BlockData blockData;
+    private final Location location;
+    private final TreeBlockType treeBlockType;
+    private final long originKey;
+
+    public LandedTreeBlock(BlockData blockData, Location location, TreeBlockType treeBlockType, long originKey) {
+        this.blockData = blockData;
+        this.location = location;
+        this.treeBlockType = treeBlockType;
+        this.originKey = originKey;
+    }
+
+    @Override
+    public BlockData getBlock() {
+        return this.blockData;
+    }
+
+    @Override
+    public Location getLocation() {
+        return this.location.clone();
+    }
+
+    @Override
+    public TreeBlockType getTreeBlockType() {
+        return this.treeBlockType;
+    }
+
+    /**
+     * Gets the packed coordinates of the block this tree block was animated from
+     *
+     * @return The packed block key of the original block
+     */
+    @Override
+    public long getKey() {
+        return this.originKey;
+    }
+
+}
@@ -0,0 +1,197 @@
+package com.songoda.ultimatetimber.tree;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the loot of many tree blocks so it can be handed out at once
+ * Similar items are merged into a single stack, which may go over the max stack size
+ * Loot tables can also be added as a number of rolls that haven't been rolled yet, so they can be sampled all at once
+ */
+public class LootBatch {
+
+    private final List<ItemStack> items;
+    private final Map<String, Integer> commands;
+    private final List<PendingRolls> pendingRolls;
+    private World world;
+    private double x, y, z;
+    private int locations;
+
+    public LootBatch() {
+        this.items = new ArrayList<>();
+        this.commands = new LinkedHashMap<>();
+        this.pendingRolls = new ArrayList<>();
+    }
+
+    /**
+     * Adds an item to this batch, merging it with a similar item if there is one
+     *
+     * @param item The item to add, it is copied and not modified
+     */
+    public void addItem(ItemStack item) {
+        for (ItemStack existing : this.items) {
+            if (existing.isSimilar(item)) {
+                existing.setAmount(existing.getAmount() + item.getAmount());
+                return;
+            }
+        }
+        this.items.add(item.clone());
+    }
+
+    /**
+     * Adds a command to run when this batch is handed out, identical commands are counted instead of added again
+     *
+     * @param command The command, with any placeholders other than %count% already replaced
+     */
+    public void addCommand(String command) {
+        this.commands.merge(command, 1, Integer::sum);
+    }
+
+    /**
+     * Adds rolls of a loot table to this batch without rolling them yet
+     *
+     * @param lootTable      The LootTable to roll
+     * @param treeDefinition The TreeDefinition the loot table belongs to
+     * @param rolls          The number of times to roll the loot table
+     */
+    public void addRolls(LootTable lootTable, TreeDefinition treeDefinition, int rolls) {
+        for (PendingRolls pending : this.pendingRolls) {
+            if (pending.lootTable == lootTable) {
+                pending.rolls += rolls;
+                return;
+            }
+        }
+        this.pendingRolls.add(new PendingRolls(lootTable, treeDefinition, rolls));
+    }
+
+    /**
+     * Gets the loot tables of this batch that still have to be rolled
+     *
+     * @return The pending rolls of this batch
+     */
+    public List<PendingRolls> getPendingRolls() {
+        return this.pendingRolls;
+    }
+
+    /**
+     * Adds the location of a tree block that loot was rolled for
+     *
+     * @param location The location of the tree block
+     */
+    public void addLocation(Location location) {
+        if (this.locations == 0)
+            this.world = location.getWorld();
+        this.x += location.getX();
+        this.y += location.getY();
+        this.z += location.getZ();
+        this.locations++;
+    }
+
+    /**
+     * Gets the merged items of this batch
+     *
+     * @return The items of this batch
+     */
+    public List<ItemStack> getItems() {
+        return this.items;
+    }
+
+    /**
+     * Gets the commands of this batch in the order they were first added
+     *
+     * @return The commands of this batch, with the number of times each one was added
+     */
+    public Map<String, Integer> getCommands() {
+        return this.commands;
+    }
+
+    /**
+     * Gets the average location of all tree blocks added to this batch
+     *
+     * @return The center of the added locations, or null if none were added
+     */
+    public Location getLocation() {
+        if (this.locations == 0)
+            return null;
+        return new Location(this.world, this.x / this.locations, this.y / this.locations, this.z / this.locations);
+    }
+
+    /**
+     * Checks if this batch has nothing to hand out
+     *
+     * @return True if there are no items, commands or pending rolls in this batch, otherwise false
+     */
+    public boolean isEmpty() {
+        return this.items.isEmpty() && this.commands.isEmpty() && this.pendingRolls.isEmpty();
+    }
+
+    /**
+     * Removes everything from this batch
+     */
+    public void clear() {
+        this.clearItems();
+        this.commands.clear();
+    }
+
+    /**
+     * Removes everything but the commands from this batch
+     */
+    public void clearItems() {
+        this.items.clear();
+        this.pendingRolls.clear();
+        this.world = null;
+        this.x = this.y = this.z = 0;
+        this.locations = 0;
+    }
+
+    /**
+     * A loot table that has to be rolled a number of times
+     */
+    public static class PendingRolls {
+
+        private final LootTable lootTable;
+        private final TreeDefinition treeDefinition;
+        private int rolls;
+
+        private PendingRolls(LootTable lootTable, TreeDefinition treeDefinition, int rolls) {
+            this.lootTable = lootTable;
+            this.treeDefinition = treeDefinition;
+            this.rolls = rolls;
+        }
+
+        /**
+         * Gets the loot table to roll
+         *
+         * @return The LootTable
+         */
+        public LootTable getLootTable() {
+            return this.lootTable;
+        }
+
+        /**
+         * Gets the TreeDefinition the loot table belongs to
+         *
+         * @return The TreeDefinition
+         */
+        public TreeDefinition getTreeDefinition() {
+            return this.treeDefinition;
+        }
+
+        /**
+         * Gets the number of times the loot table has to be rolled
+         *
+         * @return The number of rolls
+         */
+        public int getRolls() {
+            return this.rolls;
+        }
+
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.songoda.ultimatetimber.tree;
+
+import org.bukkit.Location;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Somewhere the items looted from a tree are delivered to instead of being dropped on the ground
+ * Other plugins can register their own sinks with the LootSinkManager and select them with the loot-sink setting
+ */
+public interface LootSink {
+
+    /**
+     * Delivers the items looted from a tree
+     * Called on the main thread, the items have already been merged and may be bigger than their max stack size
+     *
+     * @param chopContext The ChopContext of the player who chopped the tree
+     * @param location    The center of the tree blocks the items were looted from
+     * @param items       The items to deliver
+     * @return The items that could not be delivered, these are dropped at the location instead
+     */
+    Collection<ItemStack> deliver(ChopContext chopContext, Location location, List<ItemStack> items);
+
+}
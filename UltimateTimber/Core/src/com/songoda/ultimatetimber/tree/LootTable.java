@@ -0,0 +1,94 @@
+package com.songoda.ultimatetimber.tree;
+
+import com.songoda.ultimatetimber.utils.CommandTemplate;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The loot entries that can be rolled for one kind of tree block, compiled into flat arrays
+ * Chances are converted to thresholds between 0 and 1 up front, so rolling is a single comparison per entry
+ */
+public class LootTable {
+
+    private static final LootTable EMPTY = new LootTable(new ArrayList<>(), 1);
+
+    private final double[] thresholds;
+    private final ItemStack[] items;
+    private final CommandTemplate[] commands;
+
+    /**
+     * Compiles the given loot entries into a table
+     *
+     * @param loot             The loot entries, null entries are skipped
+     * @param chanceMultiplier The multiplier to apply to the chance of every entry
+     */
+    public LootTable(Collection<TreeLoot> loot, double chanceMultiplier) {
+        List<TreeLoot> entries = new ArrayList<>(loot.size());
+        for (TreeLoot treeLoot : loot)
+            if (treeLoot != null && (treeLoot.hasItem() || treeLoot.hasCommand()))
+                entries.add(treeLoot);
+
+        this.thresholds = new double[entries.size()];
+        this.items = new ItemStack[entries.size()];
+        this.commands = new CommandTemplate[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            TreeLoot treeLoot = entries.get(i);
+            this.thresholds[i] = treeLoot.getChance() * chanceMultiplier / 100;
+            this.items[i] = treeLoot.hasItem() ? treeLoot.getItem().clone() : null;
+            this.commands[i] = treeLoot.hasCommand() ? new CommandTemplate(treeLoot.getCommand()) : null;
+        }
+    }
+
+    /**
+     * Gets a table without any entries
+     *
+     * @return An empty LootTable
+     */
+    public static LootTable empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Gets the number of entries in this table
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        return this.thresholds.length;
+    }
+
+    /**
+     * Gets the threshold of an entry, a roll between 0 and 1 at or below it succeeds
+     *
+     * @param index The index of the entry
+     * @return The threshold of the entry
+     */
+    public double getThreshold(int index) {
+        return this.thresholds[index];
+    }
+
+    /**
+     * Gets the template item of an entry
+     * The returned item is shared and must not be modified
+     *
+     * @param index The index of the entry
+     * @return The item of the entry, or null if it doesn't have one
+     */
+    public ItemStack getItem(int index) {
+        return this.items[index];
+    }
+
+    /**
+     * Gets the command of an entry
+     *
+     * @param index The index of the entry
+     * @return The command of the entry, or null if it doesn't have one
+     */
+    public CommandTemplate getCommand(int index) {
+        return this.commands[index];
+    }
+
+}
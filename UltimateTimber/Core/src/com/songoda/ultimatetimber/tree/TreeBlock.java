@@ -1,5 +1,6 @@
 package com.songoda.ultimatetimber.tree;
 
+import com.songoda.ultimatetimber.utils.BlockKey;
 import org.bukkit.Location;
 import org.bukkit.block.Block;
 
@@ -9,10 +10,12 @@ public class TreeBlock implements ITreeBlock<Block> {
 
     private final Block block;
     private final TreeBlockType treeBlockType;
+    private final long key;
 
     public TreeBlock(Block block, TreeBlockType treeBlockType) {
         this.block = block;
         this.treeBlockType = treeBlockType;
+        this.key = BlockKey.pack(block);
     }
 
     @Override
@@ -30,6 +33,11 @@ public class TreeBlock implements ITreeBlock<Block> {
         return this.treeBlockType;
     }
 
+    @Override
+    public long getKey() {
+        return this.key;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(this.block, this.treeBlockType);
@@ -1,36 +1,53 @@
 package com.songoda.ultimatetimber.tree;
 
-import org.bukkit.block.Block;
+import com.songoda.ultimatetimber.utils.BlockKey;
+import com.songoda.ultimatetimber.utils.LongIntHashMap;
 
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.stream.Collectors;
 
+/**
+ * Holds the logs and leaves of a tree
+ * Blocks are stored in dense arrays in the order they were added, and indexed by their packed coordinates
+ * so membership checks and removals don't need to search the arrays
+ * Removed blocks leave a gap that is skipped over until the arrays are compacted on a later add,
+ * which keeps it safe to remove blocks while iterating over any of the views
+ * Each type of block is also bucketed into layers by height, so the lowest blocks can be found
+ * and drained without sorting
+ */
 public class TreeBlockSet<BlockType> implements Collection {
 
     private final ITreeBlock<BlockType> initialLogBlock;
-    private List<ITreeBlock<BlockType>> logBlocks;
-    private final List<ITreeBlock<BlockType>> leafBlocks;
+    private final Segment<BlockType> logBlocks;
+    private final Segment<BlockType> leafBlocks;
+    private final LongIntHashMap index;
+    private final List<ITreeBlock<BlockType>> logBlocksView;
+    private final List<ITreeBlock<BlockType>> leafBlocksView;
+    private final Set<ITreeBlock<BlockType>> allTreeBlocksView;
 
     public TreeBlockSet() {
-        this.initialLogBlock = null;
-        this.logBlocks = new LinkedList<>();
-        this.leafBlocks = new LinkedList<>();
+        this(null);
     }
 
     public TreeBlockSet(ITreeBlock<BlockType> initialLogBlock) {
         this.initialLogBlock = initialLogBlock;
-        this.logBlocks = new LinkedList<>();
-        this.leafBlocks = new LinkedList<>();
+        this.logBlocks = new Segment<>(TreeBlockType.LOG);
+        this.leafBlocks = new Segment<>(TreeBlockType.LEAF);
+        this.index = new LongIntHashMap();
+        this.logBlocksView = new SegmentView(this.logBlocks);
+        this.leafBlocksView = new SegmentView(this.leafBlocks);
+        this.allTreeBlocksView = new AllTreeBlocksView();
 
         if (initialLogBlock != null)
-            this.logBlocks.add(initialLogBlock);
+            this.add(initialLogBlock);
     }
 
     /**
@@ -44,84 +61,192 @@ public class TreeBlockSet<BlockType> implements Collection {
 
     /**
      * Gets all logs in this TreeBlockSet
+     * The returned List is a read-only view that reflects later changes to this TreeBlockSet
      *
-     * @return A Set of TreeBlocks
+     * @return A List of TreeBlocks
      */
     public List<ITreeBlock<BlockType>> getLogBlocks() {
-        return Collections.unmodifiableList(this.logBlocks);
+        return this.logBlocksView;
     }
 
     /**
      * Gets all leaves in this TreeBlockSet
+     * The returned List is a read-only view that reflects later changes to this TreeBlockSet
      *
-     * @return A Set of TreeBlocks
+     * @return A List of TreeBlocks
      */
     public List<ITreeBlock<BlockType>> getLeafBlocks() {
-        return Collections.unmodifiableList(this.leafBlocks);
+        return this.leafBlocksView;
     }
 
     /**
-     * Gets all blocks in this TreeBlockSet
+     * Gets all blocks in this TreeBlockSet, logs first
+     * The returned Set is a read-only view that reflects later changes to this TreeBlockSet
      *
      * @return A Set of all TreeBlocks
      */
     public Set<ITreeBlock<BlockType>> getAllTreeBlocks() {
-        Set<ITreeBlock<BlockType>> treeBlocks = new HashSet<>();
-        treeBlocks.addAll(this.logBlocks);
-        treeBlocks.addAll(this.leafBlocks);
+        return this.allTreeBlocksView;
+    }
+
+    /**
+     * Gets the TreeBlock at the given packed coordinates
+     *
+     * @param key The packed block key
+     * @return The TreeBlock at the coordinates, or null if there isn't one
+     */
+    public ITreeBlock<BlockType> getTreeBlock(long key) {
+        int entry = this.index.get(key);
+        if (entry == -1)
+            return null;
+        return this.getSegment(entry).elements[entry >>> 1];
+    }
+
+    /**
+     * Checks if there is a TreeBlock at the given packed coordinates
+     *
+     * @param key The packed block key
+     * @return True if there is a TreeBlock at the coordinates, otherwise false
+     */
+    public boolean containsKey(long key) {
+        return this.index.get(key) != -1;
+    }
+
+    /**
+     * Gets the height of the lowest layer that has blocks of a given type
+     *
+     * @param treeBlockType The type of tree block
+     * @return The y-coordinate of the lowest layer, or Integer.MIN_VALUE if there are no blocks of the type
+     */
+    public int getLowestLayer(TreeBlockType treeBlockType) {
+        Segment<BlockType> segment = this.getSegment(treeBlockType);
+        if (segment == null)
+            return Integer.MIN_VALUE;
+
+        int layer = segment.findLowestLayer();
+        return layer < segment.layers.length ? segment.layerBase + layer : Integer.MIN_VALUE;
+    }
+
+    /**
+     * Gets the blocks of a given type at a given height, in the order they were added
+     *
+     * @param treeBlockType The type of tree block
+     * @param y             The y-coordinate of the layer
+     * @return A new List of the TreeBlocks in the layer
+     */
+    public List<ITreeBlock<BlockType>> getLayer(TreeBlockType treeBlockType, int y) {
+        List<ITreeBlock<BlockType>> treeBlocks = new ArrayList<>();
+        Segment<BlockType> segment = this.getSegment(treeBlockType);
+        Layer<BlockType> layer = segment == null ? null : segment.getLayer(y);
+        if (layer == null)
+            return treeBlocks;
+
+        for (int i = 0; i < layer.end; i++)
+            if (layer.blocks[i] != null)
+                treeBlocks.add(layer.blocks[i]);
         return treeBlocks;
     }
 
+    /**
+     * Gets a cursor over the blocks of this TreeBlockSet, lowest layer first
+     * Within a layer logs come before leaves, each in the order they were added
+     * Blocks may be removed from this TreeBlockSet while the cursor is in use, but not added
+     *
+     * @param treeBlockType The type of tree block to go over, or null for all types
+     * @return A LayerCursor starting at the lowest layer
+     */
+    @SuppressWarnings("unchecked")
+    public LayerCursor<BlockType> layerCursor(TreeBlockType treeBlockType) {
+        if (treeBlockType == null)
+            return new LayerCursor<>(this.getSegments());
+
+        Segment<BlockType> segment = this.getSegment(treeBlockType);
+        return new LayerCursor<>(segment == null ? new Segment[0] : new Segment[] { segment });
+    }
+
     @Override
     public int size() {
-        return this.logBlocks.size() + this.leafBlocks.size();
+        return this.logBlocks.size + this.leafBlocks.size;
     }
 
     @Override
     public boolean isEmpty() {
-        return this.logBlocks.isEmpty() && this.leafBlocks.isEmpty();
+        return this.size() == 0;
     }
 
     @Override
     public boolean contains(Object o) {
-        return this.logBlocks.contains(o) || this.leafBlocks.contains(o);
+        if (!(o instanceof ITreeBlock))
+            return false;
+
+        ITreeBlock<?> treeBlock = (ITreeBlock<?>) o;
+        ITreeBlock<BlockType> existing = this.getTreeBlock(treeBlock.getKey());
+        return existing != null && (existing == treeBlock || existing.equals(treeBlock));
     }
 
     @Override
     public Iterator iterator() {
-        return this.getAllTreeBlocks().iterator();
+        return this.allTreeBlocksView.iterator();
     }
 
     @Override
     public Object[] toArray() {
-        return this.getAllTreeBlocks().toArray();
+        Object[] array = new Object[this.size()];
+        int i = 0;
+        for (ITreeBlock<BlockType> treeBlock : this.allTreeBlocksView)
+            array[i++] = treeBlock;
+        return array;
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public boolean add(Object o) {
         if (!(o instanceof ITreeBlock)) return false;
-        ITreeBlock treeBlock = (ITreeBlock) o;
-        switch (treeBlock.getTreeBlockType()) {
-            case LOG:
-                return this.logBlocks.add(treeBlock);
-            case LEAF:
-                return this.leafBlocks.add(treeBlock);
+        ITreeBlock<BlockType> treeBlock = (ITreeBlock<BlockType>) o;
+        Segment<BlockType> segment = this.getSegment(treeBlock.getTreeBlockType());
+        if (segment == null)
+            return false;
+
+        long key = treeBlock.getKey();
+        if (this.index.get(key) != -1)
+            return false;
+
+        if (segment.end == segment.elements.length) {
+            if (segment.size < segment.end) {
+                this.compact(segment);
+            } else {
+                int capacity = Math.max(16, segment.elements.length << 1);
+                segment.elements = Arrays.copyOf(segment.elements, capacity);
+                segment.layerPositions = Arrays.copyOf(segment.layerPositions, capacity);
+            }
         }
-        return false;
+
+        int slot = segment.end++;
+        segment.elements[slot] = treeBlock;
+        segment.size++;
+        this.index.put(key, this.toEntry(slot, segment.treeBlockType));
+
+        Layer<BlockType> layer = segment.getOrCreateLayer(BlockKey.getY(key));
+        if (layer.end == layer.blocks.length) {
+            if (layer.count < layer.end) {
+                this.compact(segment, layer);
+            } else {
+                layer.blocks = Arrays.copyOf(layer.blocks, layer.blocks.length << 1);
+            }
+        }
+
+        int position = layer.end++;
+        layer.blocks[position] = treeBlock;
+        layer.count++;
+        segment.layerPositions[slot] = position;
+        return true;
     }
 
     @Override
     public boolean remove(Object o) {
-        if (!(o instanceof ITreeBlock)) return false;
-        ITreeBlock treeBlock = (ITreeBlock) o;
-        switch (treeBlock.getTreeBlockType()) {
-            case LOG:
-                return this.logBlocks.remove(treeBlock);
-            case LEAF:
-                return this.leafBlocks.remove(treeBlock);
-        }
-        return false;
+        if (!this.contains(o)) return false;
+        this.removeKey(((ITreeBlock<?>) o).getKey());
+        return true;
     }
 
     @Override
@@ -139,47 +264,73 @@ public class TreeBlockSet<BlockType> implements Collection {
     public void clear() {
         this.logBlocks.clear();
         this.leafBlocks.clear();
+        this.index.clear();
     }
 
     @Override
     public boolean retainAll(Collection c) {
-        boolean retainedAll = true;
-        for (Object o : c) {
-            if (!this.contains(o)) {
-                this.remove(o);
-            } else {
-                retainedAll = false;
+        boolean changed = false;
+        for (Segment<BlockType> segment : this.getSegments()) {
+            for (int i = 0; i < segment.end; i++) {
+                ITreeBlock<BlockType> treeBlock = segment.elements[i];
+                if (treeBlock != null && !c.contains(treeBlock)) {
+                    this.removeKey(treeBlock.getKey());
+                    changed = true;
+                }
             }
         }
-        return retainedAll;
+        return changed;
     }
 
     @Override
     public boolean removeAll(Collection c) {
-        boolean removedAll = true;
-        for (Object o : c) {
-            if (this.contains(o)) {
-                this.remove(o);
-            } else {
-                removedAll = false;
-            }
-        }
-        return removedAll;
+        boolean changed = false;
+        for (Object o : c)
+            changed |= this.remove(o);
+        return changed;
     }
 
+    /**
+     * Limits the number of logs to the lowest given number of logs
+     * If the limit is reached, any leaves above the highest remaining log are removed too
+     *
+     * @param max The maximum number of logs to keep, 0 or less for no limit
+     */
     public void sortAndLimit(int max) {
-        if (logBlocks.size() < max)
+        if (max <= 0 || this.logBlocks.size < max)
             return;
 
-        logBlocks = logBlocks.stream().sorted(Comparator.comparingInt(b -> b.getLocation().getBlockY()))
-                .limit(max).collect(Collectors.toList());
+        // Keep whole layers from the bottom up, only the cut layer needs to be looked at block by block
+        Segment<BlockType> logs = this.logBlocks;
+        int remaining = max;
+        int highest = Integer.MIN_VALUE;
+        int i = logs.findLowestLayer();
+        for (; i < logs.layers.length && remaining > 0; i++) {
+            Layer<BlockType> layer = logs.layers[i];
+            if (layer == null || layer.count == 0)
+                continue;
+
+            highest = logs.layerBase + i;
+            if (layer.count <= remaining) {
+                remaining -= layer.count;
+                continue;
+            }
 
-        int highest = logBlocks.get(logBlocks.size() - 1).getLocation().getBlockY();
+            // Logs at the cut height are kept in the order they were detected in
+            for (int position = 0; position < layer.end; position++) {
+                ITreeBlock<BlockType> treeBlock = layer.blocks[position];
+                if (treeBlock == null)
+                    continue;
+                if (remaining > 0) {
+                    remaining--;
+                } else {
+                    this.removeKey(treeBlock.getKey());
+                }
+            }
+        }
 
-        if (logBlocks.size() >= max)
-            for (ITreeBlock<BlockType> leafBlock : new LinkedList<>(leafBlocks))
-                if (leafBlock.getLocation().getY() > highest)
-                    leafBlocks.remove(leafBlock);
+        this.removeLayers(logs, i);
+        this.removeLayers(this.leafBlocks, highest + 1 - this.leafBlocks.layerBase);
     }
 
     /**
@@ -189,16 +340,15 @@ public class TreeBlockSet<BlockType> implements Collection {
      * @return If any blocks were removed
      */
     public boolean removeAll(TreeBlockType treeBlockType) {
-        if (treeBlockType.equals(TreeBlockType.LOG)) {
-            boolean removedAny = !this.logBlocks.isEmpty();
-            this.logBlocks.clear();
-            return removedAny;
-        } else if (treeBlockType.equals(TreeBlockType.LEAF)) {
-            boolean removedAny = !this.leafBlocks.isEmpty();
-            this.leafBlocks.clear();
-            return removedAny;
-        }
-        return false;
+        Segment<BlockType> segment = this.getSegment(treeBlockType);
+        if (segment == null || segment.size == 0)
+            return false;
+
+        for (int i = 0; i < segment.end; i++)
+            if (segment.elements[i] != null)
+                this.index.remove(segment.elements[i].getKey());
+        segment.clear();
+        return true;
     }
 
     @Override
@@ -210,13 +360,424 @@ public class TreeBlockSet<BlockType> implements Collection {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Object[] toArray(Object[] a) {
-        Set<ITreeBlock<BlockType>> treeBlocks = new HashSet<>();
-        for (Object o : a)
-            if (o instanceof ITreeBlock)
-                treeBlocks.add((ITreeBlock<BlockType>)o);
-        return treeBlocks.toArray();
+        int size = this.size();
+        Object[] array = a.length >= size ? a : (Object[]) Array.newInstance(a.getClass().getComponentType(), size);
+        int i = 0;
+        for (ITreeBlock<BlockType> treeBlock : this.allTreeBlocksView)
+            array[i++] = treeBlock;
+        if (array.length > size)
+            array[size] = null;
+        return array;
+    }
+
+    /**
+     * Removes the TreeBlock at the given packed coordinates, leaving a gap in its array
+     *
+     * @param key The packed block key
+     */
+    private void removeKey(long key) {
+        int entry = this.index.remove(key);
+        if (entry == -1)
+            return;
+
+        Segment<BlockType> segment = this.getSegment(entry);
+        int slot = entry >>> 1;
+        segment.elements[slot] = null;
+        segment.size--;
+        if (segment.size == 0)
+            segment.end = 0;
+
+        Layer<BlockType> layer = segment.getLayer(BlockKey.getY(key));
+        layer.blocks[segment.layerPositions[slot]] = null;
+        layer.count--;
+        if (layer.count == 0)
+            layer.end = 0;
+    }
+
+    /**
+     * Removes every block in the layers of a segment starting at the given layer index
+     *
+     * @param segment The Segment to remove the blocks from
+     * @param from    The index of the lowest layer to remove
+     */
+    private void removeLayers(Segment<BlockType> segment, int from) {
+        for (int i = Math.max(0, from); i < segment.layers.length; i++) {
+            Layer<BlockType> layer = segment.layers[i];
+            if (layer == null)
+                continue;
+
+            for (int position = 0; position < layer.end; position++)
+                if (layer.blocks[position] != null)
+                    this.removeKey(layer.blocks[position].getKey());
+        }
+    }
+
+    /**
+     * Closes the gaps left by removed blocks in a segment and updates the index to match
+     *
+     * @param segment The Segment to compact
+     */
+    private void compact(Segment<BlockType> segment) {
+        int size = 0;
+        for (int i = 0; i < segment.end; i++) {
+            ITreeBlock<BlockType> treeBlock = segment.elements[i];
+            if (treeBlock == null)
+                continue;
+
+            if (size != i) {
+                segment.elements[size] = treeBlock;
+                segment.elements[i] = null;
+                segment.layerPositions[size] = segment.layerPositions[i];
+                this.index.put(treeBlock.getKey(), this.toEntry(size, segment.treeBlockType));
+            }
+            size++;
+        }
+        segment.end = size;
+    }
+
+    /**
+     * Closes the gaps left by removed blocks in a layer and updates the layer positions to match
+     *
+     * @param segment The Segment the layer belongs to
+     * @param layer   The Layer to compact
+     */
+    private void compact(Segment<BlockType> segment, Layer<BlockType> layer) {
+        int count = 0;
+        for (int i = 0; i < layer.end; i++) {
+            ITreeBlock<BlockType> treeBlock = layer.blocks[i];
+            if (treeBlock == null)
+                continue;
+
+            if (count != i) {
+                layer.blocks[count] = treeBlock;
+                layer.blocks[i] = null;
+                segment.layerPositions[this.index.get(treeBlock.getKey()) >>> 1] = count;
+            }
+            count++;
+        }
+        layer.end = count;
+    }
+
+    private int toEntry(int slot, TreeBlockType treeBlockType) {
+        return (slot << 1) | (treeBlockType == TreeBlockType.LEAF ? 1 : 0);
+    }
+
+    private Segment<BlockType> getSegment(int entry) {
+        return (entry & 1) == 0 ? this.logBlocks : this.leafBlocks;
+    }
+
+    private Segment<BlockType> getSegment(TreeBlockType treeBlockType) {
+        switch (treeBlockType) {
+            case LOG:
+                return this.logBlocks;
+            case LEAF:
+                return this.leafBlocks;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Segment<BlockType>[] getSegments() {
+        return new Segment[] { this.logBlocks, this.leafBlocks };
+    }
+
+    /**
+     * The blocks of a single TreeBlockType, in the order they were added
+     * Slots before end may be null if their block was removed
+     */
+    private static class Segment<BlockType> {
+
+        private final TreeBlockType treeBlockType;
+        private ITreeBlock<BlockType>[] elements;
+        private int[] layerPositions;
+        private int end;
+        private int size;
+        private Layer<BlockType>[] layers;
+        private int layerBase;
+        private int lowestLayer;
+
+        @SuppressWarnings("unchecked")
+        private Segment(TreeBlockType treeBlockType) {
+            this.treeBlockType = treeBlockType;
+            this.elements = new ITreeBlock[16];
+            this.layerPositions = new int[16];
+            this.layers = new Layer[0];
+        }
+
+        /**
+         * Gets the layer at a height
+         *
+         * @param y The y-coordinate of the layer
+         * @return The Layer, or null if no block was ever added at that height
+         */
+        private Layer<BlockType> getLayer(int y) {
+            int i = y - this.layerBase;
+            return i >= 0 && i < this.layers.length ? this.layers[i] : null;
+        }
+
+        /**
+         * Gets the layer at a height, growing the layer array in either direction if needed
+         *
+         * @param y The y-coordinate of the layer
+         * @return The Layer
+         */
+        @SuppressWarnings("unchecked")
+        private Layer<BlockType> getOrCreateLayer(int y) {
+            if (this.layers.length == 0) {
+                this.layers = new Layer[16];
+                this.layerBase = y - 4;
+                this.lowestLayer = this.layers.length;
+            }
+
+            int i = y - this.layerBase;
+            if (i < 0) {
+                int shift = Math.max(this.layers.length, -i);
+                Layer<BlockType>[] layers = new Layer[this.layers.length + shift];
+                System.arraycopy(this.layers, 0, layers, shift, this.layers.length);
+                this.layers = layers;
+                this.layerBase -= shift;
+                this.lowestLayer += shift;
+                i += shift;
+            } else if (i >= this.layers.length) {
+                this.layers = Arrays.copyOf(this.layers, Math.max(this.layers.length << 1, i + 1));
+            }
+
+            if (this.layers[i] == null)
+                this.layers[i] = new Layer<>();
+            if (i < this.lowestLayer)
+                this.lowestLayer = i;
+            return this.layers[i];
+        }
+
+        /**
+         * Advances past any layers that have been emptied since the lowest layer was last looked up
+         *
+         * @return The index of the lowest layer with blocks in it, or the number of layers if there are none
+         */
+        private int findLowestLayer() {
+            while (this.lowestLayer < this.layers.length && (this.layers[this.lowestLayer] == null || this.layers[this.lowestLayer].count == 0))
+                this.lowestLayer++;
+            return this.lowestLayer;
+        }
+
+        private void clear() {
+            Arrays.fill(this.elements, 0, this.end, null);
+            Arrays.fill(this.layers, null);
+            this.end = 0;
+            this.size = 0;
+            this.lowestLayer = this.layers.length;
+        }
+
+    }
+
+    /**
+     * The blocks of a single TreeBlockType at a single height, in the order they were added
+     * Positions before end may be null if their block was removed
+     */
+    private static class Layer<BlockType> {
+
+        private ITreeBlock<BlockType>[] blocks;
+        private int end;
+        private int count;
+
+        @SuppressWarnings("unchecked")
+        private Layer() {
+            this.blocks = new ITreeBlock[4];
+        }
+
+    }
+
+    /**
+     * Goes over the blocks of one or more segments one layer at a time, lowest layer first
+     */
+    public static class LayerCursor<BlockType> implements Iterator<ITreeBlock<BlockType>> {
+
+        private final Segment<BlockType>[] segments;
+        private int y;
+        private int segmentIndex;
+        private int position;
+        private ITreeBlock<BlockType> next;
+
+        private LayerCursor(Segment<BlockType>[] segments) {
+            this.segments = segments;
+            this.y = Integer.MAX_VALUE;
+            for (Segment<BlockType> segment : segments) {
+                int lowest = segment.findLowestLayer();
+                if (lowest < segment.layers.length)
+                    this.y = Math.min(this.y, segment.layerBase + lowest);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.next != null)
+                return true;
+
+            while (this.y <= this.getHighestLayer()) {
+                while (this.segmentIndex < this.segments.length) {
+                    Layer<BlockType> layer = this.segments[this.segmentIndex].getLayer(this.y);
+                    while (layer != null && this.position < layer.end) {
+                        ITreeBlock<BlockType> treeBlock = layer.blocks[this.position++];
+                        if (treeBlock != null) {
+                            this.next = treeBlock;
+                            return true;
+                        }
+                    }
+                    this.segmentIndex++;
+                    this.position = 0;
+                }
+                this.y++;
+                this.segmentIndex = 0;
+            }
+            return false;
+        }
+
+        @Override
+        public ITreeBlock<BlockType> next() {
+            if (!this.hasNext())
+                throw new NoSuchElementException();
+            ITreeBlock<BlockType> next = this.next;
+            this.next = null;
+            return next;
+        }
+
+        /**
+         * Takes every remaining block in the layer of the next block
+         *
+         * @return A new List of the remaining TreeBlocks in the layer
+         */
+        public List<ITreeBlock<BlockType>> nextLayer() {
+            if (!this.hasNext())
+                throw new NoSuchElementException();
+
+            int layerY = this.y;
+            List<ITreeBlock<BlockType>> treeBlocks = new ArrayList<>();
+            while (this.hasNext() && this.y == layerY)
+                treeBlocks.add(this.next());
+            return treeBlocks;
+        }
+
+        private int getHighestLayer() {
+            int highest = Integer.MIN_VALUE;
+            for (Segment<BlockType> segment : this.segments)
+                if (segment.layers.length != 0)
+                    highest = Math.max(highest, segment.layerBase + segment.layers.length - 1);
+            return highest;
+        }
+
+    }
+
+    /**
+     * Iterates over the blocks of one or more segments, skipping removed blocks
+     */
+    private class SegmentIterator implements Iterator<ITreeBlock<BlockType>> {
+
+        private final Segment<BlockType>[] segments;
+        private int segmentIndex;
+        private int slot;
+        private ITreeBlock<BlockType> next;
+
+        private SegmentIterator(Segment<BlockType>[] segments) {
+            this.segments = segments;
+            this.slot = -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.next != null)
+                return true;
+
+            while (this.segmentIndex < this.segments.length) {
+                Segment<BlockType> segment = this.segments[this.segmentIndex];
+                while (++this.slot < segment.end) {
+                    ITreeBlock<BlockType> treeBlock = segment.elements[this.slot];
+                    if (treeBlock != null) {
+                        this.next = treeBlock;
+                        return true;
+                    }
+                }
+                this.segmentIndex++;
+                this.slot = -1;
+            }
+            return false;
+        }
+
+        @Override
+        public ITreeBlock<BlockType> next() {
+            if (!this.hasNext())
+                throw new NoSuchElementException();
+            ITreeBlock<BlockType> next = this.next;
+            this.next = null;
+            return next;
+        }
+
+    }
+
+    /**
+     * A read-only List view of one segment
+     */
+    private class SegmentView extends AbstractList<ITreeBlock<BlockType>> {
+
+        private final Segment<BlockType> segment;
+
+        private SegmentView(Segment<BlockType> segment) {
+            this.segment = segment;
+        }
+
+        @Override
+        public ITreeBlock<BlockType> get(int index) {
+            if (index < 0 || index >= this.segment.size)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.segment.size);
+
+            // Without any gaps the slot is the index
+            if (this.segment.size == this.segment.end)
+                return this.segment.elements[index];
+
+            for (int i = 0; i < this.segment.end; i++)
+                if (this.segment.elements[i] != null && index-- == 0)
+                    return this.segment.elements[i];
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        public int size() {
+            return this.segment.size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof ITreeBlock && ((ITreeBlock<?>) o).getTreeBlockType() == this.segment.treeBlockType && TreeBlockSet.this.contains(o);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Iterator<ITreeBlock<BlockType>> iterator() {
+            return new SegmentIterator(new Segment[] { this.segment });
+        }
+
+    }
+
+    /**
+     * A read-only Set view of every block, logs first
+     */
+    private class AllTreeBlocksView extends AbstractSet<ITreeBlock<BlockType>> {
+
+        @Override
+        public int size() {
+            return TreeBlockSet.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return TreeBlockSet.this.contains(o);
+        }
+
+        @Override
+        public Iterator<ITreeBlock<BlockType>> iterator() {
+            return new SegmentIterator(TreeBlockSet.this.getSegments());
+        }
+
     }
 
 }
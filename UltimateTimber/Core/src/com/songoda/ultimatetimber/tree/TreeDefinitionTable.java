@@ -0,0 +1,171 @@
+package com.songoda.ultimatetimber.tree;
+
+import com.songoda.core.compatibility.CompatibleMaterial;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A compiled lookup of which TreeDefinitions use a material as a log, leaf or plantable soil
+ * Each TreeDefinition is given an index, and sets of TreeDefinitions are stored as BitSets of those indices
+ * Masks are indexed by CompatibleMaterial rather than Material so legacy data values stay distinct
+ */
+public class TreeDefinitionTable {
+
+    private static final BitSet EMPTY_MASK = new BitSet();
+
+    private final TreeDefinition[] treeDefinitions;
+    private final Map<TreeDefinition, Integer> treeDefinitionIndices;
+    private final BitSet[] logMasks, leafMasks, soilMasks;
+
+    public TreeDefinitionTable(Collection<TreeDefinition> treeDefinitions, Set<CompatibleMaterial> globalPlantableSoil) {
+        this.treeDefinitions = treeDefinitions.toArray(new TreeDefinition[0]);
+        this.treeDefinitionIndices = new HashMap<>();
+
+        int materialCount = CompatibleMaterial.values().length;
+        this.logMasks = new BitSet[materialCount];
+        this.leafMasks = new BitSet[materialCount];
+        this.soilMasks = new BitSet[materialCount];
+
+        for (int i = 0; i < this.treeDefinitions.length; i++) {
+            TreeDefinition treeDefinition = this.treeDefinitions[i];
+            this.treeDefinitionIndices.put(treeDefinition, i);
+
+            for (CompatibleMaterial material : treeDefinition.getLogMaterial())
+                this.setMask(this.logMasks, material, i);
+            for (CompatibleMaterial material : treeDefinition.getLeafMaterial())
+                this.setMask(this.leafMasks, material, i);
+            for (CompatibleMaterial material : treeDefinition.getPlantableSoilMaterial())
+                this.setMask(this.soilMasks, material, i);
+            for (CompatibleMaterial material : globalPlantableSoil)
+                this.setMask(this.soilMasks, material, i);
+        }
+    }
+
+    /**
+     * Gets the number of TreeDefinitions in this table
+     *
+     * @return The number of TreeDefinitions
+     */
+    public int size() {
+        return this.treeDefinitions.length;
+    }
+
+    /**
+     * Gets the TreeDefinition at an index
+     *
+     * @param index The index of the TreeDefinition
+     * @return The TreeDefinition at the index
+     */
+    public TreeDefinition getTreeDefinition(int index) {
+        return this.treeDefinitions[index];
+    }
+
+    /**
+     * Gets the TreeDefinitions that use a material as a log
+     * The returned mask is shared and must not be modified
+     *
+     * @param material The CompatibleMaterial to look up, may be null
+     * @return A mask of TreeDefinition indices
+     */
+    public BitSet getLogMask(CompatibleMaterial material) {
+        return this.getMask(this.logMasks, material);
+    }
+
+    /**
+     * Gets the TreeDefinitions that use a material as a leaf
+     * The returned mask is shared and must not be modified
+     *
+     * @param material The CompatibleMaterial to look up, may be null
+     * @return A mask of TreeDefinition indices
+     */
+    public BitSet getLeafMask(CompatibleMaterial material) {
+        return this.getMask(this.leafMasks, material);
+    }
+
+    /**
+     * Gets the TreeDefinitions that can have saplings planted on a material, including global plantable soil
+     * The returned mask is shared and must not be modified
+     *
+     * @param material The CompatibleMaterial to look up, may be null
+     * @return A mask of TreeDefinition indices
+     */
+    public BitSet getSoilMask(CompatibleMaterial material) {
+        return this.getMask(this.soilMasks, material);
+    }
+
+    /**
+     * Gets the mask of a TreeBlockType for a material
+     * The returned mask is shared and must not be modified
+     *
+     * @param material      The CompatibleMaterial to look up, may be null
+     * @param treeBlockType The TreeBlockType the material is used as
+     * @return A mask of TreeDefinition indices
+     */
+    public BitSet getMask(CompatibleMaterial material, TreeBlockType treeBlockType) {
+        return treeBlockType == TreeBlockType.LOG ? this.getLogMask(material) : this.getLeafMask(material);
+    }
+
+    /**
+     * Gets the index of a TreeDefinition
+     *
+     * @param treeDefinition The TreeDefinition
+     * @return The index of the TreeDefinition, or -1 if it isn't in this table
+     */
+    public int indexOf(TreeDefinition treeDefinition) {
+        Integer index = this.treeDefinitionIndices.get(treeDefinition);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Creates a mask from a Collection of TreeDefinitions
+     *
+     * @param treeDefinitions The TreeDefinitions
+     * @return A new mask of TreeDefinition indices
+     */
+    public BitSet toMask(Collection<TreeDefinition> treeDefinitions) {
+        BitSet mask = new BitSet(this.treeDefinitions.length);
+        for (TreeDefinition treeDefinition : treeDefinitions) {
+            int index = this.indexOf(treeDefinition);
+            if (index != -1)
+                mask.set(index);
+        }
+        return mask;
+    }
+
+    /**
+     * Gets the TreeDefinitions in a mask
+     *
+     * @param mask The mask of TreeDefinition indices
+     * @return A new Set of TreeDefinitions in index order
+     */
+    public Set<TreeDefinition> toTreeDefinitions(BitSet mask) {
+        Set<TreeDefinition> treeDefinitions = new LinkedHashSet<>();
+        for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1))
+            treeDefinitions.add(this.treeDefinitions[i]);
+        return treeDefinitions;
+    }
+
+    private void setMask(BitSet[] masks, CompatibleMaterial material, int index) {
+        if (material == null)
+            return;
+
+        BitSet mask = masks[material.ordinal()];
+        if (mask == null)
+            masks[material.ordinal()] = mask = new BitSet(this.treeDefinitions.length);
+        mask.set(index);
+    }
+
+    private BitSet getMask(BitSet[] masks, CompatibleMaterial material) {
+        if (material == null)
+            return EMPTY_MASK;
+
+        BitSet mask = masks[material.ordinal()];
+        return mask == null ? EMPTY_MASK : mask;
+    }
+
+}
@@ -0,0 +1,839 @@
+package com.songoda.ultimatetimber.tree;
+
+import com.songoda.core.compatibility.CompatibleMaterial;
+import com.songoda.ultimatetimber.utils.BlockKey;
+import com.songoda.ultimatetimber.utils.ConcurrentLongHashSet;
+import com.songoda.ultimatetimber.utils.LongArrayList;
+import com.songoda.ultimatetimber.utils.LongBucketQueue;
+import com.songoda.ultimatetimber.utils.LongHashSet;
+import com.songoda.ultimatetimber.voxel.VoxelSource;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongPredicate;
+
+/**
+ * Finds the blocks of a tree by searching outwards from a log
+ * Blocks are only ever looked at through a VoxelSource, so detection can run against the live world, chunk snapshots
+ * or an in-memory copy, on or off of the main thread
+ */
+public class TreeDetector {
+
+    private static final int BASE_LEAF_PROBE_LIMIT = 512;
+    private static final int LEAF_PARTITION_SHIFT = 3;
+    private static final CompatibleMaterial[] MATERIALS = CompatibleMaterial.values();
+
+    // Offsets are stored as flattened x, y, z triples
+    // 3x2x3 centered around log, excluding -y axis
+    private static final int[] VALID_BRANCH_OFFSETS = createCubeOffsets(0);
+
+    // 3x3x3 centered around log
+    private static final int[] VALID_TRUNK_OFFSETS = createCubeOffsets(-1);
+
+    // Adjacent blocks to log
+    private static final int[] VALID_LEAF_OFFSETS = new int[] {
+            -1, 0, 0,  1, 0, 0,
+            0, -1, 0,  0, 1, 0,
+            0, 0, -1,  0, 0, 1
+    };
+
+    private final int numLeavesRequiredForTree, maxLogBlocksAllowed, maxDetectionBlocks, maxDetectionTime;
+    private final boolean onlyBreakLogsUpwards, entireTreeBase, destroyLeaves;
+    private final ForkJoinPool leafSearchPool;
+    private final int parallelLeafSearchThreshold;
+
+    /**
+     * @param numLeavesRequiredForTree    The number of leaves a tree needs to have
+     * @param maxLogBlocksAllowed         The maximum number of logs to detect, 0 for no limit
+     * @param maxDetectionBlocks          The maximum number of blocks to look at, 0 for no limit
+     * @param maxDetectionTime            The maximum number of milliseconds to search for, 0 for no limit
+     * @param onlyBreakLogsUpwards        If logs below the initial log should be ignored
+     * @param entireTreeBase              If trees need to be broken from the lowest logs of their base
+     * @param destroyLeaves               If leaves should be included in the detected trees
+     * @param leafSearchPool              The ForkJoinPool to search for leaves on in parallel, may be null
+     * @param parallelLeafSearchThreshold The minimum number of logs before leaves are searched for in parallel
+     */
+    public TreeDetector(int numLeavesRequiredForTree, int maxLogBlocksAllowed, int maxDetectionBlocks, int maxDetectionTime,
+                        boolean onlyBreakLogsUpwards, boolean entireTreeBase, boolean destroyLeaves,
+                        ForkJoinPool leafSearchPool, int parallelLeafSearchThreshold) {
+        this.numLeavesRequiredForTree = numLeavesRequiredForTree;
+        this.maxLogBlocksAllowed = maxLogBlocksAllowed;
+        this.maxDetectionBlocks = maxDetectionBlocks;
+        this.maxDetectionTime = maxDetectionTime;
+        this.onlyBreakLogsUpwards = onlyBreakLogsUpwards;
+        this.entireTreeBase = entireTreeBase;
+        this.destroyLeaves = destroyLeaves;
+        this.leafSearchPool = leafSearchPool;
+        this.parallelLeafSearchThreshold = parallelLeafSearchThreshold;
+    }
+
+    /**
+     * Gets how far from the initial log a tree made of the given material could reach
+     * A VoxelSource needs to cover at least this many blocks in every direction to detect the entire tree
+     *
+     * @param table    The TreeDefinitionTable to detect with
+     * @param material The CompatibleMaterial of the initial log
+     * @return The reach in blocks, or 0 if the material isn't a log
+     */
+    public int getReach(TreeDefinitionTable table, CompatibleMaterial material) {
+        TreeCandidates candidates = new TreeCandidates(table, (BitSet) table.getLogMask(material).clone());
+        if (candidates.isEmpty())
+            return 0;
+
+        double maxLogDistance = Math.sqrt(candidates.getMaxLogDistanceSquared());
+        if (!this.onlyBreakLogsUpwards)
+            maxLogDistance *= Math.sqrt(1.5);
+
+        // One extra block for checking if leaves border other logs
+        return (int) Math.ceil(maxLogDistance) + candidates.getMaxLeafDistance() + 1;
+    }
+
+    /**
+     * Detects a tree given an initial starting log
+     *
+     * @param table          The TreeDefinitionTable to detect with
+     * @param source         The VoxelSource to look up blocks with
+     * @param excludedBlocks Tests packed block keys for blocks that can never be part of a tree, such as placed blocks
+     * @param initialX       The x coordinate of the initial log
+     * @param initialY       The y coordinate of the initial log
+     * @param initialZ       The z coordinate of the initial log
+     * @return A TreeShape if a tree was found, otherwise null
+     */
+    public TreeShape detect(TreeDefinitionTable table, VoxelSource source, LongPredicate excludedBlocks, int initialX, int initialY, int initialZ) {
+        TreeCandidates candidates = new TreeCandidates(table, (BitSet) table.getLogMask(source.getMaterial(initialX, initialY, initialZ)).clone());
+        if (candidates.isEmpty())
+            return null;
+
+        Search search = new Search(candidates, source, excludedBlocks);
+        int trunkX = initialX;
+        int trunkZ = initialZ;
+
+        DetectionBudget budget = new DetectionBudget(this.maxDetectionBlocks, this.maxDetectionTime);
+        long initialKey = BlockKey.pack(trunkX, initialY, trunkZ);
+        LongHashSet logKeys = new LongHashSet();
+        logKeys.add(initialKey);
+
+        // Detect tree trunk
+        int trunkMaxY = initialY;
+        CompatibleMaterial material;
+        while (budget.tryConsume() && search.isValidLog((material = source.getMaterial(trunkX, trunkMaxY + 1, trunkZ)), trunkX, trunkMaxY + 1, trunkZ)) {
+            trunkMaxY++;
+            logKeys.add(BlockKey.pack(trunkX, trunkMaxY, trunkZ));
+            candidates.narrow(material, TreeBlockType.LOG);
+        }
+
+        int trunkMinY = initialY;
+        if (!this.onlyBreakLogsUpwards) {
+            while (budget.tryConsume() && search.isValidLog((material = source.getMaterial(trunkX, trunkMinY - 1, trunkZ)), trunkX, trunkMinY - 1, trunkZ)) {
+                trunkMinY--;
+                logKeys.add(BlockKey.pack(trunkX, trunkMinY, trunkZ));
+                candidates.narrow(material, TreeBlockType.LOG);
+            }
+        }
+
+        // Logs are added to the tree in order of lowest y first, every trunk block gets searched for branches
+        LongBucketQueue branchQueue = new LongBucketQueue();
+        for (int y = trunkMinY; y <= trunkMaxY; y++)
+            branchQueue.add(BlockKey.pack(trunkX, y, trunkZ), y);
+
+        // Detect branches off the main trunk
+        LongArrayList logs = new LongArrayList();
+        LongArrayList shapeLogs = new LongArrayList();
+        shapeLogs.add(initialKey);
+        int[] branchOffsets = this.onlyBreakLogsUpwards ? VALID_BRANCH_OFFSETS : VALID_TRUNK_OFFSETS;
+        int highestLogY = initialY;
+        boolean logLimitReached = false;
+        while (!branchQueue.isEmpty() && !budget.isExhausted()) {
+            if (this.maxLogBlocksAllowed > 0 && logs.size() >= this.maxLogBlocksAllowed) {
+                logLimitReached = true;
+                break;
+            }
+
+            long key = branchQueue.poll();
+            int x = BlockKey.getX(key), y = BlockKey.getY(key), z = BlockKey.getZ(key);
+            if (key != initialKey)
+                shapeLogs.add(key);
+            logs.add(key);
+            highestLogY = Math.max(highestLogY, y);
+
+            if (this.onlyBreakLogsUpwards && y <= initialY && key != initialKey)
+                continue;
+
+            for (int o = 0; o < branchOffsets.length; o += 3) {
+                int targetX = x + branchOffsets[o], targetY = y + branchOffsets[o + 1], targetZ = z + branchOffsets[o + 2];
+                long targetKey = BlockKey.pack(targetX, targetY, targetZ);
+                if (logKeys.contains(targetKey) || !this.isNearTrunk(candidates, targetX - trunkX, targetY, targetZ - trunkZ, trunkMinY, trunkMaxY))
+                    continue;
+
+                if (!budget.tryConsume())
+                    break;
+
+                material = source.getMaterial(targetX, targetY, targetZ);
+                if (!search.isValidLog(material, targetX, targetY, targetZ))
+                    continue;
+
+                logKeys.add(targetKey);
+                candidates.narrow(material, TreeBlockType.LOG);
+                branchQueue.add(targetKey, targetY);
+            }
+        }
+
+        int unexploredBlocks = branchQueue.size();
+        boolean logsTruncated = budget.isExhausted();
+        budget.startLeafPhase();
+
+        // Detect leaves off the trunk/branches
+        // Leaves above the highest log would be removed when the tree is limited anyways
+        int maxLeafY = logLimitReached ? highestLogY : Integer.MAX_VALUE;
+        LongArrayList leaves = new LongArrayList();
+        LongArrayList leafMaterials = new LongArrayList();
+        LeafSearch leafSearch = new LeafSearch(search, logs, logKeys, budget, maxLeafY);
+        LongArrayList shapeLeaves;
+        if (this.leafSearchPool != null && source.isThreadSafe() && logs.size() >= this.parallelLeafSearchThreshold) {
+            unexploredBlocks += this.floodLeavesInParallel(leafSearch, leaves, leafMaterials);
+
+            // Narrow the definitions afterwards in the order the leaves were found, dropping leaves that stopped matching
+            shapeLeaves = new LongArrayList(leaves.size());
+            for (int i = 0; i < leaves.size(); i++) {
+                material = MATERIALS[(int) leafMaterials.get(i)];
+                if (!candidates.isLeaf(material))
+                    continue;
+
+                shapeLeaves.add(leaves.get(i));
+                candidates.narrow(material, TreeBlockType.LEAF);
+            }
+        } else {
+            LongHashSet visitedKeys = new LongHashSet(logs.size() * 8);
+            for (int i = 0; i < logs.size(); i++)
+                visitedKeys.add(logs.get(i));
+
+            unexploredBlocks += leafSearch.flood(logs, visitedKeys::add, true, leaves, leafMaterials);
+            shapeLeaves = leaves;
+        }
+
+        boolean leavesTruncated = budget.isExhausted();
+        boolean truncated = logLimitReached || logsTruncated || leavesTruncated;
+
+        // Use the first tree definition in the set
+        int actualTreeDefinitionIndex = candidates.getFirstIndex();
+
+        // Trees need at least a certain number of leaves, unless the leaf search ran out before it could find them all
+        if (shapeLeaves.size() < this.numLeavesRequiredForTree && !leavesTruncated)
+            return null;
+
+        // Check that the tree isn't on the ground if enabled
+        if (this.entireTreeBase && !this.isBaseBroken(search, shapeLogs, initialKey, actualTreeDefinitionIndex))
+            return null;
+
+        // Remove leaves if we don't care about the leaves
+        long[] leafArray = this.destroyLeaves ? shapeLeaves.toArray() : new long[0];
+        return new TreeShape(table.getTreeDefinition(actualTreeDefinitionIndex), shapeLogs.toArray(), leafArray, truncated, unexploredBlocks);
+    }
+
+    /**
+     * Checks that a tree with an already known shape still matches the blocks in a VoxelSource
+     * Every block of the shape must still be a log or leaf of the same tree, nothing else is searched
+     *
+     * @param table          The TreeDefinitionTable to check with
+     * @param source         The VoxelSource to look up blocks with
+     * @param excludedBlocks Tests packed block keys for blocks that can never be part of a tree, such as placed blocks
+     * @param initialKey     The packed key of the initial log, must be one of the logs
+     * @param logKeys        The packed keys of the logs of the tree
+     * @param leafKeys       The packed keys of the leaves of the tree
+     * @return A TreeShape if every block still matches, otherwise null
+     */
+    public TreeShape validate(TreeDefinitionTable table, VoxelSource source, LongPredicate excludedBlocks, long initialKey, long[] logKeys, long[] leafKeys) {
+        int initialX = BlockKey.getX(initialKey), initialY = BlockKey.getY(initialKey), initialZ = BlockKey.getZ(initialKey);
+        TreeCandidates candidates = new TreeCandidates(table, (BitSet) table.getLogMask(source.getMaterial(initialX, initialY, initialZ)).clone());
+        if (candidates.isEmpty())
+            return null;
+
+        Search search = new Search(candidates, source, excludedBlocks);
+        LongArrayList shapeLogs = new LongArrayList(logKeys.length);
+        shapeLogs.add(initialKey);
+        for (long key : logKeys) {
+            CompatibleMaterial material = source.getMaterial(BlockKey.getX(key), BlockKey.getY(key), BlockKey.getZ(key));
+            if (!search.isValidLog(material, BlockKey.getX(key), BlockKey.getY(key), BlockKey.getZ(key)))
+                return null;
+
+            candidates.narrow(material, TreeBlockType.LOG);
+            if (key != initialKey)
+                shapeLogs.add(key);
+        }
+
+        for (long key : leafKeys) {
+            CompatibleMaterial material = source.getMaterial(BlockKey.getX(key), BlockKey.getY(key), BlockKey.getZ(key));
+            if (!candidates.isLeaf(material) || excludedBlocks.test(key))
+                return null;
+
+            candidates.narrow(material, TreeBlockType.LEAF);
+        }
+
+        if (candidates.isEmpty() || leafKeys.length < this.numLeavesRequiredForTree)
+            return null;
+
+        int actualTreeDefinitionIndex = candidates.getFirstIndex();
+        if (this.entireTreeBase && !this.isBaseBroken(search, shapeLogs, initialKey, actualTreeDefinitionIndex))
+            return null;
+
+        long[] leafArray = this.destroyLeaves ? leafKeys.clone() : new long[0];
+        return new TreeShape(table.getTreeDefinition(actualTreeDefinitionIndex), shapeLogs.toArray(), leafArray, false, 0);
+    }
+
+    /**
+     * Identifies the TreeDefinition of a tree from its base without detecting the entire tree
+     * The block below must be plantable soil, and enough leaves must be found near the trunk within a small search limit,
+     * leaves only reachable through branches are not searched for
+     *
+     * @param table          The TreeDefinitionTable to classify with
+     * @param source         The VoxelSource to look up blocks with
+     * @param excludedBlocks Tests packed block keys for blocks that can never be part of a tree, such as placed blocks
+     * @param trunkX         The x coordinate of the base log
+     * @param initialY       The y coordinate of the base log
+     * @param trunkZ         The z coordinate of the base log
+     * @return The TreeDefinition of the tree if it looks like a natural tree, otherwise null
+     */
+    public TreeDefinition classifyBase(TreeDefinitionTable table, VoxelSource source, LongPredicate excludedBlocks, int trunkX, int initialY, int trunkZ) {
+        TreeCandidates candidates = new TreeCandidates(table, (BitSet) table.getLogMask(source.getMaterial(trunkX, initialY, trunkZ)).clone());
+        if (candidates.isEmpty())
+            return null;
+
+        // Saplings can only be replanted on soil
+        candidates.narrow(table.getSoilMask(source.getMaterial(trunkX, initialY - 1, trunkZ)));
+        if (candidates.isEmpty())
+            return null;
+
+        // Walk up the trunk
+        Search search = new Search(candidates, source, excludedBlocks);
+        int trunkMaxY = initialY;
+        CompatibleMaterial material;
+        while (search.isValidLog((material = source.getMaterial(trunkX, trunkMaxY + 1, trunkZ)), trunkX, trunkMaxY + 1, trunkZ)) {
+            trunkMaxY++;
+            candidates.narrow(material, TreeBlockType.LOG);
+        }
+
+        LongArrayList leafQueue = new LongArrayList();
+        LongHashSet visitedKeys = new LongHashSet();
+        for (int y = initialY; y <= trunkMaxY; y++) {
+            long key = BlockKey.pack(trunkX, y, trunkZ);
+            leafQueue.add(key);
+            visitedKeys.add(key);
+        }
+
+        // Probe for leaves around the trunk until there are enough to be a tree
+        int leavesFound = 0;
+        for (int i = 0; i < leafQueue.size() && leavesFound < this.numLeavesRequiredForTree && visitedKeys.size() < BASE_LEAF_PROBE_LIMIT; i++) {
+            long key = leafQueue.get(i);
+            int x = BlockKey.getX(key), y = BlockKey.getY(key), z = BlockKey.getZ(key);
+            int[] leafOffsets = candidates.shouldDetectLeavesDiagonally() ? VALID_TRUNK_OFFSETS : VALID_LEAF_OFFSETS;
+            for (int o = 0; o < leafOffsets.length; o += 3) {
+                int targetX = x + leafOffsets[o], targetY = y + leafOffsets[o + 1], targetZ = z + leafOffsets[o + 2];
+                long targetKey = BlockKey.pack(targetX, targetY, targetZ);
+                if (!visitedKeys.add(targetKey))
+                    continue;
+
+                int maxDistance = candidates.getMaxLeafDistance();
+                if (this.distanceSquaredToTrunk(targetX - trunkX, targetY, targetZ - trunkZ, initialY, trunkMaxY) >= maxDistance * maxDistance)
+                    continue;
+
+                material = source.getMaterial(targetX, targetY, targetZ);
+                if (candidates.isLeaf(material) && !excludedBlocks.test(targetKey)) {
+                    candidates.narrow(material, TreeBlockType.LEAF);
+                    leafQueue.add(targetKey);
+                    leavesFound++;
+                }
+            }
+        }
+
+        if (leavesFound < this.numLeavesRequiredForTree)
+            return null;
+
+        return table.getTreeDefinition(candidates.getFirstIndex());
+    }
+
+    /**
+     * Checks that none of the other logs at the height of the initial log are still on the ground
+     *
+     * @param search                    The Search of the tree
+     * @param logs                      The keys of the logs of the tree
+     * @param initialKey                The key of the initial log
+     * @param actualTreeDefinitionIndex The index of the TreeDefinition of the tree
+     * @return True if the tree was broken from its base, otherwise false
+     */
+    private boolean isBaseBroken(Search search, LongArrayList logs, long initialKey, int actualTreeDefinitionIndex) {
+        int initialY = BlockKey.getY(initialKey);
+        for (int i = 0; i < logs.size(); i++) {
+            long key = logs.get(i);
+            if (key == initialKey || BlockKey.getY(key) != initialY)
+                continue;
+
+            int x = BlockKey.getX(key), y = initialY - 1, z = BlockKey.getZ(key);
+            CompatibleMaterial material = search.source.getMaterial(x, y, z);
+            boolean blockBelowIsLog = search.isValidLog(material, x, y, z);
+            boolean blockBelowIsSoil = search.candidates.getTable().getSoilMask(material).get(actualTreeDefinitionIndex);
+
+            if (blockBelowIsLog || blockBelowIsSoil)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Floods leaves from every log at once on the leaf search pool
+     * The logs are split into spatial partitions which are each flooded on their own,
+     * sharing a concurrent set of visited blocks so no block is looked at twice
+     *
+     * @param leafSearch    The LeafSearch to flood with, the TreeCandidates in it are not narrowed
+     * @param leaves        The list to add the keys of the found leaves to
+     * @param leafMaterials The list to add the CompatibleMaterial ordinals of the found leaves to
+     * @return The number of queued blocks that were not searched because the budget ran out
+     */
+    private int floodLeavesInParallel(LeafSearch leafSearch, LongArrayList leaves, LongArrayList leafMaterials) {
+        ConcurrentLongHashSet visitedKeys = new ConcurrentLongHashSet(this.leafSearchPool.getParallelism() * 4);
+        Map<Long, LongArrayList> partitionMap = new LinkedHashMap<>();
+        for (int i = 0; i < leafSearch.logs.size(); i++) {
+            long key = leafSearch.logs.get(i);
+            visitedKeys.add(key);
+            long partitionKey = BlockKey.pack(BlockKey.getX(key) >> LEAF_PARTITION_SHIFT, BlockKey.getY(key) >> LEAF_PARTITION_SHIFT, BlockKey.getZ(key) >> LEAF_PARTITION_SHIFT);
+            partitionMap.computeIfAbsent(partitionKey, k -> new LongArrayList()).add(key);
+        }
+
+        List<LongArrayList> partitions = new ArrayList<>(partitionMap.values());
+        LeafFloodResult result = this.leafSearchPool.invoke(new LeafFloodTask(leafSearch, visitedKeys, partitions, 0, partitions.size()));
+        for (int i = 0; i < result.leaves.size(); i++) {
+            leaves.add(result.leaves.get(i));
+            leafMaterials.add(result.leafMaterials.get(i));
+        }
+        return result.unexploredBlocks;
+    }
+
+    /**
+     * Builds a flattened offset table of a 3x3 cube around a block, excluding the block itself
+     *
+     * @param minY The lowest y offset to include, either -1 or 0
+     * @return The offsets as x, y, z triples
+     */
+    private static int[] createCubeOffsets(int minY) {
+        int[] offsets = new int[((2 - minY) * 9 - 1) * 3];
+        int index = 0;
+        for (int y = minY; y <= 1; y++) {
+            for (int x = -1; x <= 1; x++) {
+                for (int z = -1; z <= 1; z++) {
+                    if (x == 0 && y == 0 && z == 0)
+                        continue;
+                    offsets[index++] = x;
+                    offsets[index++] = y;
+                    offsets[index++] = z;
+                }
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Checks that a block is close enough to the trunk for the given TreeCandidates
+     * The trunk is a single column, so the distance only depends on the offset from it
+     *
+     * @param candidates The TreeCandidates to compare against
+     * @param offsetX    The x offset of the block from the trunk column
+     * @param y          The y coordinate of the block
+     * @param offsetZ    The z offset of the block from the trunk column
+     * @param trunkMinY  The lowest y coordinate of the trunk
+     * @param trunkMaxY  The highest y coordinate of the trunk
+     * @return True if the block is close enough to the trunk, otherwise false
+     */
+    private boolean isNearTrunk(TreeCandidates candidates, int offsetX, int y, int offsetZ, int trunkMinY, int trunkMaxY) {
+        int distanceSquared = this.distanceSquaredToTrunk(offsetX, y, offsetZ, trunkMinY, trunkMaxY);
+        double maxDistance = candidates.getMaxLogDistanceSquared();
+        if (!this.onlyBreakLogsUpwards) // Help detect logs more often if the tree isn't broken at the base
+            maxDistance *= 1.5;
+        return distanceSquared < maxDistance;
+    }
+
+    /**
+     * Gets the squared distance between a block and the closest block of a trunk column
+     *
+     * @param offsetX   The x offset of the block from the trunk column
+     * @param y         The y coordinate of the block
+     * @param offsetZ   The z offset of the block from the trunk column
+     * @param trunkMinY The lowest y coordinate of the trunk
+     * @param trunkMaxY The highest y coordinate of the trunk
+     * @return The squared distance to the trunk
+     */
+    private int distanceSquaredToTrunk(int offsetX, int y, int offsetZ, int trunkMinY, int trunkMaxY) {
+        int offsetY = y < trunkMinY ? trunkMinY - y : y > trunkMaxY ? y - trunkMaxY : 0;
+        return offsetX * offsetX + offsetY * offsetY + offsetZ * offsetZ;
+    }
+
+    /**
+     * Gets the squared distance between a packed block key and block coordinates
+     *
+     * @param key The packed block key
+     * @param x   The block x coordinate
+     * @param y   The block y coordinate
+     * @param z   The block z coordinate
+     * @return The squared distance between the two blocks
+     */
+    private static int distanceSquared(long key, int x, int y, int z) {
+        int offsetX = BlockKey.getX(key) - x, offsetY = BlockKey.getY(key) - y, offsetZ = BlockKey.getZ(key) - z;
+        return offsetX * offsetX + offsetY * offsetY + offsetZ * offsetZ;
+    }
+
+    /**
+     * The TreeCandidates, VoxelSource and excluded blocks of a single detection
+     */
+    private static class Search {
+
+        private final TreeCandidates candidates;
+        private final VoxelSource source;
+        private final LongPredicate excludedBlocks;
+
+        private Search(TreeCandidates candidates, VoxelSource source, LongPredicate excludedBlocks) {
+            this.candidates = candidates;
+            this.source = source;
+            this.excludedBlocks = excludedBlocks;
+        }
+
+        /**
+         * Checks if a given block is a valid log for the TreeCandidates
+         *
+         * @param material The CompatibleMaterial of the block
+         * @param x        The x coordinate of the block
+         * @param y        The y coordinate of the block
+         * @param z        The z coordinate of the block
+         * @return True if the block is a valid log type, otherwise false
+         */
+        private boolean isValidLog(CompatibleMaterial material, int x, int y, int z) {
+            // Check if it matches the tree definition and if block is placed
+            return this.candidates.isLog(material) && !this.excludedBlocks.test(BlockKey.pack(x, y, z));
+        }
+
+        /**
+         * Checks if a given block is a valid leaf for the TreeCandidates
+         *
+         * @param logs      The keys of the detected logs for checking leaf distance
+         * @param sourceKey The key of the log the leaf was reached from, checked before any other log
+         * @param material  The CompatibleMaterial of the block
+         * @param x         The x coordinate of the block
+         * @param y         The y coordinate of the block
+         * @param z         The z coordinate of the block
+         * @return True if the block is a valid leaf type, otherwise false
+         */
+        private boolean isValidLeaf(LongArrayList logs, long sourceKey, CompatibleMaterial material, int x, int y, int z) {
+            // Check if it matches the tree definition
+            if (!this.candidates.isLeaf(material))
+                return false;
+
+            // Check if block is placed
+            if (this.excludedBlocks.test(BlockKey.pack(x, y, z)))
+                return false;
+
+            // Check that it is close enough to a log
+            int maxDistanceSquared = this.candidates.getMaxLeafDistance() * this.candidates.getMaxLeafDistance();
+            if (distanceSquared(sourceKey, x, y, z) < maxDistanceSquared)
+                return true;
+
+            for (int i = 0; i < logs.size(); i++)
+                if (distanceSquared(logs.get(i), x, y, z) < maxDistanceSquared)
+                    return true;
+            return false;
+        }
+
+        /**
+         * Checks if a leaf is bordering a log that isn't part of this tree
+         *
+         * @param logKeys The keys of the detected logs
+         * @param x       The x coordinate of the leaf
+         * @param y       The y coordinate of the leaf
+         * @param z       The z coordinate of the leaf
+         * @return True if the leaf borders an invalid log, otherwise false
+         */
+        private boolean doesLeafBorderInvalidLog(LongHashSet logKeys, int x, int y, int z) {
+            for (int o = 0; o < VALID_TRUNK_OFFSETS.length; o += 3) {
+                int targetX = x + VALID_TRUNK_OFFSETS[o], targetY = y + VALID_TRUNK_OFFSETS[o + 1], targetZ = z + VALID_TRUNK_OFFSETS[o + 2];
+                if (!logKeys.contains(BlockKey.pack(targetX, targetY, targetZ)) && this.isValidLog(this.source.getMaterial(targetX, targetY, targetZ), targetX, targetY, targetZ))
+                    return true;
+            }
+            return false;
+        }
+
+    }
+
+    /**
+     * Floods leaves outwards from a set of logs
+     * Everything in here is only read while flooding, so one LeafSearch can be shared by multiple threads
+     * as long as the TreeCandidates aren't narrowed and the visited blocks are tracked in a thread-safe way
+     */
+    private static class LeafSearch {
+
+        private final Search search;
+        private final LongArrayList logs;
+        private final LongHashSet logKeys;
+        private final DetectionBudget budget;
+        private final int maxLeafY;
+
+        private LeafSearch(Search search, LongArrayList logs, LongHashSet logKeys, DetectionBudget budget, int maxLeafY) {
+            this.search = search;
+            this.logs = logs;
+            this.logKeys = logKeys;
+            this.budget = budget;
+            this.maxLeafY = maxLeafY;
+        }
+
+        /**
+         * Floods leaves outwards from the given logs
+         * Each queued leaf remembers the log its flood started from, which is almost always close enough to pass the distance check
+         *
+         * @param seeds         The keys of the logs to start from, they must already be visited
+         * @param visitor       Marks a block as visited, returning false if it already was
+         * @param narrow        If the TreeCandidates should be narrowed as leaves are found
+         * @param leaves        The list to add the keys of the found leaves to
+         * @param leafMaterials The list to add the CompatibleMaterial ordinals of the found leaves to
+         * @return The number of queued blocks that were not searched because the budget ran out
+         */
+        private int flood(LongArrayList seeds, LongPredicate visitor, boolean narrow, LongArrayList leaves, LongArrayList leafMaterials) {
+            LongArrayList queue = new LongArrayList(seeds.size() * 4);
+            LongArrayList sources = new LongArrayList(seeds.size() * 4);
+            for (int i = 0; i < seeds.size(); i++) {
+                queue.add(seeds.get(i));
+                sources.add(seeds.get(i));
+            }
+
+            TreeCandidates candidates = this.search.candidates;
+            for (int i = 0; i < queue.size(); i++) {
+                long key = queue.get(i);
+                long sourceKey = sources.get(i);
+                int x = BlockKey.getX(key), y = BlockKey.getY(key), z = BlockKey.getZ(key);
+                int[] leafOffsets = candidates.shouldDetectLeavesDiagonally() ? VALID_TRUNK_OFFSETS : VALID_LEAF_OFFSETS;
+                for (int o = 0; o < leafOffsets.length; o += 3) {
+                    int targetX = x + leafOffsets[o], targetY = y + leafOffsets[o + 1], targetZ = z + leafOffsets[o + 2];
+                    long targetKey = BlockKey.pack(targetX, targetY, targetZ);
+                    if (targetY > this.maxLeafY || !visitor.test(targetKey))
+                        continue;
+
+                    if (!this.budget.tryConsume())
+                        return queue.size() - i;
+
+                    CompatibleMaterial material = this.search.source.getMaterial(targetX, targetY, targetZ);
+                    if (this.search.isValidLeaf(this.logs, sourceKey, material, targetX, targetY, targetZ)
+                            && !this.search.doesLeafBorderInvalidLog(this.logKeys, targetX, targetY, targetZ)) {
+                        if (narrow)
+                            candidates.narrow(material, TreeBlockType.LEAF);
+                        queue.add(targetKey);
+                        sources.add(sourceKey);
+                        leaves.add(targetKey);
+                        leafMaterials.add(material.ordinal());
+                    }
+                }
+            }
+
+            return 0;
+        }
+
+    }
+
+    /**
+     * The leaves found by a LeafFloodTask
+     */
+    private static class LeafFloodResult {
+
+        private final LongArrayList leaves = new LongArrayList();
+        private final LongArrayList leafMaterials = new LongArrayList();
+        private int unexploredBlocks;
+
+    }
+
+    /**
+     * Floods leaves from a range of log partitions, splitting the range in half until there is one partition per task
+     */
+    private static class LeafFloodTask extends RecursiveTask<LeafFloodResult> {
+
+        private final LeafSearch leafSearch;
+        private final ConcurrentLongHashSet visitedKeys;
+        private final List<LongArrayList> partitions;
+        private final int from, to;
+
+        private LeafFloodTask(LeafSearch leafSearch, ConcurrentLongHashSet visitedKeys, List<LongArrayList> partitions, int from, int to) {
+            this.leafSearch = leafSearch;
+            this.visitedKeys = visitedKeys;
+            this.partitions = partitions;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected LeafFloodResult compute() {
+            if (this.to - this.from <= 1) {
+                LeafFloodResult result = new LeafFloodResult();
+                if (this.to > this.from)
+                    result.unexploredBlocks = this.leafSearch.flood(this.partitions.get(this.from), this.visitedKeys::add, false, result.leaves, result.leafMaterials);
+                return result;
+            }
+
+            int middle = (this.from + this.to) >>> 1;
+            LeafFloodTask upper = new LeafFloodTask(this.leafSearch, this.visitedKeys, this.partitions, middle, this.to);
+            upper.fork();
+            LeafFloodResult result = new LeafFloodTask(this.leafSearch, this.visitedKeys, this.partitions, this.from, middle).compute();
+            LeafFloodResult upperResult = upper.join();
+
+            for (int i = 0; i < upperResult.leaves.size(); i++) {
+                result.leaves.add(upperResult.leaves.get(i));
+                result.leafMaterials.add(upperResult.leafMaterials.get(i));
+            }
+            result.unexploredBlocks += upperResult.unexploredBlocks;
+            return result;
+        }
+
+    }
+
+    /**
+     * Limits how many blocks a detection can look at and how long it can run for
+     * The clock is only checked every so often since reading it isn't free
+     * Blocks are counted atomically since leaves may be searched on multiple threads
+     */
+    private static class DetectionBudget {
+
+        // The share of the budget the log phase can't touch, so a tree whose logs run out the budget still gets leaves
+        private static final int LEAF_SHARE_DIVISOR = 4;
+
+        private final int totalBlocks;
+        private final long totalDeadline;
+        private final AtomicInteger blocks;
+        private int maxBlocks;
+        private long deadline;
+        private volatile boolean exhausted;
+
+        private DetectionBudget(int maxBlocks, int maxMillis) {
+            long start = System.nanoTime();
+            this.totalBlocks = maxBlocks;
+            this.totalDeadline = maxMillis > 0 ? start + maxMillis * 1_000_000L : 0;
+            this.maxBlocks = maxBlocks > 0 ? maxBlocks - maxBlocks / LEAF_SHARE_DIVISOR : 0;
+            this.deadline = maxMillis > 0 ? start + (maxMillis - maxMillis / LEAF_SHARE_DIVISOR) * 1_000_000L : 0;
+            this.blocks = new AtomicInteger();
+        }
+
+        /**
+         * Hands the part of the budget that was kept back for the leaves to the leaf phase
+         * Must be called before the leaf search starts, the budget is only shared between threads after that
+         */
+        private void startLeafPhase() {
+            this.maxBlocks = this.totalBlocks;
+            this.deadline = this.totalDeadline;
+            this.exhausted = false;
+        }
+
+        /**
+         * Uses up one block of the budget
+         *
+         * @return True if the block can be looked at, false if the budget has run out
+         */
+        private boolean tryConsume() {
+            if (this.exhausted)
+                return false;
+
+            int blocks = this.blocks.incrementAndGet();
+            if ((this.maxBlocks > 0 && blocks > this.maxBlocks) || (this.deadline != 0 && (blocks & 63) == 0 && System.nanoTime() > this.deadline))
+                this.exhausted = true;
+            return !this.exhausted;
+        }
+
+        private boolean isExhausted() {
+            return this.exhausted;
+        }
+
+    }
+
+    /**
+     * The TreeDefinitions a tree being detected could still be, narrowed down as blocks are found
+     * The combined limits of the remaining TreeDefinitions are only recalculated when the candidates change
+     */
+    private static class TreeCandidates {
+
+        private final TreeDefinitionTable table;
+        private final BitSet mask;
+        private int cardinality;
+        private double maxLogDistanceSquared;
+        private int maxLeafDistance;
+        private boolean detectLeavesDiagonally;
+
+        private TreeCandidates(TreeDefinitionTable table, BitSet mask) {
+            this.table = table;
+            this.mask = mask;
+            this.update();
+        }
+
+        private void update() {
+            this.cardinality = this.mask.cardinality();
+            this.maxLogDistanceSquared = 0;
+            this.maxLeafDistance = 0;
+            this.detectLeavesDiagonally = false;
+            for (int i = this.mask.nextSetBit(0); i >= 0; i = this.mask.nextSetBit(i + 1)) {
+                TreeDefinition treeDefinition = this.table.getTreeDefinition(i);
+                this.maxLogDistanceSquared = Math.max(this.maxLogDistanceSquared, treeDefinition.getMaxLogDistanceFromTrunk() * treeDefinition.getMaxLogDistanceFromTrunk());
+                this.maxLeafDistance = Math.max(this.maxLeafDistance, treeDefinition.getMaxLeafDistanceFromLog());
+                this.detectLeavesDiagonally |= treeDefinition.shouldDetectLeavesDiagonally();
+            }
+        }
+
+        /**
+         * Narrows the candidates down to the TreeDefinitions using a material as the given TreeBlockType
+         *
+         * @param material      The CompatibleMaterial of the block
+         * @param treeBlockType The TreeBlockType of the block
+         */
+        private void narrow(CompatibleMaterial material, TreeBlockType treeBlockType) {
+            this.narrow(this.table.getMask(material, treeBlockType));
+        }
+
+        /**
+         * Narrows the candidates down to the TreeDefinitions in a mask
+         *
+         * @param mask The mask of TreeDefinition indices to keep
+         */
+        private void narrow(BitSet mask) {
+            this.mask.and(mask);
+            if (this.mask.cardinality() != this.cardinality)
+                this.update();
+        }
+
+        private boolean isEmpty() {
+            return this.cardinality == 0;
+        }
+
+        private boolean isLog(CompatibleMaterial material) {
+            return this.table.getLogMask(material).intersects(this.mask);
+        }
+
+        private boolean isLeaf(CompatibleMaterial material) {
+            return this.table.getLeafMask(material).intersects(this.mask);
+        }
+
+        private int getFirstIndex() {
+            return this.mask.nextSetBit(0);
+        }
+
+        private TreeDefinitionTable getTable() {
+            return this.table;
+        }
+
+        private double getMaxLogDistanceSquared() {
+            return this.maxLogDistanceSquared;
+        }
+
+        private int getMaxLeafDistance() {
+            return this.maxLeafDistance;
+        }
+
+        private boolean shouldDetectLeavesDiagonally() {
+            return this.detectLeavesDiagonally;
+        }
+
+    }
+
+}
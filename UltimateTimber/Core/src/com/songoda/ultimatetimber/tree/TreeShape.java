@@ -0,0 +1,70 @@
+package com.songoda.ultimatetimber.tree;
+
+/**
+ * The blocks of a tree found by a TreeDetector, stored as packed block keys
+ * Unlike a DetectedTree this doesn't reference any live blocks, so it can be created off of the main thread
+ */
+public class TreeShape {
+
+    private final TreeDefinition treeDefinition;
+    private final long[] logs;
+    private final long[] leaves;
+    private final boolean truncated;
+    private final int unexploredBlocks;
+
+    public TreeShape(TreeDefinition treeDefinition, long[] logs, long[] leaves, boolean truncated, int unexploredBlocks) {
+        this.treeDefinition = treeDefinition;
+        this.logs = logs;
+        this.leaves = leaves;
+        this.truncated = truncated;
+        this.unexploredBlocks = unexploredBlocks;
+    }
+
+    /**
+     * Gets the TreeDefinition of this tree
+     *
+     * @return The TreeDefinition of this tree
+     */
+    public TreeDefinition getTreeDefinition() {
+        return this.treeDefinition;
+    }
+
+    /**
+     * Gets the keys of the logs of this tree in the order they were found, starting with the initial log
+     * The returned array is shared and must not be modified
+     *
+     * @return The packed keys of the logs
+     */
+    public long[] getLogs() {
+        return this.logs;
+    }
+
+    /**
+     * Gets the keys of the leaves of this tree in the order they were found
+     * The returned array is shared and must not be modified
+     *
+     * @return The packed keys of the leaves
+     */
+    public long[] getLeaves() {
+        return this.leaves;
+    }
+
+    /**
+     * Checks if the detection stopped before the entire tree was found
+     *
+     * @return True if only part of the tree was detected, otherwise false
+     */
+    public boolean isTruncated() {
+        return this.truncated;
+    }
+
+    /**
+     * Gets the number of blocks that were queued to be searched but skipped because the detection was truncated
+     *
+     * @return The number of unexplored blocks
+     */
+    public int getUnexploredBlocks() {
+        return this.unexploredBlocks;
+    }
+
+}
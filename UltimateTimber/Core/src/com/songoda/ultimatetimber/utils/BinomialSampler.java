@@ -0,0 +1,52 @@
+package com.songoda.ultimatetimber.utils;
+
+import java.util.Random;
+
+/**
+ * Samples the number of successes out of many independent rolls with the same chance, without rolling each one
+ */
+public final class BinomialSampler {
+
+    // Above this many expected successes a normal approximation is used instead of counting every success
+    private static final double NORMAL_APPROXIMATION_MEAN = 30;
+
+    private BinomialSampler() {
+
+    }
+
+    /**
+     * Samples a binomial distribution
+     *
+     * @param random      The Random to use
+     * @param trials      The number of rolls
+     * @param probability The chance of a single roll succeeding, between 0 and 1
+     * @return The number of successful rolls, between 0 and trials
+     */
+    public static int sample(Random random, int trials, double probability) {
+        if (trials <= 0 || probability <= 0)
+            return 0;
+        if (probability >= 1)
+            return trials;
+        if (probability > 0.5)
+            return trials - sample(random, trials, 1 - probability);
+
+        double mean = trials * probability;
+        if (mean >= NORMAL_APPROXIMATION_MEAN) {
+            double deviation = Math.sqrt(mean * (1 - probability));
+            long successes = Math.round(mean + deviation * random.nextGaussian());
+            return (int) Math.max(0, Math.min(trials, successes));
+        }
+
+        // Jump straight from one success to the next, the gaps between them are geometrically distributed
+        double logFailure = Math.log1p(-probability);
+        int successes = 0;
+        long roll = 0;
+        while (true) {
+            roll += (long) (Math.log(1 - random.nextDouble()) / logFailure) + 1;
+            if (roll > trials)
+                return successes;
+            successes++;
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.songoda.ultimatetimber.utils;
+
+import org.bukkit.block.Block;
+
+/**
+ * Packs block coordinates into a single long
+ * X and Z use 26 bits each and Y uses 12 bits, which covers the entire world border and build height
+ */
+public final class BlockKey {
+
+    private BlockKey() {
+
+    }
+
+    /**
+     * Packs the given block coordinates into a key
+     *
+     * @param x The block x coordinate
+     * @param y The block y coordinate
+     * @param z The block z coordinate
+     * @return The packed key
+     */
+    public static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (long) (y & 0xFFF);
+    }
+
+    /**
+     * Packs the coordinates of the given block into a key
+     *
+     * @param block The Block
+     * @return The packed key
+     */
+    public static long pack(Block block) {
+        return pack(block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * Gets the x coordinate from a packed key
+     *
+     * @param key The packed key
+     * @return The block x coordinate
+     */
+    public static int getX(long key) {
+        return (int) (key >> 38);
+    }
+
+    /**
+     * Gets the y coordinate from a packed key
+     *
+     * @param key The packed key
+     * @return The block y coordinate
+     */
+    public static int getY(long key) {
+        return (int) (key << 52 >> 52);
+    }
+
+    /**
+     * Gets the z coordinate from a packed key
+     *
+     * @param key The packed key
+     * @return The block z coordinate
+     */
+    public static int getZ(long key) {
+        return (int) (key << 26 >> 38);
+    }
+
+}
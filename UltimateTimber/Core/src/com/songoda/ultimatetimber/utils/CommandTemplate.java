@@ -0,0 +1,103 @@
+package com.songoda.ultimatetimber.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A loot command with its placeholders found up front, so filling them in is a single pass over the parts
+ * Supports %player%, %type%, %xPos%, %yPos% and %zPos%
+ * %count% is left in the filled command, it is replaced once identical commands have been counted
+ */
+public class CommandTemplate {
+
+    public static final String COUNT_PLACEHOLDER = "%count%";
+
+    private static final String[] PLACEHOLDERS = { "%player%", "%type%", "%xPos%", "%yPos%", "%zPos%" };
+    private static final int PLAYER = 0, TYPE = 1, X = 2, Y = 3, Z = 4;
+
+    private final String command;
+    private final String[] literals;
+    private final int[] placeholders;
+
+    public CommandTemplate(String command) {
+        this.command = command;
+
+        List<String> literals = new ArrayList<>();
+        List<Integer> placeholders = new ArrayList<>();
+        int start = 0;
+        int index = 0;
+        while (index < command.length()) {
+            int placeholder = this.findPlaceholder(command, index);
+            if (placeholder == -1) {
+                index++;
+                continue;
+            }
+
+            literals.add(command.substring(start, index));
+            placeholders.add(placeholder);
+            index += PLACEHOLDERS[placeholder].length();
+            start = index;
+        }
+        literals.add(command.substring(start));
+
+        this.literals = literals.toArray(new String[0]);
+        this.placeholders = placeholders.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Fills in the placeholders of this command
+     *
+     * @param player The name of the player
+     * @param type   The key of the tree type
+     * @param x      The block x coordinate
+     * @param y      The block y coordinate
+     * @param z      The block z coordinate
+     * @return The command with its placeholders filled in
+     */
+    public String fill(String player, String type, int x, int y, int z) {
+        if (this.placeholders.length == 0)
+            return this.command;
+
+        StringBuilder builder = new StringBuilder(this.command.length() + 16);
+        for (int i = 0; i < this.placeholders.length; i++) {
+            builder.append(this.literals[i]);
+            switch (this.placeholders[i]) {
+                case PLAYER:
+                    builder.append(player);
+                    break;
+                case TYPE:
+                    builder.append(type);
+                    break;
+                case X:
+                    builder.append(x);
+                    break;
+                case Y:
+                    builder.append(y);
+                    break;
+                case Z:
+                    builder.append(z);
+                    break;
+            }
+        }
+        return builder.append(this.literals[this.literals.length - 1]).toString();
+    }
+
+    /**
+     * Gets the command this template was made from
+     *
+     * @return The original command
+     */
+    public String getCommand() {
+        return this.command;
+    }
+
+    private int findPlaceholder(String command, int index) {
+        if (command.charAt(index) != '%')
+            return -1;
+        for (int i = 0; i < PLACEHOLDERS.length; i++)
+            if (command.startsWith(PLACEHOLDERS[i], index))
+                return i;
+        return -1;
+    }
+
+}
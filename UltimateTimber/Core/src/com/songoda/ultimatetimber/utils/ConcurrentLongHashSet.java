@@ -0,0 +1,67 @@
+package com.songoda.ultimatetimber.utils;
+
+/**
+ * A thread-safe hash set of primitive longs
+ * Keys are spread over a number of independently locked LongHashSets so threads rarely wait on each other
+ */
+public class ConcurrentLongHashSet {
+
+    private final LongHashSet[] stripes;
+    private final int mask;
+
+    public ConcurrentLongHashSet(int concurrencyLevel) {
+        int stripeCount = Integer.highestOneBit(Math.max(1, concurrencyLevel) * 2 - 1);
+        this.stripes = new LongHashSet[stripeCount];
+        this.mask = stripeCount - 1;
+        for (int i = 0; i < stripeCount; i++)
+            this.stripes[i] = new LongHashSet();
+    }
+
+    /**
+     * Adds a key to this set
+     *
+     * @param key The key to add
+     * @return True if the key was not already in this set, otherwise false
+     */
+    public boolean add(long key) {
+        LongHashSet stripe = this.stripe(key);
+        synchronized (stripe) {
+            return stripe.add(key);
+        }
+    }
+
+    /**
+     * Checks if a key is in this set
+     *
+     * @param key The key to check
+     * @return True if the key is in this set, otherwise false
+     */
+    public boolean contains(long key) {
+        LongHashSet stripe = this.stripe(key);
+        synchronized (stripe) {
+            return stripe.contains(key);
+        }
+    }
+
+    /**
+     * Gets the number of keys in this set
+     *
+     * @return The number of keys in this set
+     */
+    public int size() {
+        int size = 0;
+        for (LongHashSet stripe : this.stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private LongHashSet stripe(long key) {
+        // Use the upper bits so the stripe doesn't correlate with the slot inside of it
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return this.stripes[(int) (hash >>> 48) & this.mask];
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.songoda.ultimatetimber.utils;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of primitive longs
+ * Also used as an append-only work queue by reading it with an index
+ */
+public class LongArrayList {
+
+    private long[] values;
+    private int size;
+
+    public LongArrayList() {
+        this(16);
+    }
+
+    public LongArrayList(int initialCapacity) {
+        this.values = new long[Math.max(1, initialCapacity)];
+    }
+
+    /**
+     * Adds a value to the end of this list
+     *
+     * @param value The value to add
+     */
+    public void add(long value) {
+        if (this.size == this.values.length)
+            this.values = Arrays.copyOf(this.values, this.size << 1);
+        this.values[this.size++] = value;
+    }
+
+    /**
+     * Gets the value at the given index
+     *
+     * @param index The index
+     * @return The value at the index
+     */
+    public long get(int index) {
+        if (index >= this.size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        return this.values[index];
+    }
+
+    /**
+     * Gets the number of values in this list
+     *
+     * @return The number of values in this list
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Checks if this list is empty
+     *
+     * @return True if this list contains no values, otherwise false
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Removes all values from this list
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Copies the values of this list into a new array
+     *
+     * @return An array containing every value in this list
+     */
+    public long[] toArray() {
+        return Arrays.copyOf(this.values, this.size);
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.songoda.ultimatetimber.utils;
+
+import java.util.Arrays;
+
+/**
+ * A queue of primitive longs that always polls from the lowest priority first
+ * Priorities are small integers such as y coordinates, each one gets its own bucket
+ * Values with the same priority are polled in the order they were added
+ */
+public class LongBucketQueue {
+
+    private LongArrayList[] buckets;
+    private int[] heads;
+    private int basePriority;
+    private int lowestBucket;
+    private int size;
+
+    public LongBucketQueue() {
+        this.buckets = new LongArrayList[0];
+        this.heads = new int[0];
+    }
+
+    /**
+     * Adds a value to this queue
+     *
+     * @param value    The value to add
+     * @param priority The priority of the value, lower priorities are polled first
+     */
+    public void add(long value, int priority) {
+        if (this.buckets.length == 0) {
+            this.buckets = new LongArrayList[16];
+            this.heads = new int[16];
+            this.basePriority = priority;
+            this.lowestBucket = 0;
+        }
+
+        // Grow towards lower priorities
+        if (priority < this.basePriority) {
+            int shift = Math.max(this.basePriority - priority, this.buckets.length);
+            LongArrayList[] buckets = new LongArrayList[this.buckets.length + shift];
+            int[] heads = new int[buckets.length];
+            System.arraycopy(this.buckets, 0, buckets, shift, this.buckets.length);
+            System.arraycopy(this.heads, 0, heads, shift, this.heads.length);
+            this.buckets = buckets;
+            this.heads = heads;
+            this.basePriority -= shift;
+            this.lowestBucket += shift;
+        }
+
+        // Grow towards higher priorities
+        int index = priority - this.basePriority;
+        if (index >= this.buckets.length) {
+            int length = Math.max(index + 1, this.buckets.length << 1);
+            this.buckets = Arrays.copyOf(this.buckets, length);
+            this.heads = Arrays.copyOf(this.heads, length);
+        }
+
+        LongArrayList bucket = this.buckets[index];
+        if (bucket == null)
+            this.buckets[index] = bucket = new LongArrayList();
+        bucket.add(value);
+
+        if (this.size == 0 || index < this.lowestBucket)
+            this.lowestBucket = index;
+        this.size++;
+    }
+
+    /**
+     * Removes the value with the lowest priority from this queue
+     *
+     * @return The value with the lowest priority
+     */
+    public long poll() {
+        if (this.size == 0)
+            throw new IllegalStateException("Queue is empty");
+
+        while (true) {
+            LongArrayList bucket = this.buckets[this.lowestBucket];
+            if (bucket != null && this.heads[this.lowestBucket] < bucket.size()) {
+                this.size--;
+                return bucket.get(this.heads[this.lowestBucket]++);
+            }
+            this.lowestBucket++;
+        }
+    }
+
+    /**
+     * Gets the number of values in this queue
+     *
+     * @return The number of values in this queue
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Checks if this queue is empty
+     *
+     * @return True if this queue contains no values, otherwise false
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.songoda.ultimatetimber.utils;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash set of primitive longs using linear probing
+ * Avoids boxing and per-entry allocations when tracking large numbers of block keys
+ */
+public class LongHashSet {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+    private boolean containsEmptyKey;
+
+    public LongHashSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(this.keys, EMPTY);
+    }
+
+    /**
+     * Adds a key to this set
+     *
+     * @param key The key to add
+     * @return True if the key was not already in this set, otherwise false
+     */
+    public boolean add(long key) {
+        if (key == EMPTY) {
+            if (this.containsEmptyKey)
+                return false;
+            this.containsEmptyKey = true;
+            this.size++;
+            return true;
+        }
+
+        int slot = this.slot(key);
+        long existing;
+        while ((existing = this.keys[slot]) != EMPTY) {
+            if (existing == key)
+                return false;
+            slot = (slot + 1) & this.mask;
+        }
+
+        this.keys[slot] = key;
+        if (++this.size * 2 > this.keys.length)
+            this.rehash(this.keys.length << 1);
+        return true;
+    }
+
+    /**
+     * Checks if a key is in this set
+     *
+     * @param key The key to check
+     * @return True if the key is in this set, otherwise false
+     */
+    public boolean contains(long key) {
+        if (key == EMPTY)
+            return this.containsEmptyKey;
+
+        int slot = this.slot(key);
+        long existing;
+        while ((existing = this.keys[slot]) != EMPTY) {
+            if (existing == key)
+                return true;
+            slot = (slot + 1) & this.mask;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a key from this set
+     *
+     * @param key The key to remove
+     * @return True if the key was in this set, otherwise false
+     */
+    public boolean remove(long key) {
+        if (key == EMPTY) {
+            if (!this.containsEmptyKey)
+                return false;
+            this.containsEmptyKey = false;
+            this.size--;
+            return true;
+        }
+
+        int slot = this.slot(key);
+        long existing;
+        while ((existing = this.keys[slot]) != EMPTY) {
+            if (existing == key) {
+                this.shiftKeys(slot);
+                this.size--;
+                return true;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of keys in this set
+     *
+     * @return The number of keys in this set
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Checks if this set is empty
+     *
+     * @return True if this set contains no keys, otherwise false
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Removes all keys from this set
+     */
+    public void clear() {
+        Arrays.fill(this.keys, EMPTY);
+        this.containsEmptyKey = false;
+        this.size = 0;
+    }
+
+    /**
+     * Closes the gap left by a removed key so later probes still find their keys
+     *
+     * @param slot The slot that was emptied
+     */
+    private void shiftKeys(int slot) {
+        int last;
+        while (true) {
+            last = slot;
+            slot = (slot + 1) & this.mask;
+            long key;
+            while (true) {
+                if ((key = this.keys[slot]) == EMPTY) {
+                    this.keys[last] = EMPTY;
+                    return;
+                }
+                int ideal = this.slot(key);
+                if (last <= slot ? last >= ideal || ideal > slot : last >= ideal && ideal > slot)
+                    break;
+                slot = (slot + 1) & this.mask;
+            }
+            this.keys[last] = key;
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = this.keys;
+        this.keys = new long[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(this.keys, EMPTY);
+
+        for (long key : oldKeys) {
+            if (key == EMPTY)
+                continue;
+            int slot = this.slot(key);
+            while (this.keys[slot] != EMPTY)
+                slot = (slot + 1) & this.mask;
+            this.keys[slot] = key;
+        }
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & this.mask;
+    }
+
+}
@@ -0,0 +1,200 @@
+package com.songoda.ultimatetimber.utils;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from primitive longs to primitive ints using linear probing
+ * Values are never negative, -1 is returned for keys that aren't in the map
+ */
+public class LongIntHashMap {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int emptyKeyValue = -1;
+
+    public LongIntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(this.keys, EMPTY);
+    }
+
+    /**
+     * Gets the value of a key
+     *
+     * @param key The key to look up
+     * @return The value of the key, or -1 if the key isn't in this map
+     */
+    public int get(long key) {
+        if (key == EMPTY)
+            return this.emptyKeyValue;
+
+        int slot = this.slot(key);
+        long existing;
+        while ((existing = this.keys[slot]) != EMPTY) {
+            if (existing == key)
+                return this.values[slot];
+            slot = (slot + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the value of a key
+     *
+     * @param key   The key to set
+     * @param value The value of the key, must not be negative
+     * @return The previous value of the key, or -1 if the key wasn't in this map
+     */
+    public int put(long key, int value) {
+        if (key == EMPTY) {
+            int previous = this.emptyKeyValue;
+            if (previous == -1)
+                this.size++;
+            this.emptyKeyValue = value;
+            return previous;
+        }
+
+        int slot = this.slot(key);
+        long existing;
+        while ((existing = this.keys[slot]) != EMPTY) {
+            if (existing == key) {
+                int previous = this.values[slot];
+                this.values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        if (++this.size * 2 > this.keys.length)
+            this.rehash(this.keys.length << 1);
+        return -1;
+    }
+
+    /**
+     * Removes a key from this map
+     *
+     * @param key The key to remove
+     * @return The value the key had, or -1 if the key wasn't in this map
+     */
+    public int remove(long key) {
+        if (key == EMPTY) {
+            int previous = this.emptyKeyValue;
+            if (previous != -1)
+                this.size--;
+            this.emptyKeyValue = -1;
+            return previous;
+        }
+
+        int slot = this.slot(key);
+        long existing;
+        while ((existing = this.keys[slot]) != EMPTY) {
+            if (existing == key) {
+                int previous = this.values[slot];
+                this.shiftKeys(slot);
+                this.size--;
+                return previous;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the number of keys in this map
+     *
+     * @return The number of keys in this map
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Creates a copy of this map
+     * A copy that is no longer modified can be read by any number of threads at once
+     *
+     * @return A new map with the same keys and values
+     */
+    public LongIntHashMap copy() {
+        LongIntHashMap copy = new LongIntHashMap(0);
+        copy.keys = this.keys.clone();
+        copy.values = this.values.clone();
+        copy.mask = this.mask;
+        copy.size = this.size;
+        copy.emptyKeyValue = this.emptyKeyValue;
+        return copy;
+    }
+
+    /**
+     * Removes all keys from this map
+     */
+    public void clear() {
+        Arrays.fill(this.keys, EMPTY);
+        this.emptyKeyValue = -1;
+        this.size = 0;
+    }
+
+    /**
+     * Closes the gap left by a removed key so later probes still find their keys
+     *
+     * @param slot The slot that was emptied
+     */
+    private void shiftKeys(int slot) {
+        int last;
+        while (true) {
+            last = slot;
+            slot = (slot + 1) & this.mask;
+            long key;
+            while (true) {
+                if ((key = this.keys[slot]) == EMPTY) {
+                    this.keys[last] = EMPTY;
+                    return;
+                }
+                int ideal = this.slot(key);
+                if (last <= slot ? last >= ideal || ideal > slot : last >= ideal && ideal > slot)
+                    break;
+                slot = (slot + 1) & this.mask;
+            }
+            this.keys[last] = key;
+            this.values[last] = this.values[slot];
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(this.keys, EMPTY);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key == EMPTY)
+                continue;
+            int slot = this.slot(key);
+            while (this.keys[slot] != EMPTY)
+                slot = (slot + 1) & this.mask;
+            this.keys[slot] = key;
+            this.values[slot] = oldValues[i];
+        }
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & this.mask;
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.songoda.ultimatetimber.utils;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel that expires values after a number of ticks
+ * Values are put in the slot of their deadline tick, so advancing only looks at one slot
+ * Deadlines further away than the number of slots wait in their slot for the wheel to come around again
+ *
+ * @param <T> The type of the scheduled values
+ */
+public class TimingWheel<T> {
+
+    private final Slot[] slots;
+    private final int mask;
+    private long tick;
+    private int size;
+    private Object[] expired;
+
+    public TimingWheel(int slots) {
+        int capacity = Integer.highestOneBit(Math.max(2, slots) * 2 - 1);
+        this.slots = new Slot[capacity];
+        this.mask = capacity - 1;
+        this.expired = new Object[16];
+    }
+
+    /**
+     * Schedules a value to expire after a number of ticks
+     *
+     * @param value The value to schedule
+     * @param delay The number of ticks until the value expires, at least 1
+     */
+    public void schedule(T value, int delay) {
+        long deadline = this.tick + Math.max(1, delay);
+        int index = (int) deadline & this.mask;
+        Slot slot = this.slots[index];
+        if (slot == null)
+            this.slots[index] = slot = new Slot();
+        slot.add(value, deadline);
+        this.size++;
+    }
+
+    /**
+     * Advances this wheel by one tick
+     *
+     * @param expiredCallback Called for each value whose deadline is this tick, may schedule values again
+     *                        if it throws for a value the rest are still called, then the first exception is rethrown
+     */
+    @SuppressWarnings("unchecked")
+    public void advance(Consumer<T> expiredCallback) {
+        this.tick++;
+        if (this.size == 0)
+            return;
+
+        Slot slot = this.slots[(int) this.tick & this.mask];
+        if (slot == null || slot.size == 0)
+            return;
+
+        // Take the expired values out first so the callback can schedule into this same slot
+        int expiredCount = 0;
+        int kept = 0;
+        for (int i = 0; i < slot.size; i++) {
+            if (slot.deadlines[i] <= this.tick) {
+                if (expiredCount == this.expired.length)
+                    this.expired = Arrays.copyOf(this.expired, expiredCount << 1);
+                this.expired[expiredCount++] = slot.values[i];
+            } else {
+                slot.values[kept] = slot.values[i];
+                slot.deadlines[kept++] = slot.deadlines[i];
+            }
+        }
+        Arrays.fill(slot.values, kept, slot.size, null);
+        slot.size = kept;
+        this.size -= expiredCount;
+
+        // The values were already taken out of the slot, so stopping at a failing callback would lose the rest
+        Object[] expired = this.expired;
+        RuntimeException failure = null;
+        try {
+            for (int i = 0; i < expiredCount; i++) {
+                T value = (T) expired[i];
+                expired[i] = null;
+                try {
+                    expiredCallback.accept(value);
+                } catch (RuntimeException ex) {
+                    if (failure == null) {
+                        failure = ex;
+                    } else {
+                        failure.addSuppressed(ex);
+                    }
+                }
+            }
+        } finally {
+            Arrays.fill(expired, 0, expiredCount, null);
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Gets the current tick of this wheel
+     *
+     * @return The number of times this wheel has been advanced
+     */
+    public long getTick() {
+        return this.tick;
+    }
+
+    /**
+     * Gets the number of values waiting to expire
+     *
+     * @return The number of scheduled values
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Removes all scheduled values
+     */
+    public void clear() {
+        for (Slot slot : this.slots) {
+            if (slot == null)
+                continue;
+            Arrays.fill(slot.values, 0, slot.size, null);
+            slot.size = 0;
+        }
+        this.size = 0;
+    }
+
+    private static class Slot {
+
+        private Object[] values = new Object[4];
+        private long[] deadlines = new long[4];
+        private int size;
+
+        private void add(Object value, long deadline) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size << 1);
+                this.deadlines = Arrays.copyOf(this.deadlines, this.size << 1);
+            }
+            this.values[this.size] = value;
+            this.deadlines[this.size++] = deadline;
+        }
+
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.songoda.ultimatetimber.voxel;
+
+import com.songoda.core.compatibility.CompatibleMaterial;
+
+/**
+ * Stores the materials of a box of blocks in a flat array
+ * Useful for copying a region once and searching it many times, or for building test trees without a server
+ * Blocks outside of the box are unreadable
+ */
+public class DenseVoxelSource implements VoxelSource {
+
+    private static final CompatibleMaterial[] MATERIALS = CompatibleMaterial.values();
+
+    private final int minX, minY, minZ;
+    private final int sizeX, sizeY, sizeZ;
+    private final short[] materials;
+
+    public DenseVoxelSource(int minX, int minY, int minZ, int sizeX, int sizeY, int sizeZ) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.materials = new short[sizeX * sizeY * sizeZ];
+    }
+
+    /**
+     * Copies a box of blocks out of another VoxelSource
+     *
+     * @param source The VoxelSource to copy from
+     * @param minX   The lowest x coordinate of the box
+     * @param minY   The lowest y coordinate of the box
+     * @param minZ   The lowest z coordinate of the box
+     * @param maxX   The highest x coordinate of the box
+     * @param maxY   The highest y coordinate of the box
+     * @param maxZ   The highest z coordinate of the box
+     * @return A new DenseVoxelSource containing the copied blocks
+     */
+    public static DenseVoxelSource copyOf(VoxelSource source, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        DenseVoxelSource copy = new DenseVoxelSource(minX, minY, minZ, maxX - minX + 1, maxY - minY + 1, maxZ - minZ + 1);
+        for (int x = minX; x <= maxX; x++)
+            for (int z = minZ; z <= maxZ; z++)
+                for (int y = minY; y <= maxY; y++)
+                    copy.setMaterial(x, y, z, source.getMaterial(x, y, z));
+        return copy;
+    }
+
+    /**
+     * Sets the material of a block, blocks outside of the box are ignored
+     *
+     * @param x        The block x coordinate
+     * @param y        The block y coordinate
+     * @param z        The block z coordinate
+     * @param material The CompatibleMaterial of the block, or null to make it unreadable
+     */
+    public void setMaterial(int x, int y, int z, CompatibleMaterial material) {
+        int index = this.indexOf(x, y, z);
+        if (index != -1)
+            this.materials[index] = (short) (material == null ? 0 : material.ordinal() + 1);
+    }
+
+    @Override
+    public CompatibleMaterial getMaterial(int x, int y, int z) {
+        int index = this.indexOf(x, y, z);
+        if (index == -1)
+            return null;
+
+        int material = this.materials[index];
+        return material == 0 ? null : MATERIALS[material - 1];
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    private int indexOf(int x, int y, int z) {
+        x -= this.minX;
+        y -= this.minY;
+        z -= this.minZ;
+        if (x < 0 || x >= this.sizeX || y < 0 || y >= this.sizeY || z < 0 || z >= this.sizeZ)
+            return -1;
+        return (x * this.sizeZ + z) * this.sizeY + y;
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.songoda.ultimatetimber.voxel;
+
+import com.songoda.core.compatibility.CompatibleMaterial;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+
+/**
+ * Reads materials from chunk snapshots, safe to use off of the main thread
+ * Blocks in chunks that weren't loaded are unreadable so trees stop at unloaded chunks
+ */
+public class SnapshotVoxelSource implements VoxelSource {
+
+    private final ChunkSnapshot[] snapshots;
+    private final int minChunkX, minChunkZ, width, length;
+    private final int minHeight, maxHeight;
+
+    public SnapshotVoxelSource(ChunkSnapshot[] snapshots, int minChunkX, int minChunkZ, int width, int length, int minHeight, int maxHeight) {
+        this.snapshots = snapshots;
+        this.minChunkX = minChunkX;
+        this.minChunkZ = minChunkZ;
+        this.width = width;
+        this.length = length;
+        this.minHeight = minHeight;
+        this.maxHeight = maxHeight;
+    }
+
+    /**
+     * Captures snapshots of the loaded chunks within a distance of a block, must be called on the main thread
+     *
+     * @param world     The World to capture
+     * @param x         The block x coordinate at the center
+     * @param z         The block z coordinate at the center
+     * @param reach     The number of blocks to capture in every direction
+     * @param minHeight The lowest y coordinate of the world
+     * @return A SnapshotVoxelSource backed by the captured snapshots
+     */
+    public static SnapshotVoxelSource capture(World world, int x, int z, int reach, int minHeight) {
+        int minChunkX = (x - reach) >> 4, maxChunkX = (x + reach) >> 4;
+        int minChunkZ = (z - reach) >> 4, maxChunkZ = (z + reach) >> 4;
+        int width = maxChunkX - minChunkX + 1, length = maxChunkZ - minChunkZ + 1;
+
+        ChunkSnapshot[] snapshots = new ChunkSnapshot[width * length];
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++)
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++)
+                if (world.isChunkLoaded(chunkX, chunkZ))
+                    snapshots[(chunkX - minChunkX) * length + (chunkZ - minChunkZ)] = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+
+        return new SnapshotVoxelSource(snapshots, minChunkX, minChunkZ, width, length, minHeight, world.getMaxHeight());
+    }
+
+    @Override
+    public CompatibleMaterial getMaterial(int x, int y, int z) {
+        if (y < this.minHeight || y >= this.maxHeight)
+            return CompatibleMaterial.AIR;
+
+        int chunkX = (x >> 4) - this.minChunkX, chunkZ = (z >> 4) - this.minChunkZ;
+        if (chunkX < 0 || chunkX >= this.width || chunkZ < 0 || chunkZ >= this.length)
+            return null;
+
+        ChunkSnapshot snapshot = this.snapshots[chunkX * this.length + chunkZ];
+        if (snapshot == null)
+            return null;
+
+        return CompatibleMaterial.getMaterial(snapshot.getBlockType(x & 15, y, z & 15));
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+}
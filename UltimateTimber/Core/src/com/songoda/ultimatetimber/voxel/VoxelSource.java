@@ -0,0 +1,31 @@
+package com.songoda.ultimatetimber.voxel;
+
+import com.songoda.core.compatibility.CompatibleMaterial;
+
+/**
+ * Answers what material is at a block coordinate
+ * Tree detection only ever looks at blocks through a VoxelSource, so it doesn't care if the blocks come from
+ * the live world, chunk snapshots or an in-memory copy
+ */
+public interface VoxelSource {
+
+    /**
+     * Gets the material of a block
+     *
+     * @param x The block x coordinate
+     * @param y The block y coordinate
+     * @param z The block z coordinate
+     * @return The CompatibleMaterial of the block, or null if it can't be read
+     */
+    CompatibleMaterial getMaterial(int x, int y, int z);
+
+    /**
+     * Checks if this source can be read by multiple threads at once
+     *
+     * @return True if this source is thread-safe, otherwise false
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+
+}
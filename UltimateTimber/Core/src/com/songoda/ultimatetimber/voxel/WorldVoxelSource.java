@@ -0,0 +1,22 @@
+package com.songoda.ultimatetimber.voxel;
+
+import com.songoda.core.compatibility.CompatibleMaterial;
+import org.bukkit.World;
+
+/**
+ * Reads materials straight from a live world, must only be used on the main thread
+ */
+public class WorldVoxelSource implements VoxelSource {
+
+    private final World world;
+
+    public WorldVoxelSource(World world) {
+        this.world = world;
+    }
+
+    @Override
+    public CompatibleMaterial getMaterial(int x, int y, int z) {
+        return CompatibleMaterial.getMaterial(this.world.getBlockAt(x, y, z));
+    }
+
+}
@@ -7,12 +7,18 @@ import com.songoda.core.configuration.Config;
 import com.songoda.core.hooks.LogManager;
 import com.songoda.ultimatetimber.commands.CommandGiveAxe;
 import com.songoda.ultimatetimber.commands.CommandReload;
+import com.songoda.ultimatetimber.commands.CommandStatus;
+import com.songoda.ultimatetimber.commands.CommandLink;
+import com.songoda.ultimatetimber.commands.CommandStorage;
 import com.songoda.ultimatetimber.commands.CommandToggle;
 import com.songoda.ultimatetimber.manager.ChoppingManager;
 import com.songoda.ultimatetimber.manager.ConfigurationManager;
+import com.songoda.ultimatetimber.manager.GrownTreeManager;
+import com.songoda.ultimatetimber.manager.LootSinkManager;
 import com.songoda.ultimatetimber.manager.Manager;
 import com.songoda.ultimatetimber.manager.PlacedBlockManager;
 import com.songoda.ultimatetimber.manager.SaplingManager;
+import com.songoda.ultimatetimber.manager.TimerManager;
 import com.songoda.ultimatetimber.manager.TreeAnimationManager;
 import com.songoda.ultimatetimber.manager.TreeDefinitionManager;
 import com.songoda.ultimatetimber.manager.TreeDetectionManager;
@@ -31,8 +37,11 @@ public class UltimateTimber extends SongodaPlugin {
     private ChoppingManager choppingManager;
     private ConfigurationManager configurationManager;
     private com.songoda.core.commands.CommandManager commandManager;
+    private GrownTreeManager grownTreeManager;
+    private LootSinkManager lootSinkManager;
     private PlacedBlockManager placedBlockManager;
     private SaplingManager saplingManager;
+    private TimerManager timerManager;
     private TreeAnimationManager treeAnimationManager;
     private TreeDefinitionManager treeDefinitionManager;
     private TreeDetectionManager treeDetectionManager;
@@ -61,21 +70,28 @@ public class UltimateTimber extends SongodaPlugin {
                 .addSubCommands(
                         new CommandReload(this),
                         new CommandToggle(this),
-                        new CommandGiveAxe(this)
+                        new CommandGiveAxe(this),
+                        new CommandStatus(this),
+                        new CommandStorage(this),
+                        new CommandLink(this)
                 );
 
         // Register managers
         this.managers = new HashSet<>();
         this.choppingManager = this.registerManager(ChoppingManager.class);
         this.configurationManager = new ConfigurationManager(this);
+        this.grownTreeManager = this.registerManager(GrownTreeManager.class);
+        this.lootSinkManager = this.registerManager(LootSinkManager.class);
         this.placedBlockManager = this.registerManager(PlacedBlockManager.class);
         this.saplingManager = this.registerManager(SaplingManager.class);
+        this.timerManager = this.registerManager(TimerManager.class);
         this.treeAnimationManager = this.registerManager(TreeAnimationManager.class);
         this.treeDefinitionManager = this.registerManager(TreeDefinitionManager.class);
         this.treeDetectionManager = this.registerManager(TreeDetectionManager.class);
         this.treeFallManager = this.registerManager(TreeFallManager.class);
 
         this.choppingManager.loadPlayers();
+        this.lootSinkManager.loadData();
         this.reloadConfig();
     }
 
@@ -105,7 +121,10 @@ public class UltimateTimber extends SongodaPlugin {
      */
     public void disable() {
         this.configurationManager.disable();
-        this.managers.forEach(Manager::disable);
+
+        // Animations hand out the rest of their loot when they're disabled, so the managers that deliver it go after them
+        this.treeAnimationManager.disable();
+        this.managers.stream().filter(manager -> manager != this.treeAnimationManager).forEach(Manager::disable);
     }
 
     /**
@@ -144,6 +163,24 @@ public class UltimateTimber extends SongodaPlugin {
         return this.configurationManager;
     }
 
+    /**
+     * Gets the grown tree manager
+     *
+     * @return The GrownTreeManager instance
+     */
+    public GrownTreeManager getGrownTreeManager() {
+        return this.grownTreeManager;
+    }
+
+    /**
+     * Gets the loot sink manager
+     *
+     * @return The LootSinkManager instance
+     */
+    public LootSinkManager getLootSinkManager() {
+        return this.lootSinkManager;
+    }
+
     /**
      * Gets the placed block manager
      *
@@ -162,6 +199,15 @@ public class UltimateTimber extends SongodaPlugin {
         return this.saplingManager;
     }
 
+    /**
+     * Gets the timer manager
+     *
+     * @return The TimerManager instance
+     */
+    public TimerManager getTimerManager() {
+        return this.timerManager;
+    }
+
     /**
      * Gets the tree animation manager
      *
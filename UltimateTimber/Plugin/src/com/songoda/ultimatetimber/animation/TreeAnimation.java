@@ -1,40 +1,53 @@
 package com.songoda.ultimatetimber.animation;
 
-import com.songoda.core.compatibility.CompatibleHand;
 import com.songoda.core.compatibility.CompatibleMaterial;
 import com.songoda.ultimatetimber.UltimateTimber;
+import com.songoda.ultimatetimber.manager.ConfigurationManager;
+import com.songoda.ultimatetimber.manager.TreeAnimationManager;
+import com.songoda.ultimatetimber.tree.ChopContext;
 import com.songoda.ultimatetimber.tree.DetectedTree;
 import com.songoda.ultimatetimber.tree.FallingTreeBlock;
 import com.songoda.ultimatetimber.tree.ITreeBlock;
+import com.songoda.ultimatetimber.tree.LootBatch;
 import com.songoda.ultimatetimber.tree.TreeBlock;
 import com.songoda.ultimatetimber.tree.TreeBlockSet;
+import com.songoda.ultimatetimber.tree.TreeBlockType;
+import com.songoda.ultimatetimber.tree.TreeDefinition;
 import com.songoda.ultimatetimber.utils.BlockUtils;
+import com.songoda.ultimatetimber.utils.BlockWriter;
+import com.songoda.ultimatetimber.utils.LongHashSet;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
-import org.bukkit.Material;
 import org.bukkit.block.Block;
-import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.FallingBlock;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.Vector;
+
+import java.util.ArrayList;
 
 public abstract class TreeAnimation {
 
     protected final TreeAnimationType treeAnimationType;
     protected final DetectedTree detectedTree;
+    protected final ChopContext chopContext;
     protected final Player player;
-    protected final boolean hasSilkTouch;
     protected TreeBlockSet<FallingBlock> fallingTreeBlocks;
+    private final LongHashSet reservedBlocks;
+    private final BlockWriter blockWriter;
+    private final LootBatch lootBatch;
+    private Runnable whenFinished;
+    private boolean finished;
 
-    TreeAnimation(TreeAnimationType treeAnimationType, DetectedTree detectedTree, Player player) {
+    TreeAnimation(TreeAnimationType treeAnimationType, DetectedTree detectedTree, ChopContext chopContext) {
         this.treeAnimationType = treeAnimationType;
         this.detectedTree = detectedTree;
-        this.player = player;
-
-        ItemStack itemInHand = CompatibleHand.getHand(CompatibleHand.MAIN_HAND).getItem(player);
-        this.hasSilkTouch = itemInHand != null && itemInHand.hasItemMeta() && itemInHand.getItemMeta().hasEnchant(Enchantment.SILK_TOUCH);
+        this.chopContext = chopContext;
+        this.player = chopContext.getPlayer();
 
         this.fallingTreeBlocks = new TreeBlockSet<>(); // Should be overridden in any subclasses that need to use it
+        this.reservedBlocks = new LongHashSet(detectedTree.getDetectedTreeBlocks().size());
+        this.blockWriter = new BlockWriter(ConfigurationManager.Setting.VANILLA_BLOCK_UPDATES.getBoolean());
+        this.lootBatch = new LootBatch();
     }
 
     /**
@@ -42,7 +55,92 @@ public abstract class TreeAnimation {
      *
      * @param whenFinished The runnable to run when the animation is done
      */
-    public abstract void playAnimation(Runnable whenFinished);
+    public void playAnimation(Runnable whenFinished) {
+        this.whenFinished = whenFinished;
+        this.startAnimation();
+    }
+
+    /**
+     * Starts this tree topple animation
+     * Anything that happens on later ticks is done in tick()
+     */
+    protected abstract void startAnimation();
+
+    /**
+     * Advances this tree topple animation by one tick
+     * Called by the TreeAnimationManager every tick, starting on the tick after the animation started, until it finishes
+     */
+    public void tick() {
+
+    }
+
+    /**
+     * Ends this tree topple animation right away instead of waiting for it to play out
+     * Blocks that haven't been broken yet are broken in place and falling blocks land where they are,
+     * the replaced blocks and loot still have to be flushed afterwards
+     */
+    public void finishNow() {
+        if (this.finished)
+            return;
+
+        try {
+            this.completeAnimation();
+
+            TreeAnimationManager treeAnimationManager = UltimateTimber.getInstance().getTreeAnimationManager();
+            for (ITreeBlock<FallingBlock> fallingTreeBlock : new ArrayList<>(this.fallingTreeBlocks.getAllTreeBlocks())) {
+                treeAnimationManager.runFallingBlockImpact(this, fallingTreeBlock);
+                FallingBlock fallingBlock = fallingTreeBlock.getBlock();
+                if (!fallingBlock.isDead())
+                    fallingBlock.remove();
+            }
+        } finally {
+            this.finish();
+        }
+    }
+
+    /**
+     * Breaks the blocks of this animation that haven't been broken or turned into falling blocks yet
+     * Called by finishNow(), falling blocks that were already spawned are landed afterwards
+     */
+    protected void completeAnimation() {
+
+    }
+
+    /**
+     * Breaks a tree block in place and rolls its loot, as long as it's still part of the tree
+     *
+     * @param treeBlock The tree block to break
+     */
+    protected void breakTreeBlock(ITreeBlock<Block> treeBlock) {
+        TreeDefinition td = this.detectedTree.getTreeDefinition();
+        CompatibleMaterial material = CompatibleMaterial.getMaterial(treeBlock.getBlock());
+        if (treeBlock.getTreeBlockType() == TreeBlockType.LOG ? !td.getLogMaterial().contains(material) : !td.getLeafMaterial().contains(material))
+            return;
+
+        this.rollLoot(treeBlock);
+        this.replaceBlock((TreeBlock) treeBlock);
+    }
+
+    /**
+     * Finishes this tree topple animation, it won't be ticked anymore
+     */
+    protected void finish() {
+        if (this.finished)
+            return;
+
+        this.finished = true;
+        if (this.whenFinished != null)
+            this.whenFinished.run();
+    }
+
+    /**
+     * Checks if this tree topple animation has finished
+     *
+     * @return True if this animation has finished, otherwise false
+     */
+    public boolean isFinished() {
+        return this.finished;
+    }
 
     /**
      * Gets the type of tree animation that this is
@@ -71,13 +169,22 @@ public abstract class TreeAnimation {
         return this.player;
     }
 
+    /**
+     * Gets the ChopContext of the player who started this tree animation
+     *
+     * @return The ChopContext of this tree animation
+     */
+    public ChopContext getChopContext() {
+        return this.chopContext;
+    }
+
     /**
      * Checks if this tree animation has silk touch
      *
      * @return True if this animation has silk touch, otherwise false
      */
     public boolean hasSilkTouch() {
-        return this.hasSilkTouch;
+        return this.chopContext.hasSilkTouch();
     }
 
     /**
@@ -90,6 +197,26 @@ public abstract class TreeAnimation {
         return this.fallingTreeBlocks;
     }
 
+    /**
+     * Marks a block of the detected tree as reserved by this animation
+     *
+     * @param key The packed block key
+     * @return True if the block wasn't reserved by this animation yet, otherwise false
+     */
+    public boolean reserveBlock(long key) {
+        return this.reservedBlocks.add(key);
+    }
+
+    /**
+     * Releases a block of the detected tree that was reserved by this animation
+     *
+     * @param key The packed block key
+     * @return True if the block was reserved by this animation, otherwise false
+     */
+    public boolean releaseBlock(long key) {
+        return this.reservedBlocks.remove(key);
+    }
+
     /**
      * Converts a TreeBlock into a FallingTreeBlock
      *
@@ -97,6 +224,22 @@ public abstract class TreeAnimation {
      * @return A FallingTreeBlock that has been converted from a TreeBlock
      */
     protected FallingTreeBlock convertToFallingBlock(TreeBlock treeBlock) {
+        return this.convertToFallingBlock(treeBlock, new Vector(), false);
+    }
+
+    /**
+     * Converts a TreeBlock into a FallingTreeBlock that starts out moving
+     *
+     * @param treeBlock The TreeBlock to convert
+     * @param velocity The initial velocity of the falling block
+     * @param applyGravity If the falling block should be affected by gravity
+     * @return A FallingTreeBlock that has been converted from a TreeBlock, or null if there is nothing to convert
+     */
+    protected FallingTreeBlock convertToFallingBlock(TreeBlock treeBlock, Vector velocity, boolean applyGravity) {
+        // Replaced blocks stay in the world until the next flush, a block that was already converted must not spawn twice
+        if (this.blockWriter.isQueued(treeBlock.getKey()))
+            return null;
+
         Location location = treeBlock.getLocation().clone().add(0.5, 0, 0.5);
         Block block = treeBlock.getBlock();
         CompatibleMaterial material = CompatibleMaterial.getMaterial(block);
@@ -106,22 +249,66 @@ public abstract class TreeAnimation {
             return null;
         }
 
-        FallingBlock fallingBlock = BlockUtils.spawnFallingBlock(location, material);
-        BlockUtils.configureFallingBlock(fallingBlock);
+        FallingBlock fallingBlock = BlockUtils.spawnFallingBlock(location, material, velocity, applyGravity);
 
-        FallingTreeBlock fallingTreeBlock = new FallingTreeBlock(fallingBlock, treeBlock.getTreeBlockType());
+        FallingTreeBlock fallingTreeBlock = new FallingTreeBlock(fallingBlock, treeBlock.getTreeBlockType(), treeBlock.getKey());
         this.replaceBlock(treeBlock);
         return fallingTreeBlock;
     }
 
     /**
      * Replaces a given block with a new one
+     * The block is removed from the world when the removed blocks are flushed
      *
      * @param treeBlock The tree block to replace
      */
     public void replaceBlock(TreeBlock treeBlock) {
-        treeBlock.getBlock().setType(Material.AIR);
-        UltimateTimber.getInstance().getSaplingManager().replantSapling(this.detectedTree.getTreeDefinition(), treeBlock);
+        this.blockWriter.removeBlock(treeBlock);
+    }
+
+    /**
+     * Removes all blocks replaced since the last flush from the world in one go
+     * Called by the TreeAnimationManager after the animation is started and after every tick
+     */
+    public void flushReplacedBlocks() {
+        if (this.blockWriter.isEmpty())
+            return;
+
+        UltimateTimber ultimateTimber = UltimateTimber.getInstance();
+        this.blockWriter.flush(treeBlock -> {
+            ultimateTimber.getTreeAnimationManager().releaseBlock(this, treeBlock);
+            ultimateTimber.getSaplingManager().replantSapling(this.detectedTree.getTreeDefinition(), treeBlock);
+        });
+    }
+
+    /**
+     * Rolls the loot of a tree block of this animation
+     * The loot is handed out together with the rest of the loot of the tick when the loot is flushed
+     *
+     * @param treeBlock The tree block to roll the loot of
+     */
+    public void rollLoot(ITreeBlock<?> treeBlock) {
+        UltimateTimber.getInstance().getTreeDefinitionManager().rollTreeLoot(this.detectedTree.getTreeDefinition(), treeBlock, this.chopContext, false, this.lootBatch);
+    }
+
+    /**
+     * Hands out all loot rolled since the last flush as merged stacks
+     * Loot commands are held back until the animation finishes, so identical commands of the whole tree run together
+     * Called by the TreeAnimationManager after the animation is started and after every tick
+     */
+    public void flushLoot() {
+        if (!this.lootBatch.isEmpty())
+            UltimateTimber.getInstance().getTreeDefinitionManager().deliverLoot(this.lootBatch, this.chopContext, this.finished);
+    }
+
+    /**
+     * Adds a falling block to the animation and indexes it by its entity id
+     *
+     * @param fallingTreeBlock The FallingTreeBlock to add
+     */
+    protected void addFallingBlock(FallingTreeBlock fallingTreeBlock) {
+        if (this.fallingTreeBlocks.add(fallingTreeBlock))
+            UltimateTimber.getInstance().getTreeAnimationManager().indexFallingBlock(this, fallingTreeBlock);
     }
 
     /**
@@ -130,12 +317,19 @@ public abstract class TreeAnimation {
      * @param fallingBlock The FallingBlock to remove
      */
     public void removeFallingBlock(FallingBlock fallingBlock) {
-        for (ITreeBlock<FallingBlock> fallingTreeBlock : this.fallingTreeBlocks.getAllTreeBlocks()) {
-            if (fallingTreeBlock.getBlock().equals(fallingBlock)) {
-                this.fallingTreeBlocks.remove(fallingTreeBlock);
-                return;
-            }
-        }
+        ITreeBlock<FallingBlock> fallingTreeBlock = UltimateTimber.getInstance().getTreeAnimationManager().getFallingTreeBlock(fallingBlock);
+        if (fallingTreeBlock != null)
+            this.removeFallingBlock(fallingTreeBlock);
+    }
+
+    /**
+     * Removes a falling tree block from the animation
+     *
+     * @param fallingTreeBlock The falling tree block to remove
+     */
+    public void removeFallingBlock(ITreeBlock<FallingBlock> fallingTreeBlock) {
+        if (this.fallingTreeBlocks.remove(fallingTreeBlock))
+            UltimateTimber.getInstance().getTreeAnimationManager().unindexFallingBlock(fallingTreeBlock.getBlock());
     }
 
 }
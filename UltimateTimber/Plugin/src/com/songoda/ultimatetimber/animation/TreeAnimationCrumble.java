@@ -3,6 +3,8 @@ package com.songoda.ultimatetimber.animation;
 import com.songoda.core.compatibility.CompatibleMaterial;
 import com.songoda.ultimatetimber.UltimateTimber;
 import com.songoda.ultimatetimber.manager.ConfigurationManager;
+import com.songoda.ultimatetimber.manager.TreeAnimationManager;
+import com.songoda.ultimatetimber.tree.ChopContext;
 import com.songoda.ultimatetimber.tree.DetectedTree;
 import com.songoda.ultimatetimber.tree.FallingTreeBlock;
 import com.songoda.ultimatetimber.tree.ITreeBlock;
@@ -10,96 +12,83 @@ import com.songoda.ultimatetimber.tree.TreeBlock;
 import com.songoda.ultimatetimber.tree.TreeBlockSet;
 import com.songoda.ultimatetimber.tree.TreeBlockType;
 import com.songoda.ultimatetimber.tree.TreeDefinition;
-import com.songoda.ultimatetimber.utils.BlockUtils;
 import com.songoda.ultimatetimber.utils.ParticleUtils;
 import com.songoda.ultimatetimber.utils.SoundUtils;
 import org.bukkit.block.Block;
-import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.util.Vector;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 public class TreeAnimationCrumble extends TreeAnimation {
 
-    public TreeAnimationCrumble(DetectedTree detectedTree, Player player) {
-        super(TreeAnimationType.CRUMBLE, detectedTree, player);
+    private boolean useCustomSound;
+    private boolean useCustomParticles;
+    private TreeBlockSet.LayerCursor<Block> layers;
+    private List<ITreeBlock<Block>> partition;
+
+    public TreeAnimationCrumble(DetectedTree detectedTree, ChopContext chopContext) {
+        super(TreeAnimationType.CRUMBLE, detectedTree, chopContext);
     }
 
     @Override
-    public void playAnimation(Runnable whenFinished) {
-        UltimateTimber ultimateTimber = UltimateTimber.getInstance();
-
-        boolean useCustomSound = ConfigurationManager.Setting.USE_CUSTOM_SOUNDS.getBoolean();
-        boolean useCustomParticles = ConfigurationManager.Setting.USE_CUSTOM_PARTICLES.getBoolean();
-
-        // Order blocks by y-axis, lowest first, but shuffled randomly
-        int currentY = -1;
-        List<List<ITreeBlock<Block>>> treeBlocks = new ArrayList<>();
-        List<ITreeBlock<Block>> currentPartition = new ArrayList<>();
-        List<ITreeBlock<Block>> orderedDetectedTreeBlocks = new ArrayList<>(this.detectedTree.getDetectedTreeBlocks().getAllTreeBlocks());
-        orderedDetectedTreeBlocks.sort(Comparator.comparingInt(x -> x.getLocation().getBlockY()));
-        for (ITreeBlock<Block> treeBlock : orderedDetectedTreeBlocks) {
-            if (currentY != treeBlock.getLocation().getBlockY()) {
-                Collections.shuffle(currentPartition);
-                treeBlocks.add(new ArrayList<>(currentPartition));
-                currentPartition.clear();
-                currentY = treeBlock.getLocation().getBlockY();
-            }
-            currentPartition.add(treeBlock);
-        }
+    protected void startAnimation() {
+        this.useCustomSound = ConfigurationManager.Setting.USE_CUSTOM_SOUNDS.getBoolean();
+        this.useCustomParticles = ConfigurationManager.Setting.USE_CUSTOM_PARTICLES.getBoolean();
 
-        Collections.shuffle(currentPartition);
-        treeBlocks.add(new ArrayList<>(currentPartition));
+        // Crumble one layer at a time, lowest first, but shuffled randomly within each layer
+        this.layers = this.detectedTree.getDetectedTreeBlocks().layerCursor(null);
+        this.partition = Collections.emptyList();
+    }
 
+    @Override
+    public void tick() {
         TreeDefinition td = this.detectedTree.getTreeDefinition();
+        TreeAnimationManager treeAnimationManager = UltimateTimber.getInstance().getTreeAnimationManager();
 
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (!treeBlocks.isEmpty()) {
-                    List<ITreeBlock<Block>> partition = treeBlocks.get(0);
-                    for (int i = 0; i < 3 && !partition.isEmpty(); i++) {
-                        ITreeBlock<Block> treeBlock = partition.remove(0);
-                        if (treeBlock.getTreeBlockType().equals(TreeBlockType.LOG)) {
-                            if (td.getLogMaterial().stream().noneMatch(x -> x.equals(CompatibleMaterial.getMaterial(treeBlock.getBlock()))))
-                                continue;
-                        } else if (treeBlock.getTreeBlockType().equals(TreeBlockType.LEAF)) {
-                            if (td.getLeafMaterial().stream().noneMatch(x -> x.equals(CompatibleMaterial.getMaterial(treeBlock.getBlock()))))
-                                continue;
-                        }
-
-                        FallingTreeBlock fallingTreeBlock = TreeAnimationCrumble.this.convertToFallingBlock((TreeBlock)treeBlock);
-                        if (fallingTreeBlock == null)
-                            continue;
-
-                        BlockUtils.toggleGravityFallingBlock(fallingTreeBlock.getBlock(), true);
-                        fallingTreeBlock.getBlock().setVelocity(Vector.getRandom().setY(0).subtract(new Vector(0.5, 0, 0.5)).multiply(0.15));
-                        TreeAnimationCrumble.this.fallingTreeBlocks.add(fallingTreeBlock);
-
-                        if (TreeAnimationCrumble.this.fallingTreeBlocks == null)
-                            TreeAnimationCrumble.this.fallingTreeBlocks = new TreeBlockSet<>(fallingTreeBlock);
-
-                        if (useCustomSound)
-                            SoundUtils.playLandingSound(treeBlock);
-                        if (useCustomParticles)
-                            ParticleUtils.playFallingParticles(treeBlock);
-                    }
-
-                    if (partition.isEmpty()) {
-                        treeBlocks.remove(0);
-                    }
-                }
-
-                if (treeBlocks.isEmpty() && TreeAnimationCrumble.this.fallingTreeBlocks.getAllTreeBlocks().isEmpty()) {
-                    whenFinished.run();
-                    this.cancel();
-                }
+        if (this.partition.isEmpty() && this.layers.hasNext()) {
+            this.partition = this.layers.nextLayer();
+            Collections.shuffle(this.partition);
+        }
+
+        List<ITreeBlock<Block>> partition = this.partition;
+        for (int i = 0; i < 3 && !partition.isEmpty() && treeAnimationManager.canSpawnFallingBlock(); i++) {
+            ITreeBlock<Block> treeBlock = partition.remove(partition.size() - 1);
+            if (treeBlock.getTreeBlockType().equals(TreeBlockType.LOG)) {
+                if (td.getLogMaterial().stream().noneMatch(x -> x.equals(CompatibleMaterial.getMaterial(treeBlock.getBlock()))))
+                    continue;
+            } else if (treeBlock.getTreeBlockType().equals(TreeBlockType.LEAF)) {
+                if (td.getLeafMaterial().stream().noneMatch(x -> x.equals(CompatibleMaterial.getMaterial(treeBlock.getBlock()))))
+                    continue;
             }
-        }.runTaskTimer(ultimateTimber, 0, 1);
+
+            Vector velocity = Vector.getRandom().setY(0).subtract(new Vector(0.5, 0, 0.5)).multiply(0.15);
+            FallingTreeBlock fallingTreeBlock = this.convertToFallingBlock((TreeBlock)treeBlock, velocity, true);
+            if (fallingTreeBlock == null)
+                continue;
+
+            this.addFallingBlock(fallingTreeBlock);
+
+            if (this.useCustomSound)
+                SoundUtils.playLandingSound(treeBlock);
+            if (this.useCustomParticles)
+                ParticleUtils.playFallingParticles(treeBlock);
+        }
+
+        if (this.partition.isEmpty() && !this.layers.hasNext() && this.fallingTreeBlocks.getAllTreeBlocks().isEmpty())
+            this.finish();
     }
-}
 
+    @Override
+    protected void completeAnimation() {
+        if (this.layers == null)
+            return;
+
+        for (ITreeBlock<Block> treeBlock : this.partition)
+            this.breakTreeBlock(treeBlock);
+        this.partition = Collections.emptyList();
+
+        while (this.layers.hasNext())
+            this.breakTreeBlock(this.layers.next());
+    }
+}
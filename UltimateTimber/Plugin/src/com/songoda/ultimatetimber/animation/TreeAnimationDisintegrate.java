@@ -1,99 +1,104 @@
 package com.songoda.ultimatetimber.animation;
 
 import com.songoda.core.compatibility.CompatibleMaterial;
-import com.songoda.ultimatetimber.UltimateTimber;
 import com.songoda.ultimatetimber.manager.ConfigurationManager;
-import com.songoda.ultimatetimber.manager.TreeDefinitionManager;
+import com.songoda.ultimatetimber.tree.ChopContext;
 import com.songoda.ultimatetimber.tree.DetectedTree;
 import com.songoda.ultimatetimber.tree.ITreeBlock;
 import com.songoda.ultimatetimber.tree.TreeBlock;
+import com.songoda.ultimatetimber.tree.TreeBlockSet;
 import com.songoda.ultimatetimber.tree.TreeBlockType;
 import com.songoda.ultimatetimber.tree.TreeDefinition;
 import com.songoda.ultimatetimber.utils.ParticleUtils;
 import com.songoda.ultimatetimber.utils.SoundUtils;
 import org.bukkit.block.Block;
 import org.bukkit.entity.FallingBlock;
-import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.util.Vector;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 public class TreeAnimationDisintegrate extends TreeAnimation {
 
-    public TreeAnimationDisintegrate(DetectedTree detectedTree, Player player) {
-        super(TreeAnimationType.DISINTEGRATE, detectedTree, player);
+    private boolean useCustomSound;
+    private boolean useCustomParticles;
+    private TreeBlockSet.LayerCursor<Block> orderedLogBlocks;
+    private List<ITreeBlock<Block>> leafBlocks;
+
+    public TreeAnimationDisintegrate(DetectedTree detectedTree, ChopContext chopContext) {
+        super(TreeAnimationType.DISINTEGRATE, detectedTree, chopContext);
     }
 
     @Override
-    public void playAnimation(Runnable whenFinished) {
-        UltimateTimber ultimateTimber = UltimateTimber.getInstance();
-        TreeDefinitionManager treeDefinitionManager = ultimateTimber.getTreeDefinitionManager();
-
-        boolean useCustomSound = ConfigurationManager.Setting.USE_CUSTOM_SOUNDS.getBoolean();
-        boolean useCustomParticles = ConfigurationManager.Setting.USE_CUSTOM_PARTICLES.getBoolean();
+    protected void startAnimation() {
+        this.useCustomSound = ConfigurationManager.Setting.USE_CUSTOM_SOUNDS.getBoolean();
+        this.useCustomParticles = ConfigurationManager.Setting.USE_CUSTOM_PARTICLES.getBoolean();
 
-        List<ITreeBlock<Block>> orderedLogBlocks = new ArrayList<>(this.detectedTree.getDetectedTreeBlocks().getLogBlocks());
-        orderedLogBlocks.sort(Comparator.comparingInt(x -> x.getLocation().getBlockY()));
+        this.orderedLogBlocks = this.detectedTree.getDetectedTreeBlocks().layerCursor(TreeBlockType.LOG);
 
-        List<ITreeBlock<Block>> leafBlocks = new ArrayList<>(this.detectedTree.getDetectedTreeBlocks().getLeafBlocks());
-        Collections.shuffle(leafBlocks);
+        this.leafBlocks = new ArrayList<>(this.detectedTree.getDetectedTreeBlocks().getLeafBlocks());
+        Collections.shuffle(this.leafBlocks);
+    }
 
-        Player p = this.player;
+    @Override
+    public void tick() {
         TreeDefinition td = this.detectedTree.getTreeDefinition();
-        boolean hst = this.hasSilkTouch;
-
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                List<ITreeBlock<Block>> toDestroy = new ArrayList<>();
-
-                if (!orderedLogBlocks.isEmpty()) {
-                    ITreeBlock<Block> treeBlock = orderedLogBlocks.remove(0);
-                    toDestroy.add(treeBlock);
-                } else if (!leafBlocks.isEmpty()) {
-                    ITreeBlock<Block> treeBlock = leafBlocks.remove(0);
-                    toDestroy.add(treeBlock);
-
-                    if (!leafBlocks.isEmpty()) {
-                        treeBlock = leafBlocks.remove(0);
-                        toDestroy.add(treeBlock);
-                    }
-                }
-
-                for (ITreeBlock<FallingBlock> fallingTreeBlock : TreeAnimationDisintegrate.this.fallingTreeBlocks.getAllTreeBlocks()) {
-                    FallingBlock fallingBlock = fallingTreeBlock.getBlock();
-                    fallingBlock.setVelocity(fallingBlock.getVelocity().clone().subtract(new Vector(0, 0.05, 0)));
+        List<ITreeBlock<Block>> toDestroy = new ArrayList<>();
+
+        if (this.orderedLogBlocks.hasNext()) {
+            ITreeBlock<Block> treeBlock = this.orderedLogBlocks.next();
+            toDestroy.add(treeBlock);
+        } else if (!this.leafBlocks.isEmpty()) {
+            ITreeBlock<Block> treeBlock = this.leafBlocks.remove(this.leafBlocks.size() - 1);
+            toDestroy.add(treeBlock);
+
+            if (!this.leafBlocks.isEmpty()) {
+                treeBlock = this.leafBlocks.remove(this.leafBlocks.size() - 1);
+                toDestroy.add(treeBlock);
+            }
+        }
+
+        for (ITreeBlock<FallingBlock> fallingTreeBlock : this.fallingTreeBlocks.getAllTreeBlocks()) {
+            FallingBlock fallingBlock = fallingTreeBlock.getBlock();
+            fallingBlock.setVelocity(fallingBlock.getVelocity().clone().subtract(new Vector(0, 0.05, 0)));
+        }
+
+        if (!toDestroy.isEmpty()) {
+            ITreeBlock<Block> first = toDestroy.get(0);
+            if (this.useCustomSound)
+                SoundUtils.playLandingSound(first);
+
+            for (ITreeBlock<Block> treeBlock : toDestroy) {
+                if (treeBlock.getTreeBlockType().equals(TreeBlockType.LOG)) {
+                    if (td.getLogMaterial().stream().noneMatch(x -> x.equals(CompatibleMaterial.getMaterial(treeBlock.getBlock()))))
+                        continue;
+                } else if (treeBlock.getTreeBlockType().equals(TreeBlockType.LEAF)) {
+                    if (td.getLeafMaterial().stream().noneMatch(x -> x.equals(CompatibleMaterial.getMaterial(treeBlock.getBlock()))))
+                        continue;
                 }
 
-                if (!toDestroy.isEmpty()) {
-                    ITreeBlock<Block> first = toDestroy.get(0);
-                    if (useCustomSound)
-                        SoundUtils.playLandingSound(first);
-
-                    for (ITreeBlock<Block> treeBlock : toDestroy) {
-                        if (treeBlock.getTreeBlockType().equals(TreeBlockType.LOG)) {
-                            if (td.getLogMaterial().stream().noneMatch(x -> x.equals(CompatibleMaterial.getMaterial(treeBlock.getBlock()))))
-                                continue;
-                        } else if (treeBlock.getTreeBlockType().equals(TreeBlockType.LEAF)) {
-                            if (td.getLeafMaterial().stream().noneMatch(x -> x.equals(CompatibleMaterial.getMaterial(treeBlock.getBlock()))))
-                                continue;
-                        }
-
-                        if (useCustomParticles)
-                            ParticleUtils.playFallingParticles(treeBlock);
-                        treeDefinitionManager.dropTreeLoot(td, treeBlock, p, hst, false);
-                        TreeAnimationDisintegrate.this.replaceBlock((TreeBlock) treeBlock);
-                    }
-                } else {
-                    this.cancel();
-                    whenFinished.run();
-                }
+                if (this.useCustomParticles)
+                    ParticleUtils.playFallingParticles(treeBlock);
+                this.rollLoot(treeBlock);
+                this.replaceBlock((TreeBlock) treeBlock);
             }
-        }.runTaskTimer(ultimateTimber, 0, 1);
+        } else {
+            this.finish();
+        }
+    }
+
+    @Override
+    protected void completeAnimation() {
+        if (this.orderedLogBlocks == null)
+            return;
+
+        while (this.orderedLogBlocks.hasNext())
+            this.breakTreeBlock(this.orderedLogBlocks.next());
+
+        for (ITreeBlock<Block> treeBlock : this.leafBlocks)
+            this.breakTreeBlock(treeBlock);
+        this.leafBlocks.clear();
     }
 
 }
@@ -0,0 +1,216 @@
+package com.songoda.ultimatetimber.animation;
+
+import com.songoda.core.compatibility.CompatibleMaterial;
+import com.songoda.ultimatetimber.UltimateTimber;
+import com.songoda.ultimatetimber.manager.ConfigurationManager;
+import com.songoda.ultimatetimber.manager.TreeAnimationManager;
+import com.songoda.ultimatetimber.tree.ChopContext;
+import com.songoda.ultimatetimber.tree.DetectedTree;
+import com.songoda.ultimatetimber.tree.ITreeBlock;
+import com.songoda.ultimatetimber.tree.LandedTreeBlock;
+import com.songoda.ultimatetimber.tree.TreeBlock;
+import com.songoda.ultimatetimber.utils.ParticleUtils;
+import com.songoda.ultimatetimber.utils.SoundUtils;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.BlockDisplay;
+import org.bukkit.util.Transformation;
+import org.bukkit.util.Vector;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Topples a tree using block display entities
+ * Displays aren't ticked by the server, the fall is sent to clients as a few interpolated transformations
+ * and the landing points are worked out up front instead of simulated
+ */
+public class TreeAnimationDisplay extends TreeAnimation {
+
+    private static final int FALL_STAGES = 4;
+    private static final int TICKS_PER_STAGE = 5;
+    private static final int MAX_LANDING_DISTANCE = 16;
+
+    private final List<FallingDisplay> fallingDisplays;
+    private Vector direction;
+    private int ticks;
+    private int stage;
+
+    public TreeAnimationDisplay(DetectedTree detectedTree, ChopContext chopContext) {
+        super(TreeAnimationType.DISPLAY, detectedTree, chopContext);
+        this.fallingDisplays = new ArrayList<>();
+    }
+
+    @Override
+    protected void startAnimation() {
+        boolean useCustomSound = ConfigurationManager.Setting.USE_CUSTOM_SOUNDS.getBoolean();
+        boolean useCustomParticles = ConfigurationManager.Setting.USE_CUSTOM_PARTICLES.getBoolean();
+
+        ITreeBlock<Block> initialTreeBlock = this.detectedTree.getDetectedTreeBlocks().getInitialLogBlock();
+        if (useCustomSound)
+            SoundUtils.playFallingSound(initialTreeBlock);
+
+        // The tree tips over around the bottom of the initial log, away from the player
+        Location pivot = initialTreeBlock.getLocation().add(0.5, 0, 0.5);
+        Vector direction = pivot.toVector().subtract(this.player.getLocation().toVector()).setY(0);
+        if (direction.lengthSquared() < 1.0E-6)
+            direction = new Vector(1, 0, 0);
+        direction.normalize();
+        this.direction = direction;
+
+        for (ITreeBlock<Block> treeBlock : this.detectedTree.getDetectedTreeBlocks().getAllTreeBlocks()) {
+            Block block = treeBlock.getBlock();
+            if (CompatibleMaterial.getMaterial(block).isAir()) {
+                this.replaceBlock((TreeBlock) treeBlock);
+                continue;
+            }
+
+            BlockData blockData = block.getBlockData();
+            Location location = block.getLocation();
+            BlockDisplay display = block.getWorld().spawn(location, BlockDisplay.class);
+            display.setBlock(blockData);
+            display.setPersistent(false);
+
+            if (useCustomParticles)
+                ParticleUtils.playFallingParticles(treeBlock);
+
+            this.fallingDisplays.add(new FallingDisplay(treeBlock, blockData, display, location.toVector().subtract(pivot.toVector())));
+            this.replaceBlock((TreeBlock) treeBlock);
+        }
+
+        // Only look for the landing points once the tree is gone, so it can't land on itself
+        for (FallingDisplay fallingDisplay : this.fallingDisplays)
+            this.findLanding(fallingDisplay, pivot, direction);
+    }
+
+    @Override
+    public void tick() {
+        // Give clients a tick to receive the displays before they start moving
+        this.ticks++;
+        if (this.ticks < 2 || (this.ticks - 2) % TICKS_PER_STAGE != 0)
+            return;
+
+        this.stage++;
+        if (this.stage <= FALL_STAGES) {
+            // Square the progress so the tree speeds up as it falls
+            double progress = (double) this.stage / FALL_STAGES;
+            progress *= progress;
+            for (FallingDisplay fallingDisplay : this.fallingDisplays) {
+                BlockDisplay display = fallingDisplay.display;
+                display.setInterpolationDelay(0);
+                display.setInterpolationDuration(TICKS_PER_STAGE);
+                display.setTransformation(this.getTransformation(fallingDisplay, this.direction, Math.PI / 2 * progress, fallingDisplay.drop * progress));
+            }
+            return;
+        }
+
+        this.landDisplays();
+        this.finish();
+    }
+
+    @Override
+    protected void completeAnimation() {
+        this.landDisplays();
+    }
+
+    /**
+     * Removes the displays and runs the impact of every block at its landing point
+     */
+    private void landDisplays() {
+        TreeAnimationManager treeAnimationManager = UltimateTimber.getInstance().getTreeAnimationManager();
+        for (FallingDisplay fallingDisplay : this.fallingDisplays) {
+            fallingDisplay.display.remove();
+            treeAnimationManager.runFallingBlockImpact(this, new LandedTreeBlock(fallingDisplay.blockData,
+                    fallingDisplay.landing, fallingDisplay.treeBlock.getTreeBlockType(), fallingDisplay.treeBlock.getKey()));
+        }
+        this.fallingDisplays.clear();
+    }
+
+    /**
+     * Works out where a block ends up once the tree is lying on the ground
+     * The block is rotated a quarter turn around the pivot, then moved up or down to the nearest surface
+     *
+     * @param fallingDisplay The falling display to find the landing point of
+     * @param pivot          The point the tree tips over around
+     * @param direction      The horizontal direction the tree falls in
+     */
+    private void findLanding(FallingDisplay fallingDisplay, Location pivot, Vector direction) {
+        Vector center = fallingDisplay.offset.clone().add(new Vector(0.5, 0.5, 0.5));
+        Location rotatedCenter = pivot.clone().add(this.rotate(center, direction, Math.PI / 2));
+
+        Block block = rotatedCenter.getBlock();
+        if (!block.isPassable()) {
+            for (int i = 0; i < MAX_LANDING_DISTANCE && !block.isPassable(); i++)
+                block = block.getRelative(BlockFace.UP);
+        } else {
+            for (int i = 0; i < MAX_LANDING_DISTANCE && block.getRelative(BlockFace.DOWN).isPassable(); i++)
+                block = block.getRelative(BlockFace.DOWN);
+        }
+
+        fallingDisplay.landing = block.getLocation();
+        fallingDisplay.drop = block.getY() - rotatedCenter.getBlockY();
+    }
+
+    /**
+     * Gets the transformation that tips a display over around the pivot
+     * Displays are transformed relative to their own location, so this is the rotated offset minus the original offset
+     *
+     * @param fallingDisplay The falling display
+     * @param direction      The horizontal direction the tree falls in
+     * @param angle          How far the tree has tipped over, in radians
+     * @param drop           How far to move the display up or down towards its landing point
+     * @return The Transformation for the display
+     */
+    private Transformation getTransformation(FallingDisplay fallingDisplay, Vector direction, double angle, double drop) {
+        Vector translation = this.rotate(fallingDisplay.offset, direction, angle).subtract(fallingDisplay.offset);
+        Quaternionf rotation = new Quaternionf().rotationAxis((float) angle, (float) direction.getZ(), 0, (float) -direction.getX());
+        return new Transformation(new Vector3f((float) translation.getX(), (float) (translation.getY() + drop), (float) translation.getZ()),
+                rotation, new Vector3f(1, 1, 1), new Quaternionf());
+    }
+
+    /**
+     * Rotates an offset from the pivot so that straight up turns towards the falling direction
+     *
+     * @param offset    The offset from the pivot
+     * @param direction The horizontal direction the tree falls in, must be normalized
+     * @param angle     The angle to rotate by, in radians
+     * @return A new rotated Vector
+     */
+    private Vector rotate(Vector offset, Vector direction, double angle) {
+        double height = offset.getY();
+        double along = offset.getX() * direction.getX() + offset.getZ() * direction.getZ();
+        double acrossX = offset.getX() - along * direction.getX();
+        double acrossZ = offset.getZ() - along * direction.getZ();
+
+        double cos = Math.cos(angle), sin = Math.sin(angle);
+        double rotatedHeight = height * cos - along * sin;
+        double rotatedAlong = height * sin + along * cos;
+        return new Vector(acrossX + rotatedAlong * direction.getX(), rotatedHeight, acrossZ + rotatedAlong * direction.getZ());
+    }
+
+    /**
+     * A block of the tree being shown by a display entity
+     */
+    private static class FallingDisplay {
+
+        private final ITreeBlock<Block> treeBlock;
+        private final BlockData blockData;
+        private final BlockDisplay display;
+        private final Vector offset;
+        private Location landing;
+        private double drop;
+
+        private FallingDisplay(ITreeBlock<Block> treeBlock, BlockData blockData, BlockDisplay display, Vector offset) {
+            this.treeBlock = treeBlock;
+            this.blockData = blockData;
+            this.display = display;
+            this.offset = offset;
+        }
+
+    }
+
+}
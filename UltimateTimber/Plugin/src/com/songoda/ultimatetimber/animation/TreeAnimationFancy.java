@@ -3,32 +3,36 @@ package com.songoda.ultimatetimber.animation;
 import com.songoda.ultimatetimber.UltimateTimber;
 import com.songoda.ultimatetimber.manager.ConfigurationManager;
 import com.songoda.ultimatetimber.manager.TreeAnimationManager;
+import com.songoda.ultimatetimber.tree.ChopContext;
 import com.songoda.ultimatetimber.tree.DetectedTree;
 import com.songoda.ultimatetimber.tree.FallingTreeBlock;
 import com.songoda.ultimatetimber.tree.ITreeBlock;
 import com.songoda.ultimatetimber.tree.TreeBlock;
-import com.songoda.ultimatetimber.tree.TreeBlockSet;
 import com.songoda.ultimatetimber.utils.BlockUtils;
 import com.songoda.ultimatetimber.utils.ParticleUtils;
 import com.songoda.ultimatetimber.utils.SoundUtils;
 import org.bukkit.block.Block;
 import org.bukkit.entity.FallingBlock;
-import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.util.Vector;
 
+import java.util.Iterator;
+
 public class TreeAnimationFancy extends TreeAnimation {
 
-    public TreeAnimationFancy(DetectedTree detectedTree, Player player) {
-        super(TreeAnimationType.FANCY, detectedTree, player);
+    private boolean useCustomParticles;
+    private Vector velocityVector;
+    private double playerY;
+    private Iterator<ITreeBlock<Block>> pendingTreeBlocks;
+    private int timer;
+
+    public TreeAnimationFancy(DetectedTree detectedTree, ChopContext chopContext) {
+        super(TreeAnimationType.FANCY, detectedTree, chopContext);
     }
 
     @Override
-    public void playAnimation(Runnable whenFinished) {
-        UltimateTimber ultimateTimber = UltimateTimber.getInstance();
-
+    protected void startAnimation() {
         boolean useCustomSound = ConfigurationManager.Setting.USE_CUSTOM_SOUNDS.getBoolean();
-        boolean useCustomParticles = ConfigurationManager.Setting.USE_CUSTOM_PARTICLES.getBoolean();
+        this.useCustomParticles = ConfigurationManager.Setting.USE_CUSTOM_PARTICLES.getBoolean();
 
         ITreeBlock<Block> initialTreeBlock = this.detectedTree.getDetectedTreeBlocks().getInitialLogBlock();
         FallingTreeBlock initialFallingBlock = this.convertToFallingBlock((TreeBlock)this.detectedTree.getDetectedTreeBlocks().getInitialLogBlock());
@@ -36,60 +40,87 @@ public class TreeAnimationFancy extends TreeAnimation {
         if (useCustomSound)
             SoundUtils.playFallingSound(initialTreeBlock);
 
-        Vector velocityVector = initialTreeBlock.getLocation().clone().subtract(this.player.getLocation().clone()).toVector().normalize().setY(0);
+        this.velocityVector = initialTreeBlock.getLocation().clone().subtract(this.player.getLocation().clone()).toVector().normalize().setY(0);
+        this.playerY = this.player.getLocation().getY();
 
-        this.fallingTreeBlocks = new TreeBlockSet<>(initialFallingBlock);
-        for (ITreeBlock<Block> treeBlock : this.detectedTree.getDetectedTreeBlocks().getAllTreeBlocks()) {
-            FallingTreeBlock fallingTreeBlock = this.convertToFallingBlock((TreeBlock)treeBlock);
-            if (fallingTreeBlock == null)
-                continue;
+        if (initialFallingBlock != null)
+            this.addFallingBlock(initialFallingBlock);
+
+        // Spawn the rest of the tree from the bottom up, spreading it over more ticks if the falling block spawn limit is reached
+        this.pendingTreeBlocks = this.detectedTree.getDetectedTreeBlocks().layerCursor(null);
+        this.spawnFallingBlocks(false);
 
-            FallingBlock fallingBlock = fallingTreeBlock.getBlock();
-            this.fallingTreeBlocks.add(fallingTreeBlock);
+        // The tree hangs in the air for a second before it starts to fall
+        this.timer = -19;
+    }
+
+    @Override
+    public void tick() {
+        if (this.pendingTreeBlocks.hasNext())
+            this.spawnFallingBlocks(this.timer > 0);
 
-            if (useCustomParticles)
-            ParticleUtils.playFallingParticles(treeBlock);
+        if (this.timer < 0) {
+            this.timer++;
+            return;
+        }
+
+        // Releasing the tree only turns gravity on, the blocks keep the velocity they were spawned with
+        if (this.timer == 0)
+            for (ITreeBlock<FallingBlock> fallingTreeBlock : this.fallingTreeBlocks.getAllTreeBlocks())
+                BlockUtils.toggleGravityFallingBlock(fallingTreeBlock.getBlock(), true);
 
-            double multiplier = (treeBlock.getLocation().getY() - this.player.getLocation().getY()) * 0.05;
-            fallingBlock.setVelocity(velocityVector.clone().multiply(multiplier));
-            fallingBlock.setVelocity(fallingBlock.getVelocity().multiply(0.3));
+        if (this.fallingTreeBlocks.getAllTreeBlocks().isEmpty() && !this.pendingTreeBlocks.hasNext()) {
+            this.finish();
+            return;
         }
 
-        new BukkitRunnable() {
-            int timer = 0;
-
-            @Override
-            public void run() {
-                if (this.timer == 0) {
-                    for (ITreeBlock<FallingBlock> fallingTreeBlock : TreeAnimationFancy.this.fallingTreeBlocks.getAllTreeBlocks()) {
-                        FallingBlock fallingBlock = fallingTreeBlock.getBlock();
-                        BlockUtils.toggleGravityFallingBlock(fallingBlock, true);
-                        fallingBlock.setVelocity(fallingBlock.getVelocity().multiply(1.5));
-                    }
-                }
-
-                if (TreeAnimationFancy.this.fallingTreeBlocks.getAllTreeBlocks().isEmpty()) {
-                    whenFinished.run();
-                    this.cancel();
-                    return;
-                }
-
-                for (ITreeBlock<FallingBlock> fallingTreeBlock : TreeAnimationFancy.this.fallingTreeBlocks.getAllTreeBlocks()) {
-                    FallingBlock fallingBlock = fallingTreeBlock.getBlock();
-                    fallingBlock.setVelocity(fallingBlock.getVelocity().clone().subtract(new Vector(0, 0.05, 0)));
-                }
-
-                this.timer++;
-
-                if (this.timer > 4 * 20) {
-                    TreeAnimationManager treeAnimationManager = ultimateTimber.getTreeAnimationManager();
-                    for (ITreeBlock<FallingBlock> fallingTreeBlock : TreeAnimationFancy.this.fallingTreeBlocks.getAllTreeBlocks())
-                        treeAnimationManager.runFallingBlockImpact(TreeAnimationFancy.this, fallingTreeBlock);
-                    whenFinished.run();
-                    this.cancel();
-                }
+        this.timer++;
+
+        // Anything that never got to spawn is broken in place, falling blocks that did spawn are landed by the TreeAnimationManager
+        if (this.timer > 4 * 20 && this.pendingTreeBlocks.hasNext()) {
+            while (this.pendingTreeBlocks.hasNext()) {
+                ITreeBlock<Block> treeBlock = this.pendingTreeBlocks.next();
+                this.rollLoot(treeBlock);
+                this.replaceBlock((TreeBlock) treeBlock);
             }
-        }.runTaskTimer(ultimateTimber, 20L, 1L);
+        }
+    }
+
+    @Override
+    protected void completeAnimation() {
+        if (this.pendingTreeBlocks == null)
+            return;
+
+        while (this.pendingTreeBlocks.hasNext()) {
+            ITreeBlock<Block> treeBlock = this.pendingTreeBlocks.next();
+            this.rollLoot(treeBlock);
+            this.replaceBlock((TreeBlock) treeBlock);
+        }
+    }
+
+    /**
+     * Converts tree blocks into falling blocks until there are none left or the falling block spawn limit is reached
+     *
+     * @param falling If the tree has already started falling
+     */
+    private void spawnFallingBlocks(boolean falling) {
+        TreeAnimationManager treeAnimationManager = UltimateTimber.getInstance().getTreeAnimationManager();
+        while (this.pendingTreeBlocks.hasNext() && treeAnimationManager.canSpawnFallingBlock()) {
+            ITreeBlock<Block> treeBlock = this.pendingTreeBlocks.next();
+
+            // Higher blocks are thrown further so the tree tips over instead of dropping straight down
+            double multiplier = (treeBlock.getLocation().getY() - this.playerY) * 0.015;
+            Vector velocity = this.velocityVector.clone().multiply(multiplier);
+
+            FallingTreeBlock fallingTreeBlock = this.convertToFallingBlock((TreeBlock) treeBlock, velocity, falling);
+            if (fallingTreeBlock == null)
+                continue;
+
+            this.addFallingBlock(fallingTreeBlock);
+
+            if (this.useCustomParticles)
+                ParticleUtils.playFallingParticles(treeBlock);
+        }
     }
 
 }
@@ -1,26 +1,22 @@
 package com.songoda.ultimatetimber.animation;
 
-import com.songoda.ultimatetimber.UltimateTimber;
 import com.songoda.ultimatetimber.manager.ConfigurationManager;
-import com.songoda.ultimatetimber.manager.TreeDefinitionManager;
+import com.songoda.ultimatetimber.tree.ChopContext;
 import com.songoda.ultimatetimber.tree.DetectedTree;
 import com.songoda.ultimatetimber.tree.ITreeBlock;
 import com.songoda.ultimatetimber.tree.TreeBlock;
 import com.songoda.ultimatetimber.utils.ParticleUtils;
 import com.songoda.ultimatetimber.utils.SoundUtils;
 import org.bukkit.block.Block;
-import org.bukkit.entity.Player;
 
 public class TreeAnimationNone extends TreeAnimation {
 
-    public TreeAnimationNone(DetectedTree detectedTree, Player player) {
-        super(TreeAnimationType.NONE, detectedTree, player);
+    public TreeAnimationNone(DetectedTree detectedTree, ChopContext chopContext) {
+        super(TreeAnimationType.NONE, detectedTree, chopContext);
     }
 
     @Override
-    public void playAnimation(Runnable whenFinished) {
-        TreeDefinitionManager treeDefinitionManager = UltimateTimber.getInstance().getTreeDefinitionManager();
-
+    protected void startAnimation() {
         if (ConfigurationManager.Setting.USE_CUSTOM_SOUNDS.getBoolean())
             SoundUtils.playFallingSound(this.detectedTree.getDetectedTreeBlocks().getInitialLogBlock());
 
@@ -29,11 +25,11 @@ public class TreeAnimationNone extends TreeAnimation {
                 ParticleUtils.playFallingParticles(treeBlock);
 
         for (ITreeBlock<Block> treeBlock : this.detectedTree.getDetectedTreeBlocks().getAllTreeBlocks()) {
-            treeDefinitionManager.dropTreeLoot(this.detectedTree.getTreeDefinition(), treeBlock, this.player, this.hasSilkTouch, false);
+            this.rollLoot(treeBlock);
             this.replaceBlock((TreeBlock) treeBlock);
         }
 
-        whenFinished.run();
+        this.finish();
     }
 
 }
@@ -7,6 +7,7 @@ public enum TreeAnimationType {
     FANCY,
     DISINTEGRATE,
     CRUMBLE,
+    DISPLAY,
     NONE;
 
     /**
@@ -0,0 +1,67 @@
+package com.songoda.ultimatetimber.commands;
+
+import com.songoda.core.commands.AbstractCommand;
+import com.songoda.ultimatetimber.UltimateTimber;
+import com.songoda.ultimatetimber.manager.LootSinkManager;
+import org.bukkit.block.Block;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.List;
+
+public class CommandLink extends AbstractCommand {
+
+    private final UltimateTimber plugin;
+
+    public CommandLink(UltimateTimber plugin) {
+        super(CommandType.PLAYER_ONLY, "link");
+        this.plugin = plugin;
+    }
+
+    @Override
+    protected ReturnType runCommand(CommandSender sender, String... args) {
+        Player player = (Player) sender;
+        LootSinkManager lootSinkManager = plugin.getLootSinkManager();
+        Block block = player.getTargetBlockExact(5);
+        if (block == null || !lootSinkManager.isLinkableContainer(block)) {
+            plugin.getLocale().getMessage("command.link.not-a-container").sendPrefixedMessage(sender);
+            return ReturnType.SUCCESS;
+        }
+
+        if (lootSinkManager.isLinkedContainer(player, block)) {
+            lootSinkManager.unlinkContainer(player);
+            plugin.getLocale().getMessage("command.link.unlinked").sendPrefixedMessage(sender);
+            return ReturnType.SUCCESS;
+        }
+
+        if (!lootSinkManager.canAccessContainer(player, block)) {
+            plugin.getLocale().getMessage("command.link.no-access").sendPrefixedMessage(sender);
+            return ReturnType.SUCCESS;
+        }
+
+        lootSinkManager.linkContainer(player, block);
+        plugin.getLocale().getMessage("command.link.linked").sendPrefixedMessage(sender);
+        return ReturnType.SUCCESS;
+    }
+
+    @Override
+    protected List<String> onTab(CommandSender sender, String... args) {
+        return null;
+    }
+
+    @Override
+    public String getPermissionNode() {
+        return "ultimatetimber.link";
+    }
+
+    @Override
+    public String getSyntax() {
+        return "link";
+    }
+
+    @Override
+    public String getDescription() {
+        return plugin.getLocale().getMessage("command.link.description").getMessage();
+    }
+
+}
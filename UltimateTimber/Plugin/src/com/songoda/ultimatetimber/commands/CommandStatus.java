@@ -0,0 +1,56 @@
+package com.songoda.ultimatetimber.commands;
+
+import com.songoda.core.commands.AbstractCommand;
+import com.songoda.ultimatetimber.UltimateTimber;
+import com.songoda.ultimatetimber.manager.ConfigurationManager;
+import com.songoda.ultimatetimber.manager.TreeAnimationManager;
+import org.bukkit.command.CommandSender;
+
+import java.util.List;
+
+public class CommandStatus extends AbstractCommand {
+
+    private final UltimateTimber plugin;
+
+    public CommandStatus(UltimateTimber plugin) {
+        super(CommandType.CONSOLE_OK, "status");
+        this.plugin = plugin;
+    }
+
+    @Override
+    protected ReturnType runCommand(CommandSender sender, String... args) {
+        TreeAnimationManager treeAnimationManager = plugin.getTreeAnimationManager();
+        plugin.getLocale().getMessage("command.status.falling-blocks")
+                .processPlaceholder("count", treeAnimationManager.getFallingBlockCount())
+                .processPlaceholder("max", ConfigurationManager.Setting.MAX_FALLING_BLOCKS.getInt())
+                .sendPrefixedMessage(sender);
+        plugin.getLocale().getMessage("command.status.queued-animations")
+                .processPlaceholder("count", treeAnimationManager.getQueuedAnimationCount())
+                .sendPrefixedMessage(sender);
+        plugin.getLocale().getMessage("command.status.tick-time")
+                .processPlaceholder("time", String.format("%.2f", treeAnimationManager.getAverageTickTime()))
+                .sendPrefixedMessage(sender);
+        return ReturnType.SUCCESS;
+    }
+
+    @Override
+    protected List<String> onTab(CommandSender sender, String... args) {
+        return null;
+    }
+
+    @Override
+    public String getPermissionNode() {
+        return "ultimatetimber.status";
+    }
+
+    @Override
+    public String getSyntax() {
+        return "status";
+    }
+
+    @Override
+    public String getDescription() {
+        return plugin.getLocale().getMessage("command.status.description").getMessage();
+    }
+
+}
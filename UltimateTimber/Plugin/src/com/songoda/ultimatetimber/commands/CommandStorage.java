@@ -0,0 +1,60 @@
+package com.songoda.ultimatetimber.commands;
+
+import com.songoda.core.commands.AbstractCommand;
+import com.songoda.ultimatetimber.UltimateTimber;
+import com.songoda.ultimatetimber.manager.LootSinkManager;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.List;
+
+public class CommandStorage extends AbstractCommand {
+
+    private final UltimateTimber plugin;
+
+    public CommandStorage(UltimateTimber plugin) {
+        super(CommandType.PLAYER_ONLY, "storage");
+        this.plugin = plugin;
+    }
+
+    @Override
+    protected ReturnType runCommand(CommandSender sender, String... args) {
+        Player player = (Player) sender;
+        LootSinkManager lootSinkManager = plugin.getLootSinkManager();
+        if (lootSinkManager.getStoredLumber(player.getUniqueId()).isEmpty()) {
+            plugin.getLocale().getMessage("command.storage.empty").sendPrefixedMessage(sender);
+            return ReturnType.SUCCESS;
+        }
+
+        int withdrawn = lootSinkManager.withdrawLumber(player);
+        if (withdrawn == 0) {
+            plugin.getLocale().getMessage("command.storage.full").sendPrefixedMessage(sender);
+        } else {
+            plugin.getLocale().getMessage("command.storage.withdrawn")
+                    .processPlaceholder("count", withdrawn)
+                    .sendPrefixedMessage(sender);
+        }
+        return ReturnType.SUCCESS;
+    }
+
+    @Override
+    protected List<String> onTab(CommandSender sender, String... args) {
+        return null;
+    }
+
+    @Override
+    public String getPermissionNode() {
+        return "ultimatetimber.storage";
+    }
+
+    @Override
+    public String getSyntax() {
+        return "storage";
+    }
+
+    @Override
+    public String getDescription() {
+        return plugin.getLocale().getMessage("command.storage.description").getMessage();
+    }
+
+}
@@ -1,9 +1,13 @@
 package com.songoda.ultimatetimber.manager;
 
+import com.songoda.core.hooks.McMMOHook;
 import com.songoda.ultimatetimber.UltimateTimber;
-import org.bukkit.Bukkit;
+import com.songoda.ultimatetimber.tree.ChopContext;
+import org.bukkit.GameMode;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
 
 import java.io.File;
 import java.io.IOException;
@@ -13,10 +17,14 @@ import java.util.stream.Collectors;
 
 public class ChoppingManager extends Manager {
 
+    // How many times the double drop chance is rolled when a tree is chopped
+    private static final int DOUBLE_DROP_SAMPLES = 32;
+
     private Set<UUID> enabledPlayers;
-    private final Map<UUID, Boolean> cooldownedPlayers;
+    private final Map<UUID, Cooldown> cooldownedPlayers;
     private boolean useCooldown;
     private int cooldownAmount;
+    private boolean applyExtraDrops;
     private final File playersFile;
 
     public ChoppingManager(UltimateTimber ultimateTimber) {
@@ -30,6 +38,7 @@ public class ChoppingManager extends Manager {
     public void reload() {
         this.useCooldown = ConfigurationManager.Setting.PLAYER_TREE_TOPPLE_COOLDOWN.getBoolean();
         this.cooldownAmount = ConfigurationManager.Setting.PLAYER_TREE_TOPPLE_COOLDOWN_LENGTH.getInt();
+        this.applyExtraDrops = ConfigurationManager.Setting.HOOKS_APPLY_EXTRA_DROPS.getBoolean();
     }
 
     @Override
@@ -93,10 +102,13 @@ public class ChoppingManager extends Manager {
         if (!this.useCooldown || player.hasPermission("ultimatetimber.bypasscooldown"))
             return;
 
-        this.cooldownedPlayers.put(player.getUniqueId(), false);
+        TimerManager timerManager = this.plugin.getTimerManager();
+        UUID uuid = player.getUniqueId();
+        Cooldown cooldown = new Cooldown(timerManager.getCurrentTick() + this.cooldownAmount * 20L);
+        this.cooldownedPlayers.put(uuid, cooldown);
 
-        Bukkit.getScheduler().scheduleSyncDelayedTask(UltimateTimber.getInstance(), () ->
-                this.cooldownedPlayers.remove(player.getUniqueId()), this.cooldownAmount * 20L);
+        // Only cleans up the map, isInCooldown checks the deadline itself
+        timerManager.schedule(() -> this.cooldownedPlayers.remove(uuid, cooldown), this.cooldownAmount * 20);
     }
 
     /**
@@ -106,12 +118,64 @@ public class ChoppingManager extends Manager {
      * @return True if the player can topple trees, otherwise false
      */
     public boolean isInCooldown(Player player) {
-        boolean cooldowned = this.useCooldown && this.cooldownedPlayers.containsKey(player.getUniqueId());
-        if (cooldowned && !this.cooldownedPlayers.get(player.getUniqueId())) {
+        if (!this.useCooldown)
+            return false;
+
+        Cooldown cooldown = this.cooldownedPlayers.get(player.getUniqueId());
+        if (cooldown == null || cooldown.deadline <= this.plugin.getTimerManager().getCurrentTick())
+            return false;
+
+        if (!cooldown.notified) {
             this.plugin.getLocale().getMessage("event.on.cooldown").sendPrefixedMessage(player);
-            this.cooldownedPlayers.replace(player.getUniqueId(), true);
+            cooldown.notified = true;
         }
-        return cooldowned;
+        return true;
+    }
+
+    /**
+     * Looks up everything about a player and their tool that is needed while their tree falls
+     *
+     * @param player The player who is chopping
+     * @param tool   The tool the player is chopping with
+     * @return A ChopContext for the player
+     */
+    public ChopContext createChopContext(Player player, ItemStack tool) {
+        boolean hasSilkTouch = tool != null && tool.hasItemMeta() && tool.getItemMeta().hasEnchant(Enchantment.SILK_TOUCH);
+        return new ChopContext(player, tool == null ? null : tool.clone(), hasSilkTouch,
+                player.hasPermission("ultimatetimber.bonusloot"), this.getDoubleDropChance(player), player.getGameMode() == GameMode.CREATIVE);
+    }
+
+    /**
+     * Finds out how likely mcMMO is to double a player's drops
+     * The hook only rolls the chance, so it is rolled a few times here and averaged instead of once for every drop of the tree,
+     * each drop is then doubled with the averaged chance which gives every drop the same odds as asking mcMMO would
+     *
+     * @param player The player who is chopping
+     * @return The chance of a drop being doubled, between 0 and 1
+     */
+    private double getDoubleDropChance(Player player) {
+        if (!this.applyExtraDrops)
+            return 0;
+
+        int doubled = 0;
+        for (int i = 0; i < DOUBLE_DROP_SAMPLES; i++)
+            if (McMMOHook.hasWoodcuttingDoubleDrops(player))
+                doubled++;
+        return doubled / (double) DOUBLE_DROP_SAMPLES;
+    }
+
+    /**
+     * A player's tree topple cooldown
+     */
+    private static class Cooldown {
+
+        private final long deadline;
+        private boolean notified;
+
+        private Cooldown(long deadline) {
+            this.deadline = deadline;
+        }
+
     }
 
 }
@@ -14,6 +14,8 @@ public class ConfigurationManager extends Manager {
         LOCALE(SettingType.STRING),
         DISABLED_WORLDS(SettingType.STRING_LIST),
         MAX_LOGS_PER_CHOP(SettingType.INT),
+        MAX_DETECTION_BLOCKS(SettingType.INT),
+        MAX_DETECTION_TIME(SettingType.INT),
         DESTROY_LEAVES(SettingType.BOOLEAN),
         LEAVES_REQUIRED_FOR_TREE(SettingType.INT),
         REALISTIC_TOOL_DAMAGE(SettingType.BOOLEAN),
@@ -24,6 +26,10 @@ public class ConfigurationManager extends Manager {
         BREAK_ENTIRE_TREE_BASE(SettingType.BOOLEAN),
         DESTROY_INITIATED_BLOCK(SettingType.BOOLEAN),
         ONLY_DETECT_LOGS_UPWARDS(SettingType.BOOLEAN),
+        ASYNC_TREE_DETECTION(SettingType.BOOLEAN),
+        PARALLEL_LEAF_SEARCH(SettingType.BOOLEAN),
+        PARALLEL_LEAF_SEARCH_THRESHOLD(SettingType.INT),
+        REMEMBER_GROWN_TREES(SettingType.BOOLEAN),
         ONLY_TOPPLE_WHILE(SettingType.STRING),
         ALLOW_CREATIVE_MODE(SettingType.BOOLEAN),
         REQUIRE_CHOP_PERMISSION(SettingType.BOOLEAN),
@@ -40,6 +46,10 @@ public class ConfigurationManager extends Manager {
         USE_CUSTOM_SOUNDS(SettingType.BOOLEAN),
         USE_CUSTOM_PARTICLES(SettingType.BOOLEAN),
         BONUS_LOOT_MULTIPLIER(SettingType.DOUBLE),
+        AGGREGATE_LOOT_ROLLS(SettingType.BOOLEAN),
+        LOOT_COMMANDS_PER_TICK(SettingType.INT),
+        LOOT_SINK(SettingType.STRING),
+        LOOT_SINK_CONTAINER_RADIUS(SettingType.INT),
         IGNORE_PLACED_BLOCKS(SettingType.BOOLEAN),
         IGNORE_PLACED_BLOCKS_MEMORY_SIZE(SettingType.INT),
         HOOKS_APPLY_EXPERIENCE(SettingType.BOOLEAN),
@@ -47,6 +57,11 @@ public class ConfigurationManager extends Manager {
         HOOKS_REQUIRE_ABILITY_ACTIVE(SettingType.BOOLEAN),
         TREE_ANIMATION_TYPE(SettingType.STRING),
         SCATTER_TREE_BLOCKS_ON_GROUND(SettingType.BOOLEAN),
+        MAX_FALLING_BLOCKS(SettingType.INT),
+        MAX_FALLING_BLOCKS_PER_CHUNK(SettingType.INT),
+        FALLING_BLOCKS_SPAWNED_PER_TICK(SettingType.INT),
+        FALLING_BLOCK_LIMIT_ACTION(SettingType.STRING),
+        VANILLA_BLOCK_UPDATES(SettingType.BOOLEAN),
         FRAGILE_BLOCKS(SettingType.STRING_LIST);
 
         private SettingType settingType;
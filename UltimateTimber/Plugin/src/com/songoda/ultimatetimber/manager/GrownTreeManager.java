@@ -0,0 +1,371 @@
+package com.songoda.ultimatetimber.manager;
+
+import com.songoda.core.compatibility.CompatibleMaterial;
+import com.songoda.core.compatibility.ServerVersion;
+import com.songoda.ultimatetimber.UltimateTimber;
+import com.songoda.ultimatetimber.events.TreeFellEvent;
+import com.songoda.ultimatetimber.tree.GrownTree;
+import com.songoda.ultimatetimber.tree.ITreeBlock;
+import com.songoda.ultimatetimber.tree.TreeDefinitionTable;
+import com.songoda.ultimatetimber.utils.BlockKey;
+import com.songoda.ultimatetimber.utils.LongArrayList;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.LeavesDecayEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.StructureGrowEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps track of the shapes of trees that grew from saplings so they don't need to be detected when chopped
+ * Trees are owned by the chunk their base is in, and are persisted with that chunk on servers that support it
+ */
+public class GrownTreeManager extends Manager implements Listener {
+
+    private static final long DATA_VERSION = 1;
+
+    private final Map<UUID, WorldTrees> worlds;
+    private NamespacedKey dataKey;
+    private boolean enabled;
+
+    public GrownTreeManager(UltimateTimber ultimateTimber) {
+        super(ultimateTimber);
+        this.worlds = new HashMap<>();
+
+        // Chunks can only hold persistent data in 1.16+
+        if (ServerVersion.isServerVersionAtLeast(ServerVersion.V1_16))
+            this.dataKey = new NamespacedKey(ultimateTimber, "grown_trees");
+
+        Bukkit.getPluginManager().registerEvents(this, ultimateTimber);
+    }
+
+    @Override
+    public void reload() {
+        boolean enabled = ConfigurationManager.Setting.REMEMBER_GROWN_TREES.getBoolean();
+        if (enabled && !this.enabled) {
+            for (World world : Bukkit.getWorlds())
+                for (Chunk chunk : world.getLoadedChunks())
+                    this.loadChunk(chunk);
+        } else if (!enabled && this.enabled) {
+            this.saveAll();
+        }
+
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void disable() {
+        if (this.enabled)
+            this.saveAll();
+        this.enabled = false;
+    }
+
+    /**
+     * Gets the grown tree a block is a log of
+     *
+     * @param block The Block to check
+     * @return The GrownTree the block is a log of, or null if it isn't the log of a known tree
+     */
+    public GrownTree getGrownTree(Block block) {
+        if (!this.enabled)
+            return null;
+
+        WorldTrees worldTrees = this.worlds.get(block.getWorld().getUID());
+        if (worldTrees == null)
+            return null;
+
+        GrownTree grownTree = worldTrees.blockIndex.get(BlockKey.pack(block));
+        if (grownTree == null || !this.containsLog(grownTree, BlockKey.pack(block)))
+            return null;
+
+        return grownTree;
+    }
+
+    /**
+     * Forgets the tree a block is part of, if any
+     *
+     * @param block The Block that changed
+     */
+    public void invalidate(Block block) {
+        if (!this.enabled)
+            return;
+
+        WorldTrees worldTrees = this.worlds.get(block.getWorld().getUID());
+        if (worldTrees == null)
+            return;
+
+        GrownTree grownTree = worldTrees.blockIndex.get(BlockKey.pack(block));
+        if (grownTree != null)
+            this.unregister(worldTrees, grownTree);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onStructureGrow(StructureGrowEvent event) {
+        if (!this.enabled)
+            return;
+
+        TreeDefinitionTable table = this.plugin.getTreeDefinitionManager().getTreeDefinitionTable();
+        LongArrayList logs = new LongArrayList();
+        LongArrayList leaves = new LongArrayList();
+        for (BlockState blockState : event.getBlocks()) {
+            CompatibleMaterial material = CompatibleMaterial.getMaterial(blockState.getType());
+            long key = BlockKey.pack(blockState.getX(), blockState.getY(), blockState.getZ());
+            if (!table.getLogMask(material).isEmpty()) {
+                logs.add(key);
+            } else if (!table.getLeafMask(material).isEmpty()) {
+                leaves.add(key);
+            }
+        }
+
+        if (logs.isEmpty())
+            return;
+
+        // Anything the tree grew over is no longer part of an older tree
+        WorldTrees worldTrees = this.worlds.computeIfAbsent(event.getWorld().getUID(), uuid -> new WorldTrees());
+        for (BlockState blockState : event.getBlocks()) {
+            GrownTree grownTree = worldTrees.blockIndex.get(BlockKey.pack(blockState.getX(), blockState.getY(), blockState.getZ()));
+            if (grownTree != null)
+                this.unregister(worldTrees, grownTree);
+        }
+
+        this.register(worldTrees, new GrownTree(logs.toArray(), leaves.toArray()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        this.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onLeafDecay(LeavesDecayEvent event) {
+        this.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+        this.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(EntityChangeBlockEvent event) {
+        this.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        for (Block block : event.blockList())
+            this.invalidate(block);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        for (Block block : event.blockList())
+            this.invalidate(block);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+        for (Block block : event.getBlocks())
+            this.invalidate(block);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+        for (Block block : event.getBlocks())
+            this.invalidate(block);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTreeFell(TreeFellEvent event) {
+        for (ITreeBlock<Block> treeBlock : event.getDetectedTree().getDetectedTreeBlocks().getAllTreeBlocks())
+            this.invalidate(treeBlock.getBlock());
+    }
+
+    @EventHandler
+    public void onChunkLoad(ChunkLoadEvent event) {
+        if (this.enabled)
+            this.loadChunk(event.getChunk());
+    }
+
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        if (this.enabled)
+            this.unloadChunk(event.getChunk());
+    }
+
+    @EventHandler
+    public void onWorldUnload(WorldUnloadEvent event) {
+        if (this.enabled)
+            for (Chunk chunk : event.getWorld().getLoadedChunks())
+                this.unloadChunk(chunk);
+        this.worlds.remove(event.getWorld().getUID());
+    }
+
+    /**
+     * Adds a tree to the block index and the chunk its base is in
+     */
+    private void register(WorldTrees worldTrees, GrownTree grownTree) {
+        for (long key : grownTree.getLogs())
+            worldTrees.blockIndex.put(key, grownTree);
+        for (long key : grownTree.getLeaves())
+            worldTrees.blockIndex.putIfAbsent(key, grownTree);
+        worldTrees.chunkTrees.computeIfAbsent(this.getChunkKey(grownTree.getBase()), chunkKey -> new ArrayList<>()).add(grownTree);
+    }
+
+    /**
+     * Removes a tree from the block index and the chunk its base is in
+     */
+    private void unregister(WorldTrees worldTrees, GrownTree grownTree) {
+        for (long key : grownTree.getLogs())
+            worldTrees.blockIndex.remove(key, grownTree);
+        for (long key : grownTree.getLeaves())
+            worldTrees.blockIndex.remove(key, grownTree);
+
+        long chunkKey = this.getChunkKey(grownTree.getBase());
+        List<GrownTree> chunkTrees = worldTrees.chunkTrees.get(chunkKey);
+        if (chunkTrees != null) {
+            chunkTrees.remove(grownTree);
+            if (chunkTrees.isEmpty())
+                worldTrees.chunkTrees.remove(chunkKey);
+        }
+    }
+
+    /**
+     * Reads the trees stored in a chunk into memory
+     */
+    private void loadChunk(Chunk chunk) {
+        if (this.dataKey == null)
+            return;
+
+        long[] data = chunk.getPersistentDataContainer().get(this.dataKey, PersistentDataType.LONG_ARRAY);
+        if (data == null || data.length < 2 || data[0] != DATA_VERSION)
+            return;
+
+        WorldTrees worldTrees = this.worlds.computeIfAbsent(chunk.getWorld().getUID(), uuid -> new WorldTrees());
+        long chunkKey = this.getChunkKey(chunk.getX(), chunk.getZ());
+        if (worldTrees.chunkTrees.containsKey(chunkKey))
+            return;
+
+        int offset = 2;
+        for (int i = 0; i < data[1]; i++) {
+            GrownTree grownTree = GrownTree.read(data, offset);
+            if (grownTree == null)
+                break;
+
+            offset += grownTree.getWrittenSize();
+            this.register(worldTrees, grownTree);
+        }
+    }
+
+    /**
+     * Writes the trees of a chunk to the chunk and removes them from memory
+     */
+    private void unloadChunk(Chunk chunk) {
+        WorldTrees worldTrees = this.worlds.get(chunk.getWorld().getUID());
+        if (worldTrees == null)
+            return;
+
+        List<GrownTree> chunkTrees = worldTrees.chunkTrees.get(this.getChunkKey(chunk.getX(), chunk.getZ()));
+        this.saveChunk(chunk, chunkTrees);
+        if (chunkTrees != null)
+            for (GrownTree grownTree : new ArrayList<>(chunkTrees))
+                this.unregister(worldTrees, grownTree);
+    }
+
+    /**
+     * Writes the trees of a chunk to its persistent data
+     */
+    private void saveChunk(Chunk chunk, List<GrownTree> chunkTrees) {
+        if (this.dataKey == null)
+            return;
+
+        PersistentDataContainer container = chunk.getPersistentDataContainer();
+        if (chunkTrees == null || chunkTrees.isEmpty()) {
+            if (container.has(this.dataKey, PersistentDataType.LONG_ARRAY))
+                container.remove(this.dataKey);
+            return;
+        }
+
+        int size = 2;
+        for (GrownTree grownTree : chunkTrees)
+            size += grownTree.getWrittenSize();
+
+        long[] data = new long[size];
+        data[0] = DATA_VERSION;
+        data[1] = chunkTrees.size();
+        int offset = 2;
+        for (GrownTree grownTree : chunkTrees)
+            offset = grownTree.write(data, offset);
+
+        container.set(this.dataKey, PersistentDataType.LONG_ARRAY, data);
+    }
+
+    /**
+     * Writes every loaded tree to its chunk and clears the trees from memory
+     */
+    private void saveAll() {
+        for (Iterator<Map.Entry<UUID, WorldTrees>> iterator = this.worlds.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<UUID, WorldTrees> entry = iterator.next();
+            World world = Bukkit.getWorld(entry.getKey());
+            if (world != null) {
+                for (Map.Entry<Long, List<GrownTree>> chunkEntry : entry.getValue().chunkTrees.entrySet()) {
+                    long chunkKey = chunkEntry.getKey();
+                    int chunkX = (int) (chunkKey >> 32), chunkZ = (int) chunkKey;
+                    if (world.isChunkLoaded(chunkX, chunkZ))
+                        this.saveChunk(world.getChunkAt(chunkX, chunkZ), chunkEntry.getValue());
+                }
+            }
+            iterator.remove();
+        }
+    }
+
+    private boolean containsLog(GrownTree grownTree, long key) {
+        for (long log : grownTree.getLogs())
+            if (log == key)
+                return true;
+        return false;
+    }
+
+    private long getChunkKey(long blockKey) {
+        return this.getChunkKey(BlockKey.getX(blockKey) >> 4, BlockKey.getZ(blockKey) >> 4);
+    }
+
+    private long getChunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * The known trees of a single world
+     */
+    private static class WorldTrees {
+
+        private final Map<Long, GrownTree> blockIndex = new HashMap<>();
+        private final Map<Long, List<GrownTree>> chunkTrees = new HashMap<>();
+
+    }
+
+}
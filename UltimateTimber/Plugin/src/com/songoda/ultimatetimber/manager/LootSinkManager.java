@@ -0,0 +1,470 @@
+package com.songoda.ultimatetimber.manager;
+
+import com.songoda.ultimatetimber.UltimateTimber;
+import com.songoda.ultimatetimber.tree.ChopContext;
+import com.songoda.ultimatetimber.tree.LootSink;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.Container;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Decides where the items looted from trees end up
+ * The built in sinks drop the items, add them to the player's inventory, put them in the container the player linked
+ * or keep them in the player's lumber storage, other plugins can register their own
+ */
+public class LootSinkManager extends Manager {
+
+    public static final String DROP = "DROP";
+    public static final String INVENTORY = "INVENTORY";
+    public static final String CONTAINER = "CONTAINER";
+    public static final String STORAGE = "STORAGE";
+
+    // How long to wait before saving the lumber storage after it changes, so a tree is saved once instead of every tick
+    private static final int STORAGE_SAVE_DELAY = 20 * 60;
+
+    // Only plain storage containers can be linked, not furnaces, hoppers and the like that would use or pass on the items
+    private static final Set<String> LINKABLE_CONTAINERS = new HashSet<>(Arrays.asList("CHEST", "TRAPPED_CHEST", "BARREL"));
+
+    private final Map<String, LootSink> lootSinks;
+    private final Map<UUID, List<ItemStack>> lumberStorage;
+    private final Map<UUID, ContainerLink> linkedContainers;
+    private final File storageFile;
+    private final File linkedContainersFile;
+    private final ExecutorService saveExecutor;
+    private String lootSinkName;
+    private int containerRadius;
+    private boolean storageSaveScheduled;
+
+    public LootSinkManager(UltimateTimber ultimateTimber) {
+        super(ultimateTimber);
+        this.lootSinks = new HashMap<>();
+        this.lumberStorage = new HashMap<>();
+        this.linkedContainers = new HashMap<>();
+        this.storageFile = new File(this.plugin.getDataFolder(), "lumber-storage.yml");
+        this.linkedContainersFile = new File(this.plugin.getDataFolder(), "linked-containers.yml");
+
+        // Saves are written one after another on a single thread, so an older save can never overwrite a newer one
+        this.saveExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "UltimateTimber Loot Sink Saving");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.registerLootSink(DROP, (chopContext, location, items) -> items);
+        this.registerLootSink(INVENTORY, this::deliverToInventory);
+        this.registerLootSink(CONTAINER, this::deliverToContainer);
+        this.registerLootSink(STORAGE, this::deliverToStorage);
+    }
+
+    @Override
+    public void reload() {
+        this.lootSinkName = ConfigurationManager.Setting.LOOT_SINK.getString().toUpperCase();
+        if (this.lootSinkName.equals(DROP) && ConfigurationManager.Setting.ADD_ITEMS_TO_INVENTORY.getBoolean())
+            this.lootSinkName = INVENTORY;
+        this.containerRadius = ConfigurationManager.Setting.LOOT_SINK_CONTAINER_RADIUS.getInt();
+    }
+
+    @Override
+    public void disable() {
+        this.saveStorage();
+        this.saveExecutor.shutdown();
+        try {
+            if (!this.saveExecutor.awaitTermination(10, TimeUnit.SECONDS))
+                this.plugin.getLogger().warning("Timed out while saving the lumber storage.");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.lumberStorage.clear();
+        this.linkedContainers.clear();
+        this.storageSaveScheduled = false;
+    }
+
+    public void loadData() {
+        if (this.linkedContainersFile.exists()) {
+            YamlConfiguration linkConfig = YamlConfiguration.loadConfiguration(this.linkedContainersFile);
+            for (String key : linkConfig.getKeys(false)) {
+                ConfigurationSection section = linkConfig.getConfigurationSection(key);
+                if (section != null)
+                    this.linkedContainers.put(UUID.fromString(key), new ContainerLink(section.getString("world"),
+                            section.getInt("x"), section.getInt("y"), section.getInt("z")));
+            }
+        }
+
+        if (!this.storageFile.exists())
+            return;
+
+        YamlConfiguration storageConfig = YamlConfiguration.loadConfiguration(this.storageFile);
+        for (String key : storageConfig.getKeys(false)) {
+            List<ItemStack> items = new ArrayList<>();
+            for (Object item : storageConfig.getList(key))
+                if (item instanceof ItemStack)
+                    items.add((ItemStack) item);
+            if (!items.isEmpty())
+                this.lumberStorage.put(UUID.fromString(key), items);
+        }
+    }
+
+    /**
+     * Saves the lumber storage of every player
+     * The items are copied on the calling thread and written to disk asynchronously, after any earlier saves
+     */
+    public void saveStorage() {
+        YamlConfiguration storageConfig = new YamlConfiguration();
+        for (Map.Entry<UUID, List<ItemStack>> entry : this.lumberStorage.entrySet()) {
+            List<ItemStack> items = new ArrayList<>(entry.getValue().size());
+            for (ItemStack item : entry.getValue())
+                items.add(item.clone());
+            storageConfig.set(entry.getKey().toString(), items);
+        }
+
+        this.saveExecutor.execute(() -> this.writeConfig(storageConfig, this.storageFile));
+    }
+
+    /**
+     * Saves the linked container of every player
+     * Written to disk asynchronously, after any earlier saves
+     */
+    private void saveLinkedContainers() {
+        YamlConfiguration linkConfig = new YamlConfiguration();
+        for (Map.Entry<UUID, ContainerLink> entry : this.linkedContainers.entrySet()) {
+            ConfigurationSection section = linkConfig.createSection(entry.getKey().toString());
+            ContainerLink link = entry.getValue();
+            section.set("world", link.world);
+            section.set("x", link.x);
+            section.set("y", link.y);
+            section.set("z", link.z);
+        }
+
+        this.saveExecutor.execute(() -> this.writeConfig(linkConfig, this.linkedContainersFile));
+    }
+
+    /**
+     * Writes a config to a temporary file and then moves it over the real one
+     * A crash while writing leaves the last complete save in place instead of a partially written file
+     *
+     * @param config The YamlConfiguration to write
+     * @param file   The File to write it to
+     */
+    private void writeConfig(YamlConfiguration config, File file) {
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            config.save(tempFile);
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            this.plugin.getLogger().log(Level.SEVERE, "Failed to save " + file.getName(), ex);
+        }
+    }
+
+    /**
+     * Registers a loot sink, replacing any sink that was registered with the same name
+     * The sink is used when the loot-sink setting is set to its name
+     *
+     * @param name     The name of the loot sink, not case sensitive
+     * @param lootSink The LootSink
+     */
+    public void registerLootSink(String name, LootSink lootSink) {
+        this.lootSinks.put(name.toUpperCase(), lootSink);
+    }
+
+    /**
+     * Unregisters a loot sink
+     * Loot goes back to being dropped if the unregistered sink was in use
+     *
+     * @param name The name of the loot sink, not case sensitive
+     */
+    public void unregisterLootSink(String name) {
+        this.lootSinks.remove(name.toUpperCase());
+    }
+
+    /**
+     * Gets a registered loot sink
+     *
+     * @param name The name of the loot sink, not case sensitive
+     * @return The LootSink, or null if none is registered with the name
+     */
+    public LootSink getLootSink(String name) {
+        return this.lootSinks.get(name.toUpperCase());
+    }
+
+    /**
+     * Delivers the items looted from a tree to the configured loot sink
+     * Anything the sink can't take is dropped as full stacks at the given location
+     *
+     * @param chopContext The ChopContext of the player who chopped the tree
+     * @param location    The center of the tree blocks the items were looted from
+     * @param items       The merged items to deliver
+     */
+    public void deliverLoot(ChopContext chopContext, Location location, List<ItemStack> items) {
+        LootSink lootSink = this.lootSinks.get(this.lootSinkName);
+        Collection<ItemStack> leftoverItems = items;
+        if (lootSink != null) {
+            try {
+                leftoverItems = lootSink.deliver(chopContext, location, new ArrayList<>(items));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+
+        if (leftoverItems == null || leftoverItems.isEmpty())
+            return;
+
+        Location dropLocation = location.clone().add(0.5, 0.5, 0.5);
+        for (ItemStack item : leftoverItems)
+            this.dropStacked(dropLocation, item);
+    }
+
+    /**
+     * Checks if a block is a container that tree loot can be linked to
+     *
+     * @param block The Block to check
+     * @return True if the block is a chest or barrel, otherwise false
+     */
+    public boolean isLinkableContainer(Block block) {
+        return LINKABLE_CONTAINERS.contains(block.getType().name()) && block.getState() instanceof Container;
+    }
+
+    /**
+     * Checks if a player is allowed to open a container, going through protection plugins
+     * The same check protection plugins do for a right click on the block is run without actually clicking it
+     *
+     * @param player The Player to check
+     * @param block  The Block of the container
+     * @return True if the player can open the container, otherwise false
+     */
+    public boolean canAccessContainer(Player player, Block block) {
+        PlayerInteractEvent event = new PlayerInteractEvent(player, Action.RIGHT_CLICK_BLOCK, null, block, BlockFace.SELF);
+        Bukkit.getPluginManager().callEvent(event);
+        return event.useInteractedBlock() != Event.Result.DENY;
+    }
+
+    /**
+     * Links a container to a player, their tree loot goes into it with the CONTAINER loot sink
+     *
+     * @param player The Player to link the container to
+     * @param block  The Block of the container
+     */
+    public void linkContainer(Player player, Block block) {
+        this.linkedContainers.put(player.getUniqueId(), new ContainerLink(block.getWorld().getName(), block.getX(), block.getY(), block.getZ()));
+        this.saveLinkedContainers();
+    }
+
+    /**
+     * Unlinks the container of a player
+     *
+     * @param player The Player to unlink the container of
+     * @return True if the player had a linked container, otherwise false
+     */
+    public boolean unlinkContainer(Player player) {
+        if (this.linkedContainers.remove(player.getUniqueId()) == null)
+            return false;
+
+        this.saveLinkedContainers();
+        return true;
+    }
+
+    /**
+     * Checks if a block is the container linked to a player
+     *
+     * @param player The Player to check
+     * @param block  The Block to check
+     * @return True if the block is the player's linked container, otherwise false
+     */
+    public boolean isLinkedContainer(Player player, Block block) {
+        ContainerLink link = this.linkedContainers.get(player.getUniqueId());
+        return link != null && link.world.equals(block.getWorld().getName())
+                && link.x == block.getX() && link.y == block.getY() && link.z == block.getZ();
+    }
+
+    /**
+     * Gets the items in a player's lumber storage
+     *
+     * @param uuid The UUID of the player
+     * @return A copy of the items in the player's lumber storage
+     */
+    public List<ItemStack> getStoredLumber(UUID uuid) {
+        List<ItemStack> storedItems = this.lumberStorage.get(uuid);
+        if (storedItems == null)
+            return Collections.emptyList();
+
+        List<ItemStack> items = new ArrayList<>(storedItems.size());
+        for (ItemStack item : storedItems)
+            items.add(item.clone());
+        return items;
+    }
+
+    /**
+     * Moves as much of a player's lumber storage into their inventory as fits
+     *
+     * @param player The player to withdraw for
+     * @return The number of items that were withdrawn
+     */
+    public int withdrawLumber(Player player) {
+        List<ItemStack> storedItems = this.lumberStorage.remove(player.getUniqueId());
+        if (storedItems == null)
+            return 0;
+
+        int storedAmount = this.countItems(storedItems);
+        Collection<ItemStack> leftoverItems = player.getInventory().addItem(storedItems.toArray(new ItemStack[0])).values();
+        if (!leftoverItems.isEmpty())
+            this.lumberStorage.put(player.getUniqueId(), new ArrayList<>(leftoverItems));
+
+        // Saved right away, a crash before a delayed save would give the withdrawn items back
+        this.saveStorage();
+        return storedAmount - this.countItems(leftoverItems);
+    }
+
+    private Collection<ItemStack> deliverToInventory(ChopContext chopContext, Location location, List<ItemStack> items) {
+        Player player = chopContext.getPlayer();
+        if (!player.isOnline() || !player.getWorld().equals(location.getWorld()))
+            return items;
+
+        // Whatever doesn't fit is dropped at the player's feet as full stacks
+        Collection<ItemStack> extraItems = player.getInventory().addItem(items.toArray(new ItemStack[0])).values();
+        Location dropLocation = player.getLocation().clone().subtract(0.5, 0, 0.5);
+        for (ItemStack extraItem : extraItems)
+            this.dropStacked(dropLocation, extraItem);
+        return Collections.emptyList();
+    }
+
+    private Collection<ItemStack> deliverToContainer(ChopContext chopContext, Location location, List<ItemStack> items) {
+        Container container = this.getLinkedContainer(chopContext.getPlayer(), location);
+        if (container == null)
+            return items;
+        return container.getInventory().addItem(items.toArray(new ItemStack[0])).values();
+    }
+
+    private Collection<ItemStack> deliverToStorage(ChopContext chopContext, Location location, List<ItemStack> items) {
+        List<ItemStack> storedItems = this.lumberStorage.computeIfAbsent(chopContext.getPlayer().getUniqueId(), x -> new ArrayList<>());
+        for (ItemStack item : items)
+            this.addMerged(storedItems, item);
+
+        this.scheduleStorageSave();
+        return Collections.emptyList();
+    }
+
+    /**
+     * Gets the container linked to a player if it is within the container radius of a location
+     * The chunk of the container has to be loaded already, it is never loaded just to deliver loot
+     *
+     * @param player   The Player to get the linked container of
+     * @param location The Location the container has to be near
+     * @return The linked Container, or null if there is none in range
+     */
+    private Container getLinkedContainer(Player player, Location location) {
+        ContainerLink link = this.linkedContainers.get(player.getUniqueId());
+        World world = location.getWorld();
+        if (link == null || !link.world.equals(world.getName()))
+            return null;
+
+        double dx = link.x + 0.5 - location.getX(), dy = link.y + 0.5 - location.getY(), dz = link.z + 0.5 - location.getZ();
+        if (dx * dx + dy * dy + dz * dz > (double) this.containerRadius * this.containerRadius)
+            return null;
+
+        if (!world.isChunkLoaded(link.x >> 4, link.z >> 4))
+            return null;
+
+        // The container may have been broken or replaced since it was linked
+        Block block = world.getBlockAt(link.x, link.y, link.z);
+        if (!this.isLinkableContainer(block))
+            return null;
+        return (Container) block.getState();
+    }
+
+    private void addMerged(List<ItemStack> items, ItemStack item) {
+        for (ItemStack existing : items) {
+            if (existing.isSimilar(item)) {
+                existing.setAmount(existing.getAmount() + item.getAmount());
+                return;
+            }
+        }
+        items.add(item.clone());
+    }
+
+    private int countItems(Collection<ItemStack> items) {
+        int amount = 0;
+        for (ItemStack item : items)
+            amount += item.getAmount();
+        return amount;
+    }
+
+    private void scheduleStorageSave() {
+        if (this.storageSaveScheduled)
+            return;
+
+        this.storageSaveScheduled = true;
+        this.plugin.getTimerManager().schedule(() -> {
+            this.storageSaveScheduled = false;
+            this.saveStorage();
+        }, STORAGE_SAVE_DELAY);
+    }
+
+    /**
+     * The location of a container linked to a player
+     */
+    private static class ContainerLink {
+
+        private final String world;
+        private final int x, y, z;
+
+        private ContainerLink(String world, int x, int y, int z) {
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+    }
+
+    /**
+     * Drops an item that may be bigger than its max stack size as a few full stacks
+     *
+     * @param location The Location to drop the item at
+     * @param item     The item to drop
+     */
+    private void dropStacked(Location location, ItemStack item) {
+        int maxStackSize = Math.max(1, item.getMaxStackSize());
+        int amount = item.getAmount();
+        while (amount > 0) {
+            ItemStack stack = item.clone();
+            stack.setAmount(Math.min(amount, maxStackSize));
+            amount -= stack.getAmount();
+            location.getWorld().dropItemNaturally(location, stack);
+        }
+    }
+
+}
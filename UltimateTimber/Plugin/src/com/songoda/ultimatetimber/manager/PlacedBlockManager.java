@@ -3,9 +3,11 @@ package com.songoda.ultimatetimber.manager;
 import com.songoda.ultimatetimber.UltimateTimber;
 import com.songoda.ultimatetimber.events.TreeFellEvent;
 import com.songoda.ultimatetimber.tree.ITreeBlock;
+import com.songoda.ultimatetimber.utils.BlockKey;
+import com.songoda.ultimatetimber.utils.LongIntHashMap;
 import org.bukkit.Bukkit;
-import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.bukkit.event.EventHandler;
@@ -16,19 +18,32 @@ import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.block.LeavesDecayEvent;
 import org.bukkit.event.world.StructureGrowEvent;
 
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.ArrayDeque;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
+import java.util.UUID;
+import java.util.function.LongPredicate;
 
+/**
+ * Keeps track of the blocks placed by players so they are never detected as part of a tree
+ * Only used on the main thread, detections off of the main thread get a copy of the placed blocks of their world
+ */
 public class PlacedBlockManager extends Manager implements Listener {
 
-    private Set<Location> placedBlocks;
+    private static final LongPredicate NO_PLACED_BLOCKS = key -> false;
+
+    // Packed block keys of the placed blocks of each world, mapped to the order they were placed in
+    private final Map<UUID, LongIntHashMap> placedBlocks;
+    private final ArrayDeque<PlacedBlock> placementOrder;
+    private int placedBlockCount;
+    private int nextSequence;
     private boolean ignorePlacedBlocks;
     private int maxPlacedBlockMemorySize;
 
     public PlacedBlockManager(UltimateTimber ultimateTimber) {
         super(ultimateTimber);
+        this.placedBlocks = new HashMap<>();
+        this.placementOrder = new ArrayDeque<>();
         Bukkit.getPluginManager().registerEvents(this, ultimateTimber);
     }
 
@@ -36,19 +51,18 @@ public class PlacedBlockManager extends Manager implements Listener {
     public void reload() {
         this.ignorePlacedBlocks = ConfigurationManager.Setting.IGNORE_PLACED_BLOCKS.getBoolean();
         this.maxPlacedBlockMemorySize = ConfigurationManager.Setting.IGNORE_PLACED_BLOCKS_MEMORY_SIZE.getInt();
-
-        // Ensures the oldest entry is removed if it exceeds the limit
-        this.placedBlocks = Collections.newSetFromMap(new LinkedHashMap<Location, Boolean>() {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<Location, Boolean> eldest) {
-                return this.size() > PlacedBlockManager.this.maxPlacedBlockMemorySize;
-            }
-        });
+        this.clear();
     }
 
     @Override
     public void disable() {
+        this.clear();
+    }
+
+    private void clear() {
         this.placedBlocks.clear();
+        this.placementOrder.clear();
+        this.placedBlockCount = 0;
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -101,13 +115,44 @@ public class PlacedBlockManager extends Manager implements Listener {
      * Handles when a block is placed/broken
      */
     private void internalProtect(Block block, boolean isPlaced) {
+        long key = BlockKey.pack(block);
+        UUID worldId = block.getWorld().getUID();
         if (isPlaced) {
-            if (this.isBlockPlaced(block))
+            LongIntHashMap worldBlocks = this.placedBlocks.computeIfAbsent(worldId, x -> new LongIntHashMap());
+            if (worldBlocks.get(key) != -1)
                 return;
 
-            this.placedBlocks.add(block.getLocation());
+            int sequence = this.nextSequence;
+            this.nextSequence = (sequence + 1) & Integer.MAX_VALUE;
+            worldBlocks.put(key, sequence);
+            this.placementOrder.add(new PlacedBlock(worldBlocks, key, sequence));
+            this.placedBlockCount++;
+
+            // Ensures the oldest blocks are removed if it exceeds the limit
+            while (this.placedBlockCount > this.maxPlacedBlockMemorySize)
+                this.removeOldest();
         } else {
-            this.placedBlocks.remove(block.getLocation());
+            LongIntHashMap worldBlocks = this.placedBlocks.get(worldId);
+            if (worldBlocks != null && worldBlocks.remove(key) != -1)
+                this.placedBlockCount--;
+
+            // Broken blocks stay in the placement order until they come up, drop them once they outnumber the placed blocks
+            if (this.placementOrder.size() > Math.max(64, this.placedBlockCount * 2))
+                this.placementOrder.removeIf(placedBlock -> !placedBlock.isCurrent());
+        }
+    }
+
+    /**
+     * Removes the oldest placed block that is still being tracked
+     */
+    private void removeOldest() {
+        PlacedBlock placedBlock;
+        while ((placedBlock = this.placementOrder.poll()) != null) {
+            if (placedBlock.isCurrent()) {
+                placedBlock.worldBlocks.remove(placedBlock.key);
+                this.placedBlockCount--;
+                return;
+            }
         }
     }
 
@@ -118,7 +163,60 @@ public class PlacedBlockManager extends Manager implements Listener {
      * @return True if the block is placed, otherwise false
      */
     public boolean isBlockPlaced(Block block) {
-        return this.placedBlocks.contains(block.getLocation());
+        LongIntHashMap worldBlocks = this.placedBlocks.get(block.getWorld().getUID());
+        return worldBlocks != null && worldBlocks.get(BlockKey.pack(block)) != -1;
+    }
+
+    /**
+     * Gets a filter matching the placed blocks of a world by their packed block keys
+     * The filter reads the live placed blocks, so it must only be used on the main thread
+     *
+     * @param world The World to filter the blocks of
+     * @return A LongPredicate testing packed block keys
+     */
+    public LongPredicate getPlacedBlockFilter(World world) {
+        LongIntHashMap worldBlocks = this.placedBlocks.get(world.getUID());
+        if (worldBlocks == null)
+            return NO_PLACED_BLOCKS;
+        return key -> worldBlocks.get(key) != -1;
+    }
+
+    /**
+     * Gets a filter matching the placed blocks of a world by their packed block keys, as they are right now
+     * The filter reads a copy of the placed blocks, so it can be used from any number of threads at once
+     *
+     * @param world The World to filter the blocks of
+     * @return A LongPredicate testing packed block keys
+     */
+    public LongPredicate snapshotPlacedBlockFilter(World world) {
+        LongIntHashMap worldBlocks = this.placedBlocks.get(world.getUID());
+        if (worldBlocks == null || worldBlocks.size() == 0)
+            return NO_PLACED_BLOCKS;
+
+        LongIntHashMap snapshot = worldBlocks.copy();
+        return key -> snapshot.get(key) != -1;
+    }
+
+    /**
+     * A block in the order blocks were placed in
+     * It only still counts if the block wasn't broken and placed again since, which would give it a newer sequence
+     */
+    private static class PlacedBlock {
+
+        private final LongIntHashMap worldBlocks;
+        private final long key;
+        private final int sequence;
+
+        private PlacedBlock(LongIntHashMap worldBlocks, long key, int sequence) {
+            this.worldBlocks = worldBlocks;
+            this.key = key;
+            this.sequence = sequence;
+        }
+
+        private boolean isCurrent() {
+            return this.worldBlocks.get(this.key) == this.sequence;
+        }
+
     }
 
 }
@@ -5,30 +5,36 @@ import com.songoda.ultimatetimber.UltimateTimber;
 import com.songoda.ultimatetimber.tree.ITreeBlock;
 import com.songoda.ultimatetimber.tree.TreeBlockType;
 import com.songoda.ultimatetimber.tree.TreeDefinition;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
-import java.util.Set;
 
 public class SaplingManager extends Manager {
 
     private Random random;
-    private Set<Location> protectedSaplings;
+    private Map<Location, Long> protectedSaplings;
+    private boolean replantSaplings;
+    private boolean fallingBlocksReplantSaplings;
+    private double fallingBlocksReplantChance;
+    private int replantCooldown;
 
     public SaplingManager(UltimateTimber ultimateTimber) {
         super(ultimateTimber);
         this.random = new Random();
-        this.protectedSaplings = new HashSet<>();
+        this.protectedSaplings = new HashMap<>();
     }
 
     @Override
     public void reload() {
-
+        this.replantSaplings = ConfigurationManager.Setting.REPLANT_SAPLINGS.getBoolean();
+        this.fallingBlocksReplantSaplings = ConfigurationManager.Setting.FALLING_BLOCKS_REPLANT_SAPLINGS.getBoolean();
+        this.fallingBlocksReplantChance = ConfigurationManager.Setting.FALLING_BLOCKS_REPLANT_SAPLINGS_CHANCE.getDouble();
+        this.replantCooldown = ConfigurationManager.Setting.REPLANT_SAPLINGS_COOLDOWN.getInt();
     }
 
     @Override
@@ -44,14 +50,14 @@ public class SaplingManager extends Manager {
      * @param treeBlock The ITreeBlock to replant for
      */
     public void replantSapling(TreeDefinition treeDefinition, ITreeBlock treeBlock) {
-        if (!ConfigurationManager.Setting.REPLANT_SAPLINGS.getBoolean())
+        if (!this.replantSaplings)
             return;
 
         Block block = treeBlock.getLocation().getBlock();
         if (!block.getType().equals(Material.AIR) || treeBlock.getTreeBlockType().equals(TreeBlockType.LEAF))
             return;
 
-        Bukkit.getScheduler().scheduleSyncDelayedTask(this.plugin, () -> this.internalReplant(treeDefinition, treeBlock), 1L);
+        this.plugin.getTimerManager().schedule(() -> this.internalReplant(treeDefinition, treeBlock), 1);
     }
 
     /**
@@ -62,14 +68,13 @@ public class SaplingManager extends Manager {
      * @param treeBlock The ITreeBlock to replant for
      */
     public void replantSaplingWithChance(TreeDefinition treeDefinition, ITreeBlock treeBlock) {
-        if (!ConfigurationManager.Setting.FALLING_BLOCKS_REPLANT_SAPLINGS.getBoolean() || !treeBlock.getLocation().getBlock().getType().equals(Material.AIR))
+        if (!this.fallingBlocksReplantSaplings || !treeBlock.getLocation().getBlock().getType().equals(Material.AIR))
             return;
 
-        double chance = ConfigurationManager.Setting.FALLING_BLOCKS_REPLANT_SAPLINGS_CHANCE.getDouble();
-        if (this.random.nextDouble() > chance / 100)
+        if (this.random.nextDouble() > this.fallingBlocksReplantChance / 100)
             return;
 
-        Bukkit.getScheduler().scheduleSyncDelayedTask(this.plugin, () -> this.internalReplant(treeDefinition, treeBlock), 1L);
+        this.plugin.getTimerManager().schedule(() -> this.internalReplant(treeDefinition, treeBlock), 1);
     }
 
     /**
@@ -83,24 +88,21 @@ public class SaplingManager extends Manager {
 
         Block block = treeBlock.getLocation().getBlock();
         Block blockBelow = block.getRelative(BlockFace.DOWN);
-        boolean isValidSoil = false;
-        for (CompatibleMaterial soilMaterial : treeDefinitionManager.getPlantableSoilMaterial(treeDefinition)) {
-            if (soilMaterial.equals(CompatibleMaterial.getMaterial(blockBelow))) {
-                isValidSoil = true;
-                break;
-            }
-        }
-
-        if (!isValidSoil)
+        if (!treeDefinitionManager.isPlantableSoil(treeDefinition, CompatibleMaterial.getMaterial(blockBelow)))
             return;
 
         CompatibleMaterial material = treeDefinition.getSaplingMaterial();
         material.applyToBlock(block);
 
-        int cooldown = ConfigurationManager.Setting.REPLANT_SAPLINGS_COOLDOWN.getInt();
+        int cooldown = this.replantCooldown;
         if (cooldown != 0) {
-            this.protectedSaplings.add(block.getLocation());
-            Bukkit.getScheduler().scheduleSyncDelayedTask(this.plugin, () -> this.protectedSaplings.remove(block.getLocation()), cooldown * 20L);
+            TimerManager timerManager = this.plugin.getTimerManager();
+            Location location = block.getLocation();
+            Long deadline = timerManager.getCurrentTick() + cooldown * 20L;
+            this.protectedSaplings.put(location, deadline);
+
+            // Only cleans up the map, isSaplingProtected checks the deadline itself
+            timerManager.schedule(() -> this.protectedSaplings.remove(location, deadline), cooldown * 20);
         }
     }
 
@@ -111,7 +113,8 @@ public class SaplingManager extends Manager {
      * @return True if the sapling is protected, otherwise false
      */
     public boolean isSaplingProtected(Block block) {
-        return this.protectedSaplings.contains(block.getLocation());
+        Long deadline = this.protectedSaplings.get(block.getLocation());
+        return deadline != null && deadline > this.plugin.getTimerManager().getCurrentTick();
     }
 
 }
@@ -0,0 +1,69 @@
+package com.songoda.ultimatetimber.manager;
+
+import com.songoda.ultimatetimber.UltimateTimber;
+import com.songoda.ultimatetimber.utils.TimingWheel;
+import org.bukkit.Bukkit;
+
+import java.util.logging.Level;
+
+/**
+ * Runs delayed work for all managers from a single timing wheel that is advanced once per tick
+ * Scheduling a timer is a couple of array writes, so it can be done for every block of a tree
+ * without creating scheduler tasks
+ */
+public class TimerManager extends Manager implements Runnable {
+
+    private final TimingWheel<Runnable> timers;
+    private final int taskId;
+
+    public TimerManager(UltimateTimber ultimateTimber) {
+        super(ultimateTimber);
+        this.timers = new TimingWheel<>(512);
+        this.taskId = Bukkit.getScheduler().runTaskTimer(this.plugin, this, 0, 1L).getTaskId();
+    }
+
+    @Override
+    public void reload() {
+
+    }
+
+    @Override
+    public void disable() {
+        this.timers.clear();
+        Bukkit.getScheduler().cancelTask(this.taskId);
+    }
+
+    @Override
+    public void run() {
+        this.timers.advance(this::runTimer);
+    }
+
+    private void runTimer(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception ex) {
+            this.plugin.getLogger().log(Level.SEVERE, "Failed to run a timer", ex);
+        }
+    }
+
+    /**
+     * Runs a task after a number of ticks
+     *
+     * @param task  The task to run
+     * @param delay The number of ticks to wait, at least 1
+     */
+    public void schedule(Runnable task, int delay) {
+        this.timers.schedule(task, delay);
+    }
+
+    /**
+     * Gets the current tick, which only ever counts up while the plugin is enabled
+     * Deadlines stored as a tick can be compared against this instead of scheduling a task to expire them
+     *
+     * @return The current tick
+     */
+    public long getCurrentTick() {
+        return this.timers.getTick();
+    }
+
+}
@@ -6,93 +6,227 @@ import com.songoda.ultimatetimber.UltimateTimber;
 import com.songoda.ultimatetimber.animation.TreeAnimation;
 import com.songoda.ultimatetimber.animation.TreeAnimationCrumble;
 import com.songoda.ultimatetimber.animation.TreeAnimationDisintegrate;
+import com.songoda.ultimatetimber.animation.TreeAnimationDisplay;
 import com.songoda.ultimatetimber.animation.TreeAnimationFancy;
 import com.songoda.ultimatetimber.animation.TreeAnimationNone;
 import com.songoda.ultimatetimber.animation.TreeAnimationType;
+import com.songoda.ultimatetimber.tree.ChopContext;
 import com.songoda.ultimatetimber.tree.DetectedTree;
 import com.songoda.ultimatetimber.tree.ITreeBlock;
 import com.songoda.ultimatetimber.tree.TreeDefinition;
+import com.songoda.ultimatetimber.utils.BlockKey;
+import com.songoda.ultimatetimber.utils.LongIntHashMap;
 import com.songoda.ultimatetimber.utils.ParticleUtils;
 import com.songoda.ultimatetimber.utils.SoundUtils;
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.FallingBlock;
 import org.bukkit.entity.LivingEntity;
-import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityChangeBlockEvent;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
 
 public class TreeAnimationManager extends Manager implements Listener, Runnable {
 
-    private final Set<TreeAnimation> activeAnimations;
+    // Display entities were added in 1.19.4, which can't be told apart from older 1.19 versions by the ServerVersion
+    private static final boolean DISPLAY_ENTITIES_SUPPORTED = classExists("org.bukkit.entity.BlockDisplay");
+
+    // Landings normally come in through the EntityChangeBlockEvent, polling only catches falling blocks that never fire it
+    private static final int FALLING_BLOCK_POLL_INTERVAL = 5;
+    private static final int FALLING_BLOCK_TIMEOUT = 5 * 20;
+
+    private final Map<UUID, WorldAnimations> worldAnimations;
+    private WorldAnimations[] activeWorlds;
+    private int activeWorldCount;
+    private double averageTickTime;
+    private final Map<Integer, AnimatedFallingBlock> animatedFallingBlocks;
+    private final List<AnimatedFallingBlock> landedFallingBlocks;
+    private final Map<UUID, LongIntHashMap> reservedBlocks;
+    private final Map<TreeAnimation, Admission> admissions;
+    private final Map<UUID, LongIntHashMap> admittedChunkFallingBlocks;
+    private final Deque<Admission> queuedAnimations;
+    private int admittedFallingBlocks;
+    private int fallingBlocksSpawnedThisTick;
+    private int maxFallingBlocks;
+    private int maxChunkFallingBlocks;
+    private int fallingBlocksPerTick;
     private final int taskId;
 
     public TreeAnimationManager(UltimateTimber ultimateTimber) {
         super(ultimateTimber);
-        this.activeAnimations = new HashSet<>();
-        this.taskId = -1;
+        this.worldAnimations = new HashMap<>();
+        this.activeWorlds = new WorldAnimations[4];
+        this.animatedFallingBlocks = new HashMap<>();
+        this.landedFallingBlocks = new ArrayList<>();
+        this.reservedBlocks = new HashMap<>();
+        this.admissions = new HashMap<>();
+        this.admittedChunkFallingBlocks = new HashMap<>();
+        this.queuedAnimations = new ArrayDeque<>();
         Bukkit.getPluginManager().registerEvents(this, ultimateTimber);
-        Bukkit.getScheduler().runTaskTimer(this.plugin, this, 0, 1L);
+        this.taskId = Bukkit.getScheduler().runTaskTimer(this.plugin, this, 0, 1L).getTaskId();
     }
 
     @Override
     public void reload() {
-        this.activeAnimations.clear();
+        this.maxFallingBlocks = ConfigurationManager.Setting.MAX_FALLING_BLOCKS.getInt();
+        this.maxChunkFallingBlocks = ConfigurationManager.Setting.MAX_FALLING_BLOCKS_PER_CHUNK.getInt();
+        this.fallingBlocksPerTick = ConfigurationManager.Setting.FALLING_BLOCKS_SPAWNED_PER_TICK.getInt();
+
+        // Running animations keep going with the settings they were started with, queued ones can't wait for limits that changed
+        this.startQueuedAnimations(true);
     }
 
     @Override
     public void disable() {
-        this.activeAnimations.clear();
         Bukkit.getScheduler().cancelTask(this.taskId);
+
+        // Nothing ticks the animations anymore, so they are played out right away to not leave trees half broken
+        this.startQueuedAnimations(false);
+        for (int i = 0; i < this.activeWorldCount; i++) {
+            WorldAnimations worldAnimations = this.activeWorlds[i];
+            for (int j = 0; j < worldAnimations.size; j++)
+                this.finishAnimation(worldAnimations.animations[j]);
+        }
+
+        this.clearAnimations();
+        this.clearFallingBlocks();
+        this.reservedBlocks.clear();
+        this.clearAdmissions();
     }
 
+    /**
+     * Ticks every active tree animation
+     * Only worlds with animations in them are looked at, and animations started or finished
+     * during the tick are only added or removed once every animation has been ticked
+     */
     @Override
     public void run() {
-        for (TreeAnimation treeAnimation : this.activeAnimations) {
-            Set<ITreeBlock<FallingBlock>> groundedBlocks = new HashSet<>();
-            for (ITreeBlock<FallingBlock> fallingTreeBlock : treeAnimation.getFallingTreeBlocks().getAllTreeBlocks()) {
-                FallingBlock fallingBlock = fallingTreeBlock.getBlock();
-                if (fallingBlock.isDead() || ServerVersion.isServerVersionAtLeast(ServerVersion.V1_17) && fallingBlock.isOnGround())
-                    groundedBlocks.add(fallingTreeBlock);
-            }
+        long startTime = System.nanoTime();
+        this.fallingBlocksSpawnedThisTick = 0;
+
+        if (!this.landedFallingBlocks.isEmpty()) {
+            for (AnimatedFallingBlock animatedFallingBlock : this.landedFallingBlocks)
+                if (this.isIndexed(animatedFallingBlock))
+                    this.landFallingBlock(animatedFallingBlock);
+            this.landedFallingBlocks.clear();
+        }
 
-            for (ITreeBlock<FallingBlock> fallingBlock : groundedBlocks) {
-                this.runFallingBlockImpact(treeAnimation, fallingBlock);
-                if (ServerVersion.isServerVersionAtLeast(ServerVersion.V1_17))
-                    fallingBlock.getBlock().remove();
-                treeAnimation.getFallingTreeBlocks().remove(fallingBlock);
+        int activeWorldCount = this.activeWorldCount;
+        for (int i = 0; i < activeWorldCount; i++) {
+            WorldAnimations worldAnimations = this.activeWorlds[i];
+            int size = worldAnimations.size;
+            for (int j = 0; j < size; j++) {
+                TreeAnimation treeAnimation = worldAnimations.animations[j];
+                if (treeAnimation.isFinished()) {
+                    // Animations that finished since the last tick are still flushed once before they're removed
+                    this.flushAnimation(treeAnimation);
+                    continue;
+                }
+
+                try {
+                    treeAnimation.tick();
+                } catch (Exception ex) {
+                    this.plugin.getLogger().log(Level.SEVERE, "A tree animation failed while ticking, finishing it right away", ex);
+                    this.finishAnimation(treeAnimation);
+                    continue;
+                }
+                this.flushAnimation(treeAnimation);
             }
         }
+
+        this.removeFinishedAnimations();
+
+        if (!this.queuedAnimations.isEmpty())
+            this.runQueuedAnimations();
+
+        this.averageTickTime = this.averageTickTime * 0.95 + (System.nanoTime() - startTime) * 0.05;
     }
 
     /**
      * Plays an animation for toppling a tree
      *
      * @param detectedTree The DetectedTree
-     * @param player       The Player who toppled the tree
+     * @param chopContext  The ChopContext of the Player who toppled the tree
      */
-    public void runAnimation(DetectedTree detectedTree, Player player) {
-        switch (TreeAnimationType.fromString(ConfigurationManager.Setting.TREE_ANIMATION_TYPE.getString())) {
-            case FANCY:
-                this.registerTreeAnimation(new TreeAnimationFancy(detectedTree, player));
-                break;
-            case DISINTEGRATE:
-                this.registerTreeAnimation(new TreeAnimationDisintegrate(detectedTree, player));
-                break;
-            case CRUMBLE:
-                this.registerTreeAnimation(new TreeAnimationCrumble(detectedTree, player));
-                break;
-            case NONE:
-                this.registerTreeAnimation(new TreeAnimationNone(detectedTree, player));
-                break;
+    public void runAnimation(DetectedTree detectedTree, ChopContext chopContext) {
+        TreeAnimationType treeAnimationType = TreeAnimationType.fromString(ConfigurationManager.Setting.TREE_ANIMATION_TYPE.getString());
+        if (treeAnimationType == TreeAnimationType.DISPLAY && !DISPLAY_ENTITIES_SUPPORTED)
+            treeAnimationType = TreeAnimationType.FANCY;
+        TreeAnimation treeAnimation = this.createTreeAnimation(treeAnimationType, detectedTree, chopContext);
+        if (treeAnimationType != TreeAnimationType.FANCY && treeAnimationType != TreeAnimationType.CRUMBLE) {
+            this.registerTreeAnimation(treeAnimation);
+            return;
         }
+
+        Location location = detectedTree.getDetectedTreeBlocks().getInitialLogBlock().getLocation();
+        Admission admission = new Admission(treeAnimation, location.getWorld().getUID(), this.getChunkKey(location), detectedTree.getDetectedTreeBlocks().size());
+        if (this.queuedAnimations.isEmpty() && this.canAdmit(admission)) {
+            this.admit(admission);
+            this.registerTreeAnimation(treeAnimation);
+            return;
+        }
+
+        String limitAction = ConfigurationManager.Setting.FALLING_BLOCK_LIMIT_ACTION.getString();
+        if (limitAction.equalsIgnoreCase("QUEUE") && this.canEverAdmit(admission)) {
+            // Reserve the blocks now so nobody else can topple the tree while it waits
+            this.reserveBlocks(treeAnimation);
+            this.queuedAnimations.add(admission);
+            return;
+        }
+
+        TreeAnimationType fallbackType = limitAction.equalsIgnoreCase("NONE") ? TreeAnimationType.NONE : TreeAnimationType.DISINTEGRATE;
+        this.registerTreeAnimation(this.createTreeAnimation(fallbackType, detectedTree, chopContext));
+    }
+
+    /**
+     * Checks if another falling block can be spawned this tick
+     *
+     * @return True if a falling block can be spawned, otherwise false
+     */
+    public boolean canSpawnFallingBlock() {
+        return this.fallingBlocksPerTick <= 0 || this.fallingBlocksSpawnedThisTick < this.fallingBlocksPerTick;
+    }
+
+    /**
+     * Gets the number of falling blocks that belong to tree animations
+     *
+     * @return The number of falling blocks
+     */
+    public int getFallingBlockCount() {
+        return this.animatedFallingBlocks.size();
+    }
+
+    /**
+     * Gets the average time spent ticking tree animations each tick
+     *
+     * @return The average tick time in milliseconds
+     */
+    public double getAverageTickTime() {
+        return this.averageTickTime / 1_000_000;
+    }
+
+    /**
+     * Gets the number of tree animations waiting for room under the falling block limits
+     *
+     * @return The number of queued animations
+     */
+    public int getQueuedAnimationCount() {
+        return this.queuedAnimations.size();
     }
 
     /**
@@ -101,11 +235,35 @@ public class TreeAnimationManager extends Manager implements Listener, Runnable
      * @param block The block to check
      */
     public boolean isBlockInAnimation(Block block) {
-        for (TreeAnimation treeAnimation : this.activeAnimations)
-            for (ITreeBlock<Block> treeBlock : treeAnimation.getDetectedTree().getDetectedTreeBlocks().getAllTreeBlocks())
-                if (treeBlock.getBlock().equals(block))
-                    return true;
-        return false;
+        LongIntHashMap reservedBlocks = this.reservedBlocks.get(block.getWorld().getUID());
+        return reservedBlocks != null && reservedBlocks.get(BlockKey.pack(block)) != -1;
+    }
+
+    /**
+     * Releases a block of a tree animation once it has been replaced, so it no longer counts as in an animation
+     *
+     * @param treeAnimation The tree animation the block belongs to
+     * @param treeBlock     The tree block to release
+     */
+    public void releaseBlock(TreeAnimation treeAnimation, ITreeBlock<Block> treeBlock) {
+        long key = treeBlock.getKey();
+        if (!treeAnimation.releaseBlock(key))
+            return;
+
+        UUID worldId = treeBlock.getLocation().getWorld().getUID();
+        LongIntHashMap reservedBlocks = this.reservedBlocks.get(worldId);
+        if (reservedBlocks == null)
+            return;
+
+        // Trees next to each other can share leaves, so a block is reserved once for each animation it's in
+        int count = reservedBlocks.get(key);
+        if (count > 1) {
+            reservedBlocks.put(key, count - 1);
+        } else if (count != -1) {
+            reservedBlocks.remove(key);
+            if (reservedBlocks.size() == 0)
+                this.reservedBlocks.remove(worldId);
+        }
     }
 
     /**
@@ -114,32 +272,359 @@ public class TreeAnimationManager extends Manager implements Listener, Runnable
      * @param fallingBlock The falling block to check
      */
     public boolean isBlockInAnimation(FallingBlock fallingBlock) {
-        for (TreeAnimation treeAnimation : this.activeAnimations)
-            for (ITreeBlock<FallingBlock> treeBlock : treeAnimation.getFallingTreeBlocks().getAllTreeBlocks())
-                if (treeBlock.getBlock().equals(fallingBlock))
-                    return true;
-        return false;
+        return this.animatedFallingBlocks.containsKey(fallingBlock.getEntityId());
+    }
+
+    /**
+     * Gets the falling tree block of an animation for a given falling block
+     *
+     * @param fallingBlock The falling block to look up
+     * @return The falling tree block, or null if the falling block isn't in an animation
+     */
+    public ITreeBlock<FallingBlock> getFallingTreeBlock(FallingBlock fallingBlock) {
+        AnimatedFallingBlock animatedFallingBlock = this.animatedFallingBlocks.get(fallingBlock.getEntityId());
+        return animatedFallingBlock == null ? null : animatedFallingBlock.fallingTreeBlock;
     }
 
     /**
-     * Gets a TreeAnimation that a given falling block is in
+     * Indexes a falling block spawned by a tree animation so it can be looked up by its entity id
      *
-     * @return A TreeAnimation
+     * @param treeAnimation    The tree animation the falling block belongs to
+     * @param fallingTreeBlock The falling tree block
      */
-    private TreeAnimation getAnimationForBlock(FallingBlock fallingBlock) {
-        for (TreeAnimation treeAnimation : this.activeAnimations)
-            for (ITreeBlock<FallingBlock> treeBlock : treeAnimation.getFallingTreeBlocks().getAllTreeBlocks())
-                if (treeBlock.getBlock().equals(fallingBlock))
-                    return treeAnimation;
-        return null;
+    public void indexFallingBlock(TreeAnimation treeAnimation, ITreeBlock<FallingBlock> fallingTreeBlock) {
+        this.fallingBlocksSpawnedThisTick++;
+        TimerManager timerManager = this.plugin.getTimerManager();
+        long deadline = timerManager.getCurrentTick() + FALLING_BLOCK_TIMEOUT;
+        AnimatedFallingBlock animatedFallingBlock = new AnimatedFallingBlock(treeAnimation, fallingTreeBlock, deadline);
+        this.animatedFallingBlocks.put(fallingTreeBlock.getBlock().getEntityId(), animatedFallingBlock);
+        timerManager.schedule(animatedFallingBlock, FALLING_BLOCK_POLL_INTERVAL);
+    }
+
+    /**
+     * Removes a falling block from the entity id index
+     *
+     * @param fallingBlock The falling block to remove
+     */
+    public void unindexFallingBlock(FallingBlock fallingBlock) {
+        this.animatedFallingBlocks.remove(fallingBlock.getEntityId());
     }
 
     /**
      * Registers and runs a tree animation
      */
     private void registerTreeAnimation(TreeAnimation treeAnimation) {
-        this.activeAnimations.add(treeAnimation);
-        treeAnimation.playAnimation(() -> this.activeAnimations.remove(treeAnimation));
+        this.addAnimation(treeAnimation);
+        this.reserveBlocks(treeAnimation);
+        try {
+            treeAnimation.playAnimation(() -> {
+                this.release(treeAnimation);
+                for (ITreeBlock<Block> treeBlock : treeAnimation.getDetectedTree().getDetectedTreeBlocks().getAllTreeBlocks())
+                    this.releaseBlock(treeAnimation, treeBlock);
+                for (ITreeBlock<FallingBlock> fallingTreeBlock : treeAnimation.getFallingTreeBlocks().getAllTreeBlocks())
+                    this.unindexFallingBlock(fallingTreeBlock.getBlock());
+            });
+        } catch (Exception ex) {
+            this.plugin.getLogger().log(Level.SEVERE, "A tree animation failed while starting, finishing it right away", ex);
+            this.finishAnimation(treeAnimation);
+            return;
+        }
+        this.flushAnimation(treeAnimation);
+    }
+
+    /**
+     * Adds a tree animation to the animations of its world, so it will be ticked
+     *
+     * @param treeAnimation The tree animation to add
+     */
+    private void addAnimation(TreeAnimation treeAnimation) {
+        UUID worldId = treeAnimation.getDetectedTree().getDetectedTreeBlocks().getInitialLogBlock().getLocation().getWorld().getUID();
+        WorldAnimations worldAnimations = this.worldAnimations.get(worldId);
+        if (worldAnimations == null) {
+            worldAnimations = new WorldAnimations(worldId);
+            this.worldAnimations.put(worldId, worldAnimations);
+            if (this.activeWorldCount == this.activeWorlds.length)
+                this.activeWorlds = Arrays.copyOf(this.activeWorlds, this.activeWorlds.length << 1);
+            this.activeWorlds[this.activeWorldCount++] = worldAnimations;
+        }
+
+        if (worldAnimations.size == worldAnimations.animations.length)
+            worldAnimations.animations = Arrays.copyOf(worldAnimations.animations, worldAnimations.animations.length << 1);
+        worldAnimations.animations[worldAnimations.size++] = treeAnimation;
+    }
+
+    /**
+     * Removes finished tree animations, and any worlds that no longer have animations
+     */
+    private void removeFinishedAnimations() {
+        int activeWorldCount = 0;
+        for (int i = 0; i < this.activeWorldCount; i++) {
+            WorldAnimations worldAnimations = this.activeWorlds[i];
+            int size = 0;
+            for (int j = 0; j < worldAnimations.size; j++) {
+                TreeAnimation treeAnimation = worldAnimations.animations[j];
+                if (!treeAnimation.isFinished())
+                    worldAnimations.animations[size++] = treeAnimation;
+            }
+            Arrays.fill(worldAnimations.animations, size, worldAnimations.size, null);
+            worldAnimations.size = size;
+
+            if (size == 0) {
+                this.worldAnimations.remove(worldAnimations.worldId);
+            } else {
+                this.activeWorlds[activeWorldCount++] = worldAnimations;
+            }
+        }
+        Arrays.fill(this.activeWorlds, activeWorldCount, this.activeWorldCount, null);
+        this.activeWorldCount = activeWorldCount;
+    }
+
+    /**
+     * Ends a tree animation right away, breaking whatever is left of the tree and handing out all of its loot
+     *
+     * @param treeAnimation The tree animation to finish
+     */
+    private void finishAnimation(TreeAnimation treeAnimation) {
+        try {
+            treeAnimation.finishNow();
+        } catch (Exception ex) {
+            this.plugin.getLogger().log(Level.SEVERE, "A tree animation failed while finishing", ex);
+        }
+        this.flushAnimation(treeAnimation);
+    }
+
+    /**
+     * Removes the blocks a tree animation replaced since the last flush and hands out its loot
+     *
+     * @param treeAnimation The tree animation to flush
+     */
+    private void flushAnimation(TreeAnimation treeAnimation) {
+        try {
+            treeAnimation.flushReplacedBlocks();
+            treeAnimation.flushLoot();
+        } catch (Exception ex) {
+            this.plugin.getLogger().log(Level.SEVERE, "A tree animation failed while removing blocks or handing out loot", ex);
+        }
+    }
+
+    private void clearAnimations() {
+        this.worldAnimations.clear();
+        Arrays.fill(this.activeWorlds, null);
+        this.activeWorldCount = 0;
+    }
+
+    /**
+     * Checks a falling block that is due for a poll, landing it if it has hit the ground or ran out of time
+     *
+     * @param animatedFallingBlock The falling block to check
+     */
+    private void checkFallingBlock(AnimatedFallingBlock animatedFallingBlock) {
+        // Falling blocks that already landed or whose animation ended still have a timer, they're skipped here
+        if (!this.isIndexed(animatedFallingBlock))
+            return;
+
+        TimerManager timerManager = this.plugin.getTimerManager();
+        FallingBlock fallingBlock = animatedFallingBlock.fallingTreeBlock.getBlock();
+        long remainingTicks = animatedFallingBlock.deadline - timerManager.getCurrentTick();
+        boolean grounded = fallingBlock.isDead() || ServerVersion.isServerVersionAtLeast(ServerVersion.V1_17) && fallingBlock.isOnGround();
+        if (!grounded && remainingTicks > 0) {
+            timerManager.schedule(animatedFallingBlock, (int) Math.min(FALLING_BLOCK_POLL_INTERVAL, remainingTicks));
+            return;
+        }
+
+        this.landFallingBlock(animatedFallingBlock);
+    }
+
+    /**
+     * Runs the impact of a falling block and removes it
+     *
+     * @param animatedFallingBlock The falling block that landed
+     */
+    private void landFallingBlock(AnimatedFallingBlock animatedFallingBlock) {
+        this.runFallingBlockImpact(animatedFallingBlock.treeAnimation, animatedFallingBlock.fallingTreeBlock);
+        FallingBlock fallingBlock = animatedFallingBlock.fallingTreeBlock.getBlock();
+        if (!fallingBlock.isDead())
+            fallingBlock.remove();
+    }
+
+    private boolean isIndexed(AnimatedFallingBlock animatedFallingBlock) {
+        return this.animatedFallingBlocks.get(animatedFallingBlock.fallingTreeBlock.getBlock().getEntityId()) == animatedFallingBlock;
+    }
+
+    private void clearFallingBlocks() {
+        this.animatedFallingBlocks.clear();
+        this.landedFallingBlocks.clear();
+    }
+
+    /**
+     * Creates a tree animation of a given type
+     *
+     * @param treeAnimationType The type of tree animation
+     * @param detectedTree      The DetectedTree
+     * @param chopContext       The ChopContext of the Player who toppled the tree
+     * @return A new TreeAnimation
+     */
+    private TreeAnimation createTreeAnimation(TreeAnimationType treeAnimationType, DetectedTree detectedTree, ChopContext chopContext) {
+        switch (treeAnimationType) {
+            case DISINTEGRATE:
+                return new TreeAnimationDisintegrate(detectedTree, chopContext);
+            case CRUMBLE:
+                return new TreeAnimationCrumble(detectedTree, chopContext);
+            case DISPLAY:
+                return new TreeAnimationDisplay(detectedTree, chopContext);
+            case NONE:
+                return new TreeAnimationNone(detectedTree, chopContext);
+            default:
+                return new TreeAnimationFancy(detectedTree, chopContext);
+        }
+    }
+
+    /**
+     * Starts any queued tree animations that fit under the falling block limits now, oldest first
+     */
+    private void runQueuedAnimations() {
+        Iterator<Admission> iterator = this.queuedAnimations.iterator();
+        while (iterator.hasNext()) {
+            Admission admission = iterator.next();
+            if (!this.canAdmit(admission))
+                continue;
+
+            iterator.remove();
+            this.admit(admission);
+            this.registerTreeAnimation(admission.treeAnimation);
+        }
+    }
+
+    /**
+     * Starts every queued tree animation right away
+     * The player has already been charged for these trees, so they are never just dropped from the queue
+     *
+     * @param admitIfPossible If animations that fit under the falling block limits should play normally,
+     *                        otherwise every queued tree disintegrates instead
+     */
+    private void startQueuedAnimations(boolean admitIfPossible) {
+        while (!this.queuedAnimations.isEmpty()) {
+            Admission admission = this.queuedAnimations.poll();
+            TreeAnimation treeAnimation = admission.treeAnimation;
+            if (admitIfPossible && this.canAdmit(admission)) {
+                this.admit(admission);
+                this.registerTreeAnimation(treeAnimation);
+                continue;
+            }
+
+            // The fallback animation reserves the blocks again for itself
+            for (ITreeBlock<Block> treeBlock : treeAnimation.getDetectedTree().getDetectedTreeBlocks().getAllTreeBlocks())
+                this.releaseBlock(treeAnimation, treeBlock);
+            this.registerTreeAnimation(this.createTreeAnimation(TreeAnimationType.DISINTEGRATE, treeAnimation.getDetectedTree(), treeAnimation.getChopContext()));
+        }
+    }
+
+    /**
+     * Checks if a tree animation fits under the falling block limits with the animations that are already running
+     *
+     * @param admission The admission of the tree animation
+     * @return True if the tree animation can be started now, otherwise false
+     */
+    private boolean canAdmit(Admission admission) {
+        if (this.maxFallingBlocks > 0 && this.admittedFallingBlocks + admission.fallingBlocks > this.maxFallingBlocks)
+            return false;
+
+        if (this.maxChunkFallingBlocks <= 0)
+            return true;
+
+        LongIntHashMap chunkFallingBlocks = this.admittedChunkFallingBlocks.get(admission.worldId);
+        int admitted = chunkFallingBlocks == null ? -1 : chunkFallingBlocks.get(admission.chunkKey);
+        return Math.max(0, admitted) + admission.fallingBlocks <= this.maxChunkFallingBlocks;
+    }
+
+    /**
+     * Checks if a tree animation fits under the falling block limits when nothing else is running
+     *
+     * @param admission The admission of the tree animation
+     * @return True if the tree animation could ever be started, otherwise false
+     */
+    private boolean canEverAdmit(Admission admission) {
+        return (this.maxFallingBlocks <= 0 || admission.fallingBlocks <= this.maxFallingBlocks)
+                && (this.maxChunkFallingBlocks <= 0 || admission.fallingBlocks <= this.maxChunkFallingBlocks);
+    }
+
+    /**
+     * Counts the falling blocks of a tree animation against the limits until it finishes
+     *
+     * @param admission The admission of the tree animation
+     */
+    private void admit(Admission admission) {
+        this.admissions.put(admission.treeAnimation, admission);
+        this.admittedFallingBlocks += admission.fallingBlocks;
+
+        LongIntHashMap chunkFallingBlocks = this.admittedChunkFallingBlocks.computeIfAbsent(admission.worldId, x -> new LongIntHashMap());
+        int admitted = chunkFallingBlocks.get(admission.chunkKey);
+        chunkFallingBlocks.put(admission.chunkKey, Math.max(0, admitted) + admission.fallingBlocks);
+    }
+
+    /**
+     * Stops counting the falling blocks of a finished tree animation against the limits
+     *
+     * @param treeAnimation The tree animation that finished
+     */
+    private void release(TreeAnimation treeAnimation) {
+        Admission admission = this.admissions.remove(treeAnimation);
+        if (admission == null)
+            return;
+
+        this.admittedFallingBlocks -= admission.fallingBlocks;
+
+        LongIntHashMap chunkFallingBlocks = this.admittedChunkFallingBlocks.get(admission.worldId);
+        if (chunkFallingBlocks == null)
+            return;
+
+        int admitted = chunkFallingBlocks.get(admission.chunkKey) - admission.fallingBlocks;
+        if (admitted > 0) {
+            chunkFallingBlocks.put(admission.chunkKey, admitted);
+        } else {
+            chunkFallingBlocks.remove(admission.chunkKey);
+            if (chunkFallingBlocks.size() == 0)
+                this.admittedChunkFallingBlocks.remove(admission.worldId);
+        }
+    }
+
+    private void clearAdmissions() {
+        this.admissions.clear();
+        this.admittedChunkFallingBlocks.clear();
+        this.queuedAnimations.clear();
+        this.admittedFallingBlocks = 0;
+    }
+
+    private static boolean classExists(String className) {
+        try {
+            Class.forName(className);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private long getChunkKey(Location location) {
+        return ((long) (location.getBlockX() >> 4) << 32) | ((location.getBlockZ() >> 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Reserves every block of a tree animation's detected tree until it is replaced or the animation finishes
+     *
+     * @param treeAnimation The tree animation to reserve the blocks of
+     */
+    private void reserveBlocks(TreeAnimation treeAnimation) {
+        LongIntHashMap reservedBlocks = null;
+        for (ITreeBlock<Block> treeBlock : treeAnimation.getDetectedTree().getDetectedTreeBlocks().getAllTreeBlocks()) {
+            long key = treeBlock.getKey();
+            if (!treeAnimation.reserveBlock(key))
+                continue;
+
+            if (reservedBlocks == null)
+                reservedBlocks = this.reservedBlocks.computeIfAbsent(treeBlock.getLocation().getWorld().getUID(), x -> new LongIntHashMap());
+            int count = reservedBlocks.get(key);
+            reservedBlocks.put(key, count == -1 ? 1 : count + 1);
+        }
     }
 
     /**
@@ -148,8 +633,7 @@ public class TreeAnimationManager extends Manager implements Listener, Runnable
      * @param treeAnimation The tree animation for the falling block
      * @param treeBlock     The tree block to impact
      */
-    public void runFallingBlockImpact(TreeAnimation treeAnimation, ITreeBlock<FallingBlock> treeBlock) {
-        TreeDefinitionManager treeDefinitionManager = this.plugin.getTreeDefinitionManager();
+    public void runFallingBlockImpact(TreeAnimation treeAnimation, ITreeBlock<?> treeBlock) {
         boolean useCustomSound = ConfigurationManager.Setting.USE_CUSTOM_SOUNDS.getBoolean();
         boolean useCustomParticles = ConfigurationManager.Setting.USE_CUSTOM_PARTICLES.getBoolean();
         TreeDefinition treeDefinition = treeAnimation.getDetectedTree().getTreeDefinition();
@@ -165,9 +649,10 @@ public class TreeAnimationManager extends Manager implements Listener, Runnable
             block.breakNaturally();
         }
 
-        treeDefinitionManager.dropTreeLoot(treeDefinition, treeBlock, treeAnimation.getPlayer(), treeAnimation.hasSilkTouch(), false);
+        treeAnimation.rollLoot(treeBlock);
         this.plugin.getSaplingManager().replantSaplingWithChance(treeDefinition, treeBlock);
-        treeAnimation.getFallingTreeBlocks().remove(treeBlock);
+        if (treeBlock.getBlock() instanceof FallingBlock)
+            treeAnimation.removeFallingBlock((FallingBlock) treeBlock.getBlock());
     }
 
     @EventHandler(priority = EventPriority.HIGH)
@@ -175,8 +660,10 @@ public class TreeAnimationManager extends Manager implements Listener, Runnable
         if (!event.getEntityType().equals(EntityType.FALLING_BLOCK))
             return;
 
+        // Falling blocks that aren't ours, like sand and gravel, are rejected with a single lookup
         FallingBlock fallingBlock = (FallingBlock) event.getEntity();
-        if (!this.isBlockInAnimation(fallingBlock))
+        AnimatedFallingBlock animatedFallingBlock = this.animatedFallingBlocks.get(fallingBlock.getEntityId());
+        if (animatedFallingBlock == null)
             return;
 
         if (ConfigurationManager.Setting.FALLING_BLOCKS_DEAL_DAMAGE.getBoolean()) {
@@ -188,13 +675,71 @@ public class TreeAnimationManager extends Manager implements Listener, Runnable
         }
 
         if (ConfigurationManager.Setting.SCATTER_TREE_BLOCKS_ON_GROUND.getBoolean()) {
-            TreeAnimation treeAnimation = this.getAnimationForBlock(fallingBlock);
-            if (treeAnimation != null) {
-                treeAnimation.removeFallingBlock(fallingBlock);
-                return;
-            }
+            animatedFallingBlock.treeAnimation.removeFallingBlock(animatedFallingBlock.fallingTreeBlock);
+            return;
         }
 
+        // The server removes the falling block once the event is cancelled, the impact runs at the start of the next tick
         event.setCancelled(true);
+        this.landedFallingBlocks.add(animatedFallingBlock);
     }
+
+    /**
+     * A tree animation counted against the falling block limits, or waiting to be
+     */
+    private static class Admission {
+
+        private final TreeAnimation treeAnimation;
+        private final UUID worldId;
+        private final long chunkKey;
+        private final int fallingBlocks;
+
+        private Admission(TreeAnimation treeAnimation, UUID worldId, long chunkKey, int fallingBlocks) {
+            this.treeAnimation = treeAnimation;
+            this.worldId = worldId;
+            this.chunkKey = chunkKey;
+            this.fallingBlocks = fallingBlocks;
+        }
+
+    }
+
+    /**
+     * The active tree animations in a single world
+     */
+    private static class WorldAnimations {
+
+        private final UUID worldId;
+        private TreeAnimation[] animations;
+        private int size;
+
+        private WorldAnimations(UUID worldId) {
+            this.worldId = worldId;
+            this.animations = new TreeAnimation[8];
+        }
+
+    }
+
+    /**
+     * A falling block spawned by a tree animation
+     * Runs as its own timer to check if it landed
+     */
+    private class AnimatedFallingBlock implements Runnable {
+
+        private final TreeAnimation treeAnimation;
+        private final ITreeBlock<FallingBlock> fallingTreeBlock;
+        private final long deadline;
+
+        private AnimatedFallingBlock(TreeAnimation treeAnimation, ITreeBlock<FallingBlock> fallingTreeBlock, long deadline) {
+            this.treeAnimation = treeAnimation;
+            this.fallingTreeBlock = fallingTreeBlock;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            TreeAnimationManager.this.checkFallingBlock(this);
+        }
+
+    }
+
 }
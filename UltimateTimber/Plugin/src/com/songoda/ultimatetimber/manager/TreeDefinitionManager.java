@@ -3,15 +3,20 @@ package com.songoda.ultimatetimber.manager;
 import com.google.common.base.Strings;
 import com.songoda.core.compatibility.CompatibleMaterial;
 import com.songoda.core.compatibility.ServerVersion;
-import com.songoda.core.hooks.McMMOHook;
 import com.songoda.core.third_party.de.tr7zw.nbtapi.NBTItem;
 import com.songoda.core.utils.TextUtils;
 import com.songoda.ultimatetimber.UltimateTimber;
+import com.songoda.ultimatetimber.tree.ChopContext;
 import com.songoda.ultimatetimber.tree.ITreeBlock;
+import com.songoda.ultimatetimber.tree.LootBatch;
+import com.songoda.ultimatetimber.tree.LootTable;
 import com.songoda.ultimatetimber.tree.TreeBlockType;
 import com.songoda.ultimatetimber.tree.TreeDefinition;
+import com.songoda.ultimatetimber.tree.TreeDefinitionTable;
 import com.songoda.ultimatetimber.tree.TreeLoot;
+import com.songoda.ultimatetimber.utils.BinomialSampler;
 import com.songoda.ultimatetimber.utils.BlockUtils;
+import com.songoda.ultimatetimber.utils.CommandTemplate;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.NamespacedKey;
@@ -23,20 +28,39 @@ import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 public class TreeDefinitionManager extends Manager {
 
-    private final Random random;
+    private static final int LOG_LOOT = 0;
+    private static final int LEAF_LOOT = 1;
+    private static final int ENTIRE_TREE_LOOT = 2;
+
     private final Set<TreeDefinition> treeDefinitions;
     private final Set<CompatibleMaterial> globalPlantableSoil;
     private final Set<TreeLoot> globalLogLoot, globalLeafLoot, globalEntireTreeLoot;
     private final Set<ItemStack> globalRequiredTools;
+    private volatile TreeDefinitionTable treeDefinitionTable;
+    private final Map<TreeDefinition, LootTable[]> lootTables;
+    private boolean applySilkTouch;
+    private double bonusLootMultiplier;
+    private boolean aggregateLootRolls;
+    private int lootCommandsPerTick;
+    private final Deque<String> queuedCommands;
+    private long commandTick;
+    private int commandsDispatchedThisTick;
+    private boolean commandDispatchScheduled;
 
     private boolean globalAxeRequired;
     private ItemStack requiredAxe;
@@ -44,13 +68,16 @@ public class TreeDefinitionManager extends Manager {
 
     public TreeDefinitionManager(UltimateTimber ultimateTimber) {
         super(ultimateTimber);
-        this.random = new Random();
         this.treeDefinitions = new HashSet<>();
         this.globalPlantableSoil = new HashSet<>();
         this.globalLogLoot = new HashSet<>();
         this.globalLeafLoot = new HashSet<>();
         this.globalEntireTreeLoot = new HashSet<>();
         this.globalRequiredTools = new HashSet<>();
+        this.treeDefinitionTable = new TreeDefinitionTable(Collections.emptySet(), Collections.emptySet());
+        this.lootTables = new HashMap<>();
+        this.queuedCommands = new ArrayDeque<>();
+        this.commandTick = -1;
     }
 
     @Override
@@ -61,6 +88,12 @@ public class TreeDefinitionManager extends Manager {
         this.globalLeafLoot.clear();
         this.globalEntireTreeLoot.clear();
         this.globalRequiredTools.clear();
+        this.lootTables.clear();
+
+        this.applySilkTouch = ConfigurationManager.Setting.APPLY_SILK_TOUCH.getBoolean();
+        this.bonusLootMultiplier = ConfigurationManager.Setting.BONUS_LOOT_MULTIPLIER.getDouble();
+        this.aggregateLootRolls = ConfigurationManager.Setting.AGGREGATE_LOOT_ROLLS.getBoolean();
+        this.lootCommandsPerTick = ConfigurationManager.Setting.LOOT_COMMANDS_PER_TICK.getInt();
 
         ConfigurationManager configurationManager = this.plugin.getConfigurationManager();
         YamlConfiguration config = configurationManager.getConfig();
@@ -143,6 +176,9 @@ public class TreeDefinitionManager extends Manager {
         for (String material : config.getStringList("global-plantable-soil"))
             this.globalPlantableSoil.add(CompatibleMaterial.getMaterial(material));
 
+        // Compile the tree definitions for fast lookups
+        this.treeDefinitionTable = new TreeDefinitionTable(this.treeDefinitions, this.globalPlantableSoil);
+
         // Load global log drops
         ConfigurationSection logSection = config.getConfigurationSection("global-log-loot");
         if (logSection != null)
@@ -170,6 +206,10 @@ public class TreeDefinitionManager extends Manager {
 
         this.globalAxeRequired = config.getBoolean("global-required-axe", false);
 
+        // Compile the loot tables now that the global loot is loaded
+        for (TreeDefinition treeDefinition : this.treeDefinitions)
+            this.lootTables.put(treeDefinition, this.compileLootTables(treeDefinition));
+
         // Load required axe
         if (config.contains("required-axe"))
             loadAxe(config);
@@ -261,6 +301,22 @@ public class TreeDefinitionManager extends Manager {
     @Override
     public void disable() {
         this.treeDefinitions.clear();
+        this.treeDefinitionTable = new TreeDefinitionTable(Collections.emptySet(), Collections.emptySet());
+        this.lootTables.clear();
+
+        // Don't lose loot that was waiting for its turn
+        while (!this.queuedCommands.isEmpty())
+            Bukkit.getServer().dispatchCommand(Bukkit.getConsoleSender(), this.queuedCommands.poll());
+    }
+
+    /**
+     * Gets the compiled TreeDefinitionTable of the currently loaded TreeDefinitions
+     * A new table is created every reload, so hold onto the same table for the duration of a detection
+     *
+     * @return The TreeDefinitionTable
+     */
+    public TreeDefinitionTable getTreeDefinitionTable() {
+        return this.treeDefinitionTable;
     }
 
     /**
@@ -271,7 +327,8 @@ public class TreeDefinitionManager extends Manager {
      * @return A Set of TreeDefinitions for the given Block
      */
     public Set<TreeDefinition> getTreeDefinitionsForLog(Block block) {
-        return this.narrowTreeDefinition(this.treeDefinitions, block, TreeBlockType.LOG);
+        TreeDefinitionTable treeDefinitionTable = this.treeDefinitionTable;
+        return treeDefinitionTable.toTreeDefinitions(treeDefinitionTable.getLogMask(CompatibleMaterial.getMaterial(block)));
     }
 
     /**
@@ -284,31 +341,23 @@ public class TreeDefinitionManager extends Manager {
      * @return A Set of TreeDefinitions narrowed down
      */
     public Set<TreeDefinition> narrowTreeDefinition(Set<TreeDefinition> possibleTreeDefinitions, Block block, TreeBlockType treeBlockType) {
-        Set<TreeDefinition> matchingTreeDefinitions = new HashSet<>();
-        switch (treeBlockType) {
-            case LOG:
-                for (TreeDefinition treeDefinition : possibleTreeDefinitions) {
-                    for (CompatibleMaterial material : treeDefinition.getLogMaterial()) {
-                        if (material.equals(CompatibleMaterial.getMaterial(block))) {
-                            matchingTreeDefinitions.add(treeDefinition);
-                            break;
-                        }
-                    }
-                }
-                break;
-            case LEAF:
-                for (TreeDefinition treeDefinition : possibleTreeDefinitions) {
-                    for (CompatibleMaterial material : treeDefinition.getLeafMaterial()) {
-                        if (material.equals(CompatibleMaterial.getMaterial(block))) {
-                            matchingTreeDefinitions.add(treeDefinition);
-                            break;
-                        }
-                    }
-                }
-                break;
-        }
+        return this.narrowTreeDefinition(possibleTreeDefinitions, CompatibleMaterial.getMaterial(block), treeBlockType);
+    }
 
-        return matchingTreeDefinitions;
+    /**
+     * Narrows a Set of TreeDefinitions down to ones matching the given CompatibleMaterial and TreeBlockType
+     *
+     * @param possibleTreeDefinitions The possible TreeDefinitions
+     * @param material                The CompatibleMaterial to narrow to
+     * @param treeBlockType           The TreeBlockType of the given material
+     *
+     * @return A Set of TreeDefinitions narrowed down
+     */
+    public Set<TreeDefinition> narrowTreeDefinition(Set<TreeDefinition> possibleTreeDefinitions, CompatibleMaterial material, TreeBlockType treeBlockType) {
+        TreeDefinitionTable treeDefinitionTable = this.treeDefinitionTable;
+        BitSet mask = treeDefinitionTable.toMask(possibleTreeDefinitions);
+        mask.and(treeDefinitionTable.getMask(material, treeBlockType));
+        return treeDefinitionTable.toTreeDefinitions(mask);
     }
 
     /**
@@ -374,97 +423,216 @@ public class TreeDefinitionManager extends Manager {
      *
      * @param treeDefinition  The TreeDefinition to use
      * @param treeBlock       The TreeBlock to drop for
-     * @param player          The Player to drop for
+     * @param chopContext     The ChopContext of the Player to drop for
+     * @param isForEntireTree If the loot is for the entire tree
+     */
+    public void dropTreeLoot(TreeDefinition treeDefinition, ITreeBlock treeBlock, ChopContext chopContext, boolean isForEntireTree) {
+        LootBatch lootBatch = new LootBatch();
+        this.rollTreeLoot(treeDefinition, treeBlock, chopContext, isForEntireTree, lootBatch);
+        this.deliverLoot(lootBatch, chopContext, true);
+    }
+
+    /**
+     * Rolls the loot for a given TreeBlock with the given TreeDefinition for a given Player
+     * The loot is added to a batch instead of being handed out right away
+     *
+     * @param treeDefinition  The TreeDefinition to use
+     * @param treeBlock       The TreeBlock to roll for
+     * @param chopContext     The ChopContext of the Player to roll for
      * @param isForEntireTree If the loot is for the entire tree
+     * @param lootBatch       The LootBatch to add the loot to
      */
-    public void dropTreeLoot(TreeDefinition treeDefinition, ITreeBlock treeBlock, Player player, boolean hasSilkTouch, boolean isForEntireTree) {
-        boolean addToInventory = ConfigurationManager.Setting.ADD_ITEMS_TO_INVENTORY.getBoolean();
-        boolean hasBonusChance = player.hasPermission("ultimatetimber.bonusloot");
+    public void rollTreeLoot(TreeDefinition treeDefinition, ITreeBlock treeBlock, ChopContext chopContext, boolean isForEntireTree, LootBatch lootBatch) {
+        Player player = chopContext.getPlayer();
+        boolean hasBonusChance = chopContext.hasBonusLoot();
+        double doubleDropChance = chopContext.getDoubleDropChance();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
         List<ItemStack> lootedItems = new ArrayList<>();
-        List<String> lootedCommands = new ArrayList<>();
+        List<CommandTemplate> lootedCommands = new ArrayList<>();
 
         // Get the loot that we should try to drop
-        List<TreeLoot> toTry = new ArrayList<>();
+        LootTable lootTable;
         if (isForEntireTree) {
-            toTry.addAll(treeDefinition.getEntireTreeLoot());
-            toTry.addAll(this.globalEntireTreeLoot);
+            lootTable = this.getLootTable(treeDefinition, ENTIRE_TREE_LOOT, hasBonusChance);
+        } else if (this.applySilkTouch && chopContext.hasSilkTouch()) {
+            lootTable = LootTable.empty();
+            if (random.nextDouble() < doubleDropChance)
+                lootedItems.addAll(BlockUtils.getBlockDrops(treeBlock));
+            lootedItems.addAll(BlockUtils.getBlockDrops(treeBlock));
         } else {
-            if (ConfigurationManager.Setting.APPLY_SILK_TOUCH.getBoolean() && hasSilkTouch) {
-                if (ConfigurationManager.Setting.HOOKS_APPLY_EXTRA_DROPS.getBoolean()
-                        && McMMOHook.hasWoodcuttingDoubleDrops(player))
+            boolean isLog = treeBlock.getTreeBlockType() == TreeBlockType.LOG;
+            lootTable = this.getLootTable(treeDefinition, isLog ? LOG_LOOT : LEAF_LOOT, hasBonusChance);
+            if (isLog ? treeDefinition.shouldDropOriginalLog() : treeDefinition.shouldDropOriginalLeaf()) {
+                if (random.nextDouble() < doubleDropChance)
                     lootedItems.addAll(BlockUtils.getBlockDrops(treeBlock));
                 lootedItems.addAll(BlockUtils.getBlockDrops(treeBlock));
-            } else {
-                switch (treeBlock.getTreeBlockType()) {
-                    case LOG:
-                        toTry.addAll(treeDefinition.getLogLoot());
-                        toTry.addAll(this.globalLogLoot);
-                        if (treeDefinition.shouldDropOriginalLog()) {
-                            if (ConfigurationManager.Setting.HOOKS_APPLY_EXTRA_DROPS.getBoolean()
-                                    && McMMOHook.hasWoodcuttingDoubleDrops(player))
-                                lootedItems.addAll(BlockUtils.getBlockDrops(treeBlock));
-                            lootedItems.addAll(BlockUtils.getBlockDrops(treeBlock));
-                        }
-                        break;
-                    case LEAF:
-                        toTry.addAll(treeDefinition.getLeafLoot());
-                        toTry.addAll(this.globalLeafLoot);
-                        if (treeDefinition.shouldDropOriginalLeaf()) {
-                            if (ConfigurationManager.Setting.HOOKS_APPLY_EXTRA_DROPS.getBoolean()
-                                    && McMMOHook.hasWoodcuttingDoubleDrops(player))
-                                lootedItems.addAll(BlockUtils.getBlockDrops(treeBlock));
-                            lootedItems.addAll(BlockUtils.getBlockDrops(treeBlock));
-                        }
-                        break;
-                }
             }
         }
 
+        // Blocks of the same kind are rolled together when the batch is delivered
+        boolean aggregate = this.aggregateLootRolls && !isForEntireTree && lootTable.size() != 0;
+        if (aggregate) {
+            lootBatch.addRolls(lootTable, treeDefinition, 1);
+            lootTable = LootTable.empty();
+        }
+
         // Roll the dice
-        double bonusLootMultiplier = ConfigurationManager.Setting.BONUS_LOOT_MULTIPLIER.getDouble();
-        for (TreeLoot treeLoot : toTry) {
-            if (treeLoot == null) continue;
-            double chance = hasBonusChance ? treeLoot.getChance() * bonusLootMultiplier : treeLoot.getChance();
-            if (this.random.nextDouble() > chance / 100)
+        for (int i = 0; i < lootTable.size(); i++) {
+            if (random.nextDouble() > lootTable.getThreshold(i))
                 continue;
 
-            if (treeLoot.hasItem()) {
-                if (ConfigurationManager.Setting.HOOKS_APPLY_EXTRA_DROPS.getBoolean()
-                        && McMMOHook.hasWoodcuttingDoubleDrops(player))
-                    lootedItems.add(treeLoot.getItem());
-                lootedItems.add(treeLoot.getItem());
+            ItemStack item = lootTable.getItem(i);
+            if (item != null) {
+                if (random.nextDouble() < doubleDropChance)
+                    lootedItems.add(item);
+                lootedItems.add(item);
             }
 
-            if (treeLoot.hasCommand()) {
-                if (ConfigurationManager.Setting.HOOKS_APPLY_EXTRA_DROPS.getBoolean()
-                        && McMMOHook.hasWoodcuttingDoubleDrops(player))
-                    lootedCommands.add(treeLoot.getCommand());
-                lootedCommands.add(treeLoot.getCommand());
+            CommandTemplate command = lootTable.getCommand(i);
+            if (command != null) {
+                if (random.nextDouble() < doubleDropChance)
+                    lootedCommands.add(command);
+                lootedCommands.add(command);
             }
         }
 
-        // Add to inventory or drop on ground
-        if (addToInventory && player.getWorld().equals(treeBlock.getLocation().getWorld())) {
-            List<ItemStack> extraItems = new ArrayList<>();
-            for (ItemStack lootedItem : lootedItems)
-                extraItems.addAll(player.getInventory().addItem(lootedItem).values());
-            Location location = player.getLocation().clone().subtract(0.5, 0, 0.5);
-            for (ItemStack extraItem : extraItems)
-                location.getWorld().dropItemNaturally(location, extraItem);
-        } else {
-            Location location = treeBlock.getLocation().clone().add(0.5, 0.5, 0.5);
-            for (ItemStack lootedItem : lootedItems)
-                location.getWorld().dropItemNaturally(location, lootedItem);
+        if (lootedItems.isEmpty() && lootedCommands.isEmpty() && !aggregate)
+            return;
+
+        lootBatch.addLocation(treeBlock.getLocation());
+        for (ItemStack lootedItem : lootedItems)
+            lootBatch.addItem(lootedItem);
+
+        Location location = treeBlock.getLocation();
+        for (CommandTemplate lootedCommand : lootedCommands)
+            lootBatch.addCommand(lootedCommand.fill(player.getName(), treeDefinition.getKey(), location.getBlockX(), location.getBlockY(), location.getBlockZ()));
+    }
+
+    /**
+     * Hands out the loot of a batch to a given Player, then clears the batch
+     * All items are handed to the configured loot sink at once, together with the center of the looted blocks
+     *
+     * @param lootBatch        The LootBatch to hand out
+     * @param chopContext      The ChopContext of the Player to hand the loot to
+     * @param dispatchCommands If the commands should be run now, otherwise they're kept in the batch to be counted
+     *                         together with the commands of later deliveries
+     */
+    public void deliverLoot(LootBatch lootBatch, ChopContext chopContext, boolean dispatchCommands) {
+        if (!lootBatch.getPendingRolls().isEmpty())
+            this.rollPendingLoot(lootBatch, chopContext);
+
+        // The loot sink drops anything it can't take
+        List<ItemStack> lootedItems = lootBatch.getItems();
+        if (!lootedItems.isEmpty())
+            this.plugin.getLootSinkManager().deliverLoot(chopContext, lootBatch.getLocation(), lootedItems);
+
+        lootBatch.clearItems();
+        if (!dispatchCommands || lootBatch.getCommands().isEmpty())
+            return;
+
+        // Identical commands only run once if they use %count%, otherwise once for each time they were looted
+        for (Map.Entry<String, Integer> lootedCommand : lootBatch.getCommands().entrySet()) {
+            String command = lootedCommand.getKey();
+            int count = lootedCommand.getValue();
+            if (command.contains(CommandTemplate.COUNT_PLACEHOLDER)) {
+                this.queuedCommands.add(command.replace(CommandTemplate.COUNT_PLACEHOLDER, String.valueOf(count)));
+            } else {
+                for (int i = 0; i < count; i++)
+                    this.queuedCommands.add(command);
+            }
+        }
+        lootBatch.clear();
+
+        this.dispatchQueuedCommands();
+    }
+
+    /**
+     * Runs queued loot commands until there are none left or the loot commands per tick limit is reached
+     * Anything left over is run on the next tick
+     */
+    private void dispatchQueuedCommands() {
+        TimerManager timerManager = this.plugin.getTimerManager();
+        long tick = timerManager.getCurrentTick();
+        if (tick != this.commandTick) {
+            this.commandTick = tick;
+            this.commandsDispatchedThisTick = 0;
+        }
+
+        while (!this.queuedCommands.isEmpty() && (this.lootCommandsPerTick <= 0 || this.commandsDispatchedThisTick < this.lootCommandsPerTick)) {
+            Bukkit.getServer().dispatchCommand(Bukkit.getConsoleSender(), this.queuedCommands.poll());
+            this.commandsDispatchedThisTick++;
         }
 
-        // Run looted commands
-        for (String lootedCommand : lootedCommands)
-            Bukkit.getServer().dispatchCommand(Bukkit.getConsoleSender(),
-                    lootedCommand.replace("%player%", player.getName())
-                            .replace("%type%", treeDefinition.getKey())
-                            .replace("%xPos%", treeBlock.getLocation().getBlockX() + "")
-                            .replace("%yPos%", treeBlock.getLocation().getBlockY() + "")
-                            .replace("%zPos%", treeBlock.getLocation().getBlockZ() + ""));
+        if (!this.queuedCommands.isEmpty() && !this.commandDispatchScheduled) {
+            this.commandDispatchScheduled = true;
+            timerManager.schedule(() -> {
+                this.commandDispatchScheduled = false;
+                this.dispatchQueuedCommands();
+            }, 1);
+        }
+    }
+
+    /**
+     * Rolls the pending loot tables of a batch by sampling how many of the rolls succeed for each entry
+     * This has the same drop rates as rolling every block on its own, including bonus loot and double drops
+     *
+     * @param lootBatch   The LootBatch to roll the pending loot of
+     * @param chopContext The ChopContext of the Player to roll for
+     */
+    private void rollPendingLoot(LootBatch lootBatch, ChopContext chopContext) {
+        Player player = chopContext.getPlayer();
+        double doubleDropChance = chopContext.getDoubleDropChance();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Location location = lootBatch.getLocation();
+        for (LootBatch.PendingRolls pendingRolls : lootBatch.getPendingRolls()) {
+            LootTable lootTable = pendingRolls.getLootTable();
+            for (int i = 0; i < lootTable.size(); i++) {
+                int successes = BinomialSampler.sample(random, pendingRolls.getRolls(), lootTable.getThreshold(i));
+                if (successes == 0)
+                    continue;
+
+                // Double drops are rolled for each success, just like they are when rolling one block at a time
+                int itemDrops = successes, commandDrops = successes;
+                if (doubleDropChance > 0) {
+                    if (lootTable.getItem(i) != null)
+                        itemDrops += BinomialSampler.sample(random, successes, doubleDropChance);
+                    if (lootTable.getCommand(i) != null)
+                        commandDrops += BinomialSampler.sample(random, successes, doubleDropChance);
+                }
+
+                ItemStack item = lootTable.getItem(i);
+                if (item != null) {
+                    ItemStack lootedItem = item.clone();
+                    lootedItem.setAmount(item.getAmount() * itemDrops);
+                    lootBatch.addItem(lootedItem);
+                }
+
+                CommandTemplate command = lootTable.getCommand(i);
+                if (command != null) {
+                    String lootedCommand = command.fill(player.getName(), pendingRolls.getTreeDefinition().getKey(),
+                            location.getBlockX(), location.getBlockY(), location.getBlockZ());
+                    for (int j = 0; j < commandDrops; j++)
+                        lootBatch.addCommand(lootedCommand);
+                }
+            }
+        }
+        lootBatch.getPendingRolls().clear();
+    }
+
+    /**
+     * Checks if a sapling for the given tree definition can be planted on a material
+     *
+     * @param treeDefinition The TreeDefinition
+     * @param material       The CompatibleMaterial of the soil
+     *
+     * @return True if the material is plantable soil for the TreeDefinition, otherwise false
+     */
+    public boolean isPlantableSoil(TreeDefinition treeDefinition, CompatibleMaterial material) {
+        TreeDefinitionTable treeDefinitionTable = this.treeDefinitionTable;
+        int index = treeDefinitionTable.indexOf(treeDefinition);
+        if (index == -1)
+            return this.getPlantableSoilMaterial(treeDefinition).contains(material);
+        return treeDefinitionTable.getSoilMask(material).get(index);
     }
 
     /**
@@ -481,6 +649,43 @@ public class TreeDefinitionManager extends Manager {
         return plantableSoilBlockData;
     }
 
+    /**
+     * Gets the compiled loot table of a TreeDefinition
+     *
+     * @param treeDefinition The TreeDefinition to get the loot table of
+     * @param lootType       LOG_LOOT, LEAF_LOOT or ENTIRE_TREE_LOOT
+     * @param hasBonusChance If the bonus loot multiplier should be applied
+     * @return The loot table
+     */
+    private LootTable getLootTable(TreeDefinition treeDefinition, int lootType, boolean hasBonusChance) {
+        // Trees that are still falling after a reload keep the TreeDefinition they were detected with
+        LootTable[] lootTables = this.lootTables.computeIfAbsent(treeDefinition, this::compileLootTables);
+        return lootTables[hasBonusChance ? lootType + 3 : lootType];
+    }
+
+    /**
+     * Compiles the loot of a TreeDefinition together with the global loot
+     *
+     * @param treeDefinition The TreeDefinition to compile the loot of
+     * @return The loot tables, indexed by loot type and then again with the bonus loot multiplier applied
+     */
+    private LootTable[] compileLootTables(TreeDefinition treeDefinition) {
+        List<List<TreeLoot>> loot = new ArrayList<>();
+        loot.add(new ArrayList<>(treeDefinition.getLogLoot()));
+        loot.get(LOG_LOOT).addAll(this.globalLogLoot);
+        loot.add(new ArrayList<>(treeDefinition.getLeafLoot()));
+        loot.get(LEAF_LOOT).addAll(this.globalLeafLoot);
+        loot.add(new ArrayList<>(treeDefinition.getEntireTreeLoot()));
+        loot.get(ENTIRE_TREE_LOOT).addAll(this.globalEntireTreeLoot);
+
+        LootTable[] lootTables = new LootTable[6];
+        for (int i = 0; i < 3; i++) {
+            lootTables[i] = new LootTable(loot.get(i), 1);
+            lootTables[i + 3] = new LootTable(loot.get(i), this.bonusLootMultiplier);
+        }
+        return lootTables;
+    }
+
     /**
      * Gets a TreeLoot entry from a ConfigurationSection
      *
@@ -1,64 +1,102 @@
 package com.songoda.ultimatetimber.manager;
 
 import com.songoda.core.compatibility.CompatibleMaterial;
+import com.songoda.core.compatibility.ServerVersion;
 import com.songoda.ultimatetimber.UltimateTimber;
 import com.songoda.ultimatetimber.tree.*;
-import org.bukkit.Location;
+import com.songoda.ultimatetimber.utils.BlockKey;
+import com.songoda.ultimatetimber.voxel.SnapshotVoxelSource;
+import com.songoda.ultimatetimber.voxel.VoxelSource;
+import com.songoda.ultimatetimber.voxel.WorldVoxelSource;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
 import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
-import org.bukkit.util.Vector;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongPredicate;
 
 public class TreeDetectionManager extends Manager {
 
-    private final Set<Vector> VALID_TRUNK_OFFSETS, VALID_BRANCH_OFFSETS, VALID_LEAF_OFFSETS;
-
     private TreeDefinitionManager treeDefinitionManager;
     private PlacedBlockManager placedBlockManager;
-    private int numLeavesRequiredForTree;
-    private boolean onlyBreakLogsUpwards, entireTreeBase, destroyLeaves;
+    private ExecutorService detectionExecutor;
+    private ForkJoinPool leafSearchPool;
+    private volatile TreeDetector treeDetector;
+    private int maxLogBlocksAllowed;
+    private int leavesRequiredForTree;
+    private boolean destroyLeaves;
 
     public TreeDetectionManager(UltimateTimber ultimateTimber) {
         super(ultimateTimber);
-
-        this.VALID_BRANCH_OFFSETS = new HashSet<>();
-        this.VALID_TRUNK_OFFSETS = new HashSet<>();
-        this.VALID_LEAF_OFFSETS = new HashSet<>();
-
-        // 3x2x3 centered around log, excluding -y axis
-        for (int y = 0; y <= 1; y++)
-            for (int x = -1; x <= 1; x++)
-                for (int z = -1; z <= 1; z++)
-                    this.VALID_BRANCH_OFFSETS.add(new Vector(x, y, z));
-
-        // 3x3x3 centered around log
-        for (int y = -1; y <= 1; y++)
-            for (int x = -1; x <= 1; x++)
-                for (int z = -1; z <= 1; z++)
-                    this.VALID_TRUNK_OFFSETS.add(new Vector(x, y, z));
-
-        // Adjacent blocks to log
-        for (int i = -1; i <= 1; i += 2) {
-            this.VALID_LEAF_OFFSETS.add(new Vector(i, 0, 0));
-            this.VALID_LEAF_OFFSETS.add(new Vector(0, i, 0));
-            this.VALID_LEAF_OFFSETS.add(new Vector(0, 0, i));
-        }
     }
 
     @Override
     public void reload() {
         this.treeDefinitionManager = this.plugin.getTreeDefinitionManager();
         this.placedBlockManager = this.plugin.getPlacedBlockManager();
-        this.numLeavesRequiredForTree = ConfigurationManager.Setting.LEAVES_REQUIRED_FOR_TREE.getInt();
-        this.onlyBreakLogsUpwards = ConfigurationManager.Setting.ONLY_DETECT_LOGS_UPWARDS.getBoolean();
-        this.entireTreeBase = ConfigurationManager.Setting.BREAK_ENTIRE_TREE_BASE.getBoolean();
+        this.maxLogBlocksAllowed = ConfigurationManager.Setting.MAX_LOGS_PER_CHOP.getInt();
+        this.leavesRequiredForTree = ConfigurationManager.Setting.LEAVES_REQUIRED_FOR_TREE.getInt();
         this.destroyLeaves = ConfigurationManager.Setting.DESTROY_LEAVES.getBoolean();
+
+        // Chunk snapshots only expose modern materials
+        if (this.detectionExecutor == null && ServerVersion.isServerVersionAtLeast(ServerVersion.V1_13)) {
+            AtomicInteger threadCount = new AtomicInteger();
+            int poolSize = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+            this.detectionExecutor = Executors.newFixedThreadPool(poolSize, runnable -> {
+                Thread thread = new Thread(runnable, "UltimateTimber Tree Detection #" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        // Leaves can only be searched in parallel on chunk snapshots, so there's no use for the pool without async detection
+        boolean parallelLeafSearch = ConfigurationManager.Setting.PARALLEL_LEAF_SEARCH.getBoolean() && this.detectionExecutor != null;
+        if (parallelLeafSearch && this.leafSearchPool == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            this.leafSearchPool = new ForkJoinPool(parallelism, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("UltimateTimber Leaf Search #" + threadCount.incrementAndGet());
+                return thread;
+            }, null, false);
+        } else if (!parallelLeafSearch && this.leafSearchPool != null) {
+            this.leafSearchPool.shutdown();
+            this.leafSearchPool = null;
+        }
+
+        this.treeDetector = new TreeDetector(
+                this.leavesRequiredForTree,
+                this.maxLogBlocksAllowed,
+                ConfigurationManager.Setting.MAX_DETECTION_BLOCKS.getInt(),
+                ConfigurationManager.Setting.MAX_DETECTION_TIME.getInt(),
+                ConfigurationManager.Setting.ONLY_DETECT_LOGS_UPWARDS.getBoolean(),
+                ConfigurationManager.Setting.BREAK_ENTIRE_TREE_BASE.getBoolean(),
+                this.destroyLeaves,
+                this.leafSearchPool,
+                ConfigurationManager.Setting.PARALLEL_LEAF_SEARCH_THRESHOLD.getInt()
+        );
     }
 
     @Override
     public void disable() {
+        if (this.detectionExecutor != null) {
+            this.detectionExecutor.shutdownNow();
+            this.detectionExecutor = null;
+        }
 
+        if (this.leafSearchPool != null) {
+            this.leafSearchPool.shutdownNow();
+            this.leafSearchPool = null;
+        }
     }
 
     /**
@@ -68,222 +106,193 @@ public class TreeDetectionManager extends Manager {
      * @return A DetectedTree if one was found, otherwise null
      */
     public DetectedTree detectTree(Block initialBlock) {
-        TreeDefinitionManager treeDefinitionManager = this.plugin.getTreeDefinitionManager();
+        TreeDefinitionTable table = this.treeDefinitionManager.getTreeDefinitionTable();
+        if (table.getLogMask(CompatibleMaterial.getMaterial(initialBlock)).isEmpty())
+            return null;
 
-        TreeBlock initialTreeBlock = new TreeBlock(initialBlock, TreeBlockType.LOG);
-        TreeBlockSet<Block> detectedTreeBlocks = new TreeBlockSet<>(initialTreeBlock);
-        Set<TreeDefinition> possibleTreeDefinitions = this.treeDefinitionManager.getTreeDefinitionsForLog(initialBlock);
+        DetectedTree grownTree = this.detectGrownTree(initialBlock, table);
+        if (grownTree != null)
+            return grownTree;
 
-        if (possibleTreeDefinitions.isEmpty())
-            return null;
+        World world = initialBlock.getWorld();
+        TreeShape treeShape = this.treeDetector.detect(table, new WorldVoxelSource(world), this.placedBlockManager.getPlacedBlockFilter(world), initialBlock.getX(), initialBlock.getY(), initialBlock.getZ());
+        return this.toDetectedTree(initialBlock, treeShape);
+    }
 
-        // Detect tree trunk
-        List<Block> trunkBlocks = new ArrayList<>();
-        trunkBlocks.add(initialBlock);
-        Block targetBlock = initialBlock;
-        while (this.isValidLogType(possibleTreeDefinitions, null, (targetBlock = targetBlock.getRelative(BlockFace.UP)))) {
-            trunkBlocks.add(targetBlock);
-            possibleTreeDefinitions.retainAll(this.treeDefinitionManager.narrowTreeDefinition(possibleTreeDefinitions, targetBlock, TreeBlockType.LOG));
+    /**
+     * Detects a tree given an initial starting block without walking the world on the main thread
+     * The chunks around the block are captured as snapshots and searched on a worker thread,
+     * the result is then checked against the live world and completed on the main thread
+     *
+     * @param initialBlock The starting Block of the detection
+     * @return A CompletableFuture that completes on the main thread with a DetectedTree if one was found, otherwise null
+     */
+    public CompletableFuture<DetectedTree> detectTreeAsync(Block initialBlock) {
+        CompletableFuture<DetectedTree> future = new CompletableFuture<>();
+        TreeDefinitionTable table = this.treeDefinitionManager.getTreeDefinitionTable();
+        TreeDetector treeDetector = this.treeDetector;
+        int reach = treeDetector.getReach(table, CompatibleMaterial.getMaterial(initialBlock));
+        if (reach == 0) {
+            future.complete(null);
+            return future;
         }
 
-        if (!this.onlyBreakLogsUpwards) {
-            targetBlock = initialBlock;
-            while (this.isValidLogType(possibleTreeDefinitions, null, (targetBlock = targetBlock.getRelative(BlockFace.DOWN)))) {
-                trunkBlocks.add(targetBlock);
-                possibleTreeDefinitions.retainAll(this.treeDefinitionManager.narrowTreeDefinition(possibleTreeDefinitions, targetBlock, TreeBlockType.LOG));
-            }
+        // Known trees are cheap enough to check right away
+        DetectedTree grownTree = this.detectGrownTree(initialBlock, table);
+        if (grownTree != null) {
+            future.complete(grownTree);
+            return future;
         }
 
-        // Lowest blocks at the front of the list
-        Collections.reverse(trunkBlocks);
-
-        // Detect branches off the main trunk
-        for (Block trunkBlock : trunkBlocks)
-            this.recursiveBranchSearch(possibleTreeDefinitions, trunkBlocks, detectedTreeBlocks, trunkBlock, initialBlock.getLocation().getBlockY());
-
-        // Detect leaves off the trunk/branches
-        Set<ITreeBlock<Block>> branchBlocks = new HashSet<>(detectedTreeBlocks.getLogBlocks());
-        for (ITreeBlock<Block> branchBlock : branchBlocks)
-            this.recursiveLeafSearch(possibleTreeDefinitions, detectedTreeBlocks, branchBlock.getBlock(), new HashSet<>());
-
-        // Use the first tree definition in the set
-        TreeDefinition actualTreeDefinition = possibleTreeDefinitions.iterator().next();
-
-        // Trees need at least a certain number of leaves
-        if (detectedTreeBlocks.getLeafBlocks().size() < this.numLeavesRequiredForTree)
-            return null;
+        ExecutorService detectionExecutor = this.detectionExecutor;
+        if (detectionExecutor == null) {
+            future.complete(this.detectTree(initialBlock));
+            return future;
+        }
 
-        // Remove leaves if we don't care about the leaves
-        if (!this.destroyLeaves)
-            detectedTreeBlocks.removeAll(TreeBlockType.LEAF);
-
-        // Check that the tree isn't on the ground if enabled
-        if (this.entireTreeBase) {
-            Set<Block> groundBlocks = new HashSet<>();
-            for (ITreeBlock<Block> treeBlock : detectedTreeBlocks.getLogBlocks())
-                if (treeBlock != detectedTreeBlocks.getInitialLogBlock() && treeBlock.getLocation().getBlockY() == initialBlock.getLocation().getBlockY())
-                    groundBlocks.add(treeBlock.getBlock());
-
-            for (Block block : groundBlocks) {
-                Block blockBelow = block.getRelative(BlockFace.DOWN);
-                boolean blockBelowIsLog = this.isValidLogType(possibleTreeDefinitions, null, blockBelow);
-                boolean blockBelowIsSoil = false;
-                for (CompatibleMaterial material : treeDefinitionManager.getPlantableSoilMaterial(actualTreeDefinition)) {
-                    if (material.equals(CompatibleMaterial.getMaterial(blockBelow))) {
-                        blockBelowIsSoil = true;
-                        break;
-                    }
+        World world = initialBlock.getWorld();
+        int minHeight = ServerVersion.isServerVersionAtLeast(ServerVersion.V1_17) ? world.getMinHeight() : 0;
+        VoxelSource snapshotSource = SnapshotVoxelSource.capture(world, initialBlock.getX(), initialBlock.getZ(), reach, minHeight);
+        LongPredicate placedBlockFilter = this.placedBlockManager.snapshotPlacedBlockFilter(world);
+        try {
+            detectionExecutor.execute(() -> {
+                TreeShape treeShape;
+                try {
+                    treeShape = treeDetector.detect(table, snapshotSource, placedBlockFilter, initialBlock.getX(), initialBlock.getY(), initialBlock.getZ());
+                } catch (Exception ex) {
+                    this.completeSync(() -> future.completeExceptionally(ex));
+                    return;
                 }
 
-                if (blockBelowIsLog || blockBelowIsSoil)
-                    return null;
-            }
+                this.completeSync(() -> future.complete(this.revalidateTree(this.toDetectedTree(initialBlock, treeShape))));
+            });
+        } catch (RejectedExecutionException ex) {
+            future.complete(this.detectTree(initialBlock));
         }
 
-        return new DetectedTree(actualTreeDefinition, detectedTreeBlocks);
+        return future;
     }
 
     /**
-     * Recursively searches for branches off a given block
+     * Identifies the TreeDefinition of a tree from its base without detecting the entire tree
+     * The block below must be plantable soil, and enough leaves must be found near the trunk within a small search limit,
+     * leaves only reachable through branches are not searched for
      *
-     * @param treeDefinitions The possible tree definitions
-     * @param trunkBlocks     The tree trunk blocks
-     * @param treeBlocks      The detected tree blocks
-     * @param block           The next block to check for a branch
-     * @param startingBlockY  The Y coordinate of the initial block
+     * @param initialBlock The Block at the base of the tree
+     * @return The TreeDefinition of the tree if it looks like a natural tree, otherwise null
      */
-    private void recursiveBranchSearch(Set<TreeDefinition> treeDefinitions, List<Block> trunkBlocks, TreeBlockSet<Block> treeBlocks, Block block, int startingBlockY) {
-        for (Vector offset : this.onlyBreakLogsUpwards ? this.VALID_BRANCH_OFFSETS : this.VALID_TRUNK_OFFSETS) {
-            Block targetBlock = block.getRelative(offset.getBlockX(), offset.getBlockY(), offset.getBlockZ());
-            TreeBlock treeBlock = new TreeBlock(targetBlock, TreeBlockType.LOG);
-            if (this.isValidLogType(treeDefinitions, trunkBlocks, targetBlock) && !treeBlocks.contains(treeBlock)) {
-                treeBlocks.add(treeBlock);
-                treeDefinitions.retainAll(this.treeDefinitionManager.narrowTreeDefinition(treeDefinitions, targetBlock, TreeBlockType.LOG));
-                if (!this.onlyBreakLogsUpwards || targetBlock.getLocation().getBlockY() > startingBlockY)
-                    this.recursiveBranchSearch(treeDefinitions, trunkBlocks, treeBlocks, targetBlock, startingBlockY);
-            }
-        }
+    public TreeDefinition classifyTreeBase(Block initialBlock) {
+        World world = initialBlock.getWorld();
+        return this.treeDetector.classifyBase(this.treeDefinitionManager.getTreeDefinitionTable(), new WorldVoxelSource(world), this.placedBlockManager.getPlacedBlockFilter(world),
+                initialBlock.getX(), initialBlock.getY(), initialBlock.getZ());
     }
 
     /**
-     * Recursively searches for leaves that are next to this tree
+     * Builds a tree from the stored shape of a tree that grew from a sapling
+     * Every stored block is checked against the world, if anything changed the shape is forgotten and null is returned
+     * Only trees chopped at their lowest logs are built this way, anything else needs to be detected normally
      *
-     * @param treeDefinitions The possible tree definitions
-     * @param treeBlocks      The detected tree blocks
-     * @param block           The next block to check for a leaf
+     * @param initialBlock The starting Block of the detection
+     * @param table        The TreeDefinitionTable to check the blocks with
+     * @return A DetectedTree if the stored shape is still valid, otherwise null
      */
-    private void recursiveLeafSearch(Set<TreeDefinition> treeDefinitions, TreeBlockSet<Block> treeBlocks, Block block, Set<Block> visitedBlocks) {
-        boolean detectLeavesDiagonally = treeDefinitions.stream().anyMatch(TreeDefinition::shouldDetectLeavesDiagonally);
+    private DetectedTree detectGrownTree(Block initialBlock, TreeDefinitionTable table) {
+        GrownTreeManager grownTreeManager = this.plugin.getGrownTreeManager();
+        GrownTree grownTree = grownTreeManager.getGrownTree(initialBlock);
+        if (grownTree == null)
+            return null;
 
-        for (Vector offset : !detectLeavesDiagonally ? this.VALID_LEAF_OFFSETS : this.VALID_TRUNK_OFFSETS) {
-            Block targetBlock = block.getRelative(offset.getBlockX(), offset.getBlockY(), offset.getBlockZ());
-            if (visitedBlocks.contains(targetBlock))
-                continue;
+        long[] logKeys = grownTree.getLogs();
+        if (BlockKey.getY(grownTree.getBase()) != initialBlock.getY() || (this.maxLogBlocksAllowed > 0 && logKeys.length > this.maxLogBlocksAllowed))
+            return null;
 
-            visitedBlocks.add(targetBlock);
-            TreeBlock treeBlock = new TreeBlock(targetBlock, TreeBlockType.LEAF);
-            if (this.isValidLeafType(treeDefinitions, treeBlocks, targetBlock) && !treeBlocks.contains(treeBlock) && !this.doesLeafBorderInvalidLog(treeDefinitions, treeBlocks, targetBlock)) {
-                treeBlocks.add(treeBlock);
-                treeDefinitions.retainAll(this.treeDefinitionManager.narrowTreeDefinition(treeDefinitions, targetBlock, TreeBlockType.LEAF));
-                this.recursiveLeafSearch(treeDefinitions, treeBlocks, targetBlock, visitedBlocks);
-            }
+        World world = initialBlock.getWorld();
+        TreeShape treeShape = this.treeDetector.validate(table, new WorldVoxelSource(world), this.placedBlockManager.getPlacedBlockFilter(world), BlockKey.pack(initialBlock), logKeys, grownTree.getLeaves());
+        if (treeShape == null) {
+            grownTreeManager.invalidate(initialBlock);
+            return null;
         }
+
+        return this.toDetectedTree(initialBlock, treeShape);
     }
 
     /**
-     * Checks if a leaf is bordering a log that isn't part of this tree
+     * Turns a TreeShape into a DetectedTree of live blocks
      *
-     * @param treeDefinitions The possible tree definitions
-     * @param treeBlocks      The detected tree blocks
-     * @param block           The block to check
-     * @return True if the leaf borders an invalid log, otherwise false
+     * @param initialBlock The starting Block of the detection
+     * @param treeShape    The TreeShape to convert, may be null
+     * @return A DetectedTree, or null if no TreeShape was given
      */
-    private boolean doesLeafBorderInvalidLog(Set<TreeDefinition> treeDefinitions, TreeBlockSet<Block> treeBlocks, Block block) {
-        for (Vector offset : this.VALID_TRUNK_OFFSETS) {
-            Block targetBlock = block.getRelative(offset.getBlockX(), offset.getBlockY(), offset.getBlockZ());
-            if (this.isValidLogType(treeDefinitions, null, targetBlock) && !treeBlocks.contains(new TreeBlock(targetBlock, TreeBlockType.LOG)))
-                return true;
-        }
-        return false;
+    private DetectedTree toDetectedTree(Block initialBlock, TreeShape treeShape) {
+        if (treeShape == null)
+            return null;
+
+        World world = initialBlock.getWorld();
+        TreeBlockSet<Block> detectedTreeBlocks = new TreeBlockSet<>(new TreeBlock(initialBlock, TreeBlockType.LOG));
+        long[] logs = treeShape.getLogs();
+        for (int i = 1; i < logs.length; i++)
+            detectedTreeBlocks.add(new TreeBlock(world.getBlockAt(BlockKey.getX(logs[i]), BlockKey.getY(logs[i]), BlockKey.getZ(logs[i])), TreeBlockType.LOG));
+        for (long key : treeShape.getLeaves())
+            detectedTreeBlocks.add(new TreeBlock(world.getBlockAt(BlockKey.getX(key), BlockKey.getY(key), BlockKey.getZ(key)), TreeBlockType.LEAF));
+
+        return new DetectedTree(treeShape.getTreeDefinition(), detectedTreeBlocks, treeShape.isTruncated(), treeShape.getUnexploredBlocks());
     }
 
     /**
-     * Checks if a given block is valid for the given TreeDefinitions
+     * Removes any blocks from a tree detected off of the main thread that no longer match the live world
+     * The initial log is always kept since it may have already been broken by the player
      *
-     * @param treeDefinitions The Set of TreeDefinitions to compare against
-     * @param trunkBlocks     The trunk blocks of the tree for checking the distance
-     * @param block           The Block to check
-     * @return True if the block is a valid log type, otherwise false
+     * @param detectedTree The DetectedTree to check, may be null
+     * @return The same DetectedTree, or null if none was given or what is left of it is no longer a tree
      */
-    private boolean isValidLogType(Set<TreeDefinition> treeDefinitions, List<Block> trunkBlocks, Block block) {
-        // Check if block is placed
-        if (this.placedBlockManager.isBlockPlaced(block))
-            return false;
-
-        // Check if it matches the tree definition
-        boolean isCorrectType = false;
-        for (TreeDefinition treeDefinition : treeDefinitions) {
-            for (CompatibleMaterial material : treeDefinition.getLogMaterial()) {
-                if (material.equals(CompatibleMaterial.getMaterial(block))) {
-                    isCorrectType = true;
-                    break;
-                }
-            }
-        }
+    private DetectedTree revalidateTree(DetectedTree detectedTree) {
+        if (detectedTree == null)
+            return null;
+
+        TreeAnimationManager treeAnimationManager = this.plugin.getTreeAnimationManager();
+        TreeDefinition treeDefinition = detectedTree.getTreeDefinition();
+        TreeBlockSet<Block> detectedTreeBlocks = detectedTree.getDetectedTreeBlocks();
+
+        List<ITreeBlock<Block>> invalidTreeBlocks = new ArrayList<>();
+        for (ITreeBlock<Block> treeBlock : detectedTreeBlocks.getAllTreeBlocks()) {
+            if (treeBlock == detectedTreeBlocks.getInitialLogBlock())
+                continue;
 
-        if (!isCorrectType)
-            return false;
-
-        // Check that it is close enough to the trunk
-        if (trunkBlocks == null || trunkBlocks.isEmpty())
-            return true;
-
-        Location location = block.getLocation();
-        for (TreeDefinition treeDefinition : treeDefinitions) {
-            double maxDistance = treeDefinition.getMaxLogDistanceFromTrunk() * treeDefinition.getMaxLogDistanceFromTrunk();
-            if (!this.onlyBreakLogsUpwards) // Help detect logs more often if the tree isn't broken at the base
-                maxDistance *= 1.5;
-            for (Block trunkBlock : trunkBlocks)
-                if (location.distanceSquared(trunkBlock.getLocation()) < maxDistance)
-                    return true;
+            Block block = treeBlock.getBlock();
+            Set<CompatibleMaterial> validMaterials = treeBlock.getTreeBlockType() == TreeBlockType.LOG ? treeDefinition.getLogMaterial() : treeDefinition.getLeafMaterial();
+            if (!validMaterials.contains(CompatibleMaterial.getMaterial(block)) || this.placedBlockManager.isBlockPlaced(block) || treeAnimationManager.isBlockInAnimation(block))
+                invalidTreeBlocks.add(treeBlock);
         }
 
-        return false;
+        if (invalidTreeBlocks.isEmpty())
+            return detectedTree;
+
+        // Another animation may have taken the tree while it was being detected, it must not be toppled a second time
+        if (treeAnimationManager.isBlockInAnimation(detectedTreeBlocks.getInitialLogBlock().getBlock()))
+            return null;
+
+        // Truncated trees may have been detected with fewer leaves than required, only a drop caused by the removed blocks counts
+        int logCount = detectedTreeBlocks.getLogBlocks().size();
+        int leafCount = detectedTreeBlocks.getLeafBlocks().size();
+        for (ITreeBlock<Block> treeBlock : invalidTreeBlocks)
+            detectedTreeBlocks.remove(treeBlock);
+
+        if (logCount > 1 && detectedTreeBlocks.getLogBlocks().size() <= 1)
+            return null;
+        if (this.destroyLeaves && leafCount >= this.leavesRequiredForTree && detectedTreeBlocks.getLeafBlocks().size() < this.leavesRequiredForTree)
+            return null;
+
+        return detectedTree;
     }
 
     /**
-     * Checks if a given block is valid for the given TreeDefinitions
+     * Runs a task on the main thread as long as the plugin is still enabled
      *
-     * @param treeDefinitions The Set of TreeDefinitions to compare against
-     * @param treeBlocks      The detected blocks of the tree for checking leaf distance
-     * @param block           The Block to check
-     * @return True if the block is a valid log type, otherwise false
+     * @param runnable The task to run
      */
-    private boolean isValidLeafType(Set<TreeDefinition> treeDefinitions, TreeBlockSet<Block> treeBlocks, Block block) {
-        // Check if block is placed
-        if (this.placedBlockManager.isBlockPlaced(block))
-            return false;
-
-        // Check if it matches the tree definition
-        boolean isCorrectType = false;
-        for (TreeDefinition treeDefinition : treeDefinitions) {
-            for (CompatibleMaterial material : treeDefinition.getLeafMaterial()) {
-                if (material.equals(CompatibleMaterial.getMaterial(block))) {
-                    isCorrectType = true;
-                    break;
-                }
-            }
-        }
-
-        if (!isCorrectType)
-            return false;
-
-        // Check that it is close enough to a log
-        if (treeBlocks == null || treeBlocks.isEmpty())
-            return true;
-
-        int maxDistanceFromLog = treeDefinitions.stream().map(TreeDefinition::getMaxLeafDistanceFromLog).max(Integer::compareTo).orElse(0);
-        return treeBlocks.getLogBlocks().stream().anyMatch(x -> x.getLocation().distanceSquared(block.getLocation()) < maxDistanceFromLog * maxDistanceFromLog);
+    private void completeSync(Runnable runnable) {
+        if (this.plugin.isEnabled())
+            Bukkit.getScheduler().runTask(this.plugin, runnable);
     }
 
 }
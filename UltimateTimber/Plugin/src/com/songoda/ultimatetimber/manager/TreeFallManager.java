@@ -10,14 +10,17 @@ import com.songoda.ultimatetimber.UltimateTimber;
 import com.songoda.ultimatetimber.events.TreeFallEvent;
 import com.songoda.ultimatetimber.events.TreeFellEvent;
 import com.songoda.ultimatetimber.misc.OnlyToppleWhile;
+import com.songoda.ultimatetimber.tree.ChopContext;
 import com.songoda.ultimatetimber.tree.DetectedTree;
 import com.songoda.ultimatetimber.tree.ITreeBlock;
+import com.songoda.ultimatetimber.tree.TreeBlock;
+import com.songoda.ultimatetimber.tree.TreeBlockType;
 import com.songoda.ultimatetimber.tree.TreeBlockSet;
+import com.songoda.ultimatetimber.tree.TreeDefinition;
 import org.bukkit.Bukkit;
 import org.bukkit.GameMode;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
-import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -25,14 +28,20 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 
 public class TreeFallManager extends Manager implements Listener {
 
     private int maxLogBlocksAllowed;
+    private final Set<UUID> detectingPlayers;
 
     public TreeFallManager(UltimateTimber ultimateTimber) {
         super(ultimateTimber);
+        this.detectingPlayers = new HashSet<>();
         Bukkit.getPluginManager().registerEvents(this, ultimateTimber);
     }
 
@@ -43,7 +52,7 @@ public class TreeFallManager extends Manager implements Listener {
 
     @Override
     public void disable() {
-
+        this.detectingPlayers.clear();
     }
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
@@ -85,6 +94,10 @@ public class TreeFallManager extends Manager implements Listener {
         if (choppingManager.isInCooldown(player))
             isValid = false;
 
+        // A player only has one tree detected at a time, anything they break in the meantime breaks normally
+        if (this.detectingPlayers.contains(player.getUniqueId()))
+            isValid = false;
+
         if (treeAnimationManager.isBlockInAnimation(block)) {
             isValid = false;
             event.setCancelled(true);
@@ -97,26 +110,69 @@ public class TreeFallManager extends Manager implements Listener {
                 && !McMMOHook.isUsingTreeFeller(player))
             isValid = false;
 
-        boolean alwaysReplantSapling = ConfigurationManager.Setting.ALWAYS_REPLANT_SAPLING.getBoolean();
-        if (!isValid && !alwaysReplantSapling)
+        if (!isValid) {
+            if (ConfigurationManager.Setting.ALWAYS_REPLANT_SAPLING.getBoolean() && ConfigurationManager.Setting.REPLANT_SAPLINGS.getBoolean()) {
+                // Only the tree definition is needed to replant, so skip detecting the entire tree
+                TreeDefinition treeDefinition = treeDetectionManager.classifyTreeBase(block);
+                if (treeDefinition != null)
+                    Bukkit.getScheduler().scheduleSyncDelayedTask(this.plugin, () ->
+                            saplingManager.replantSapling(treeDefinition, new TreeBlock(block, TreeBlockType.LOG)));
+            }
+            return;
+        }
+
+        // Everything about the player and their tool is looked up once here instead of for every block of the tree
+        ChopContext chopContext = choppingManager.createChopContext(player, tool);
+
+        // The block breaks normally while the rest of the tree is detected
+        if (ConfigurationManager.Setting.ASYNC_TREE_DETECTION.getBoolean()) {
+            CompatibleHand hand = CompatibleHand.getHand(event);
+            UUID uuid = player.getUniqueId();
+            this.detectingPlayers.add(uuid);
+            treeDetectionManager.detectTreeAsync(block).whenComplete((detectedTree, ex) -> {
+                this.detectingPlayers.remove(uuid);
+                if (ex != null) {
+                    this.plugin.getLogger().log(Level.SEVERE, "Failed to detect a tree", ex);
+                    return;
+                }
+
+                // The player may have toppled another tree while this one was being detected
+                if (detectedTree != null && player.isOnline() && !choppingManager.isInCooldown(player))
+                    this.toppleTree(null, chopContext, hand.getItem(player), detectedTree);
+            });
             return;
+        }
 
         DetectedTree detectedTree = treeDetectionManager.detectTree(block);
         if (detectedTree == null)
             return;
 
-        if (alwaysReplantSapling) {
+        this.toppleTree(event, chopContext, tool, detectedTree);
+    }
+
+    /**
+     * Topples a detected tree if all remaining conditions pass
+     *
+     * @param event        The BlockBreakEvent that initiated the topple, or null if the block was already broken
+     * @param chopContext  The ChopContext of the Player toppling the tree
+     * @param tool         The tool the Player is using, damage is applied to it
+     * @param detectedTree The DetectedTree to topple
+     */
+    private void toppleTree(BlockBreakEvent event, ChopContext chopContext, ItemStack tool, DetectedTree detectedTree) {
+        Player player = chopContext.getPlayer();
+        TreeDefinitionManager treeDefinitionManager = this.plugin.getTreeDefinitionManager();
+        TreeAnimationManager treeAnimationManager = this.plugin.getTreeAnimationManager();
+        ChoppingManager choppingManager = this.plugin.getChoppingManager();
+        SaplingManager saplingManager = this.plugin.getSaplingManager();
+
+        if (ConfigurationManager.Setting.ALWAYS_REPLANT_SAPLING.getBoolean())
             Bukkit.getScheduler().scheduleSyncDelayedTask(this.plugin, () ->
                     saplingManager.replantSapling(detectedTree.getTreeDefinition(), detectedTree.getDetectedTreeBlocks().getInitialLogBlock()));
 
-            if (!isValid)
-                return;
-        }
-
         if (!treeDefinitionManager.isToolValidForTreeDefinition(detectedTree.getTreeDefinition(), tool))
             return;
 
-        short toolDamage = this.getToolDamage(detectedTree.getDetectedTreeBlocks(), tool.containsEnchantment(Enchantment.SILK_TOUCH));
+        short toolDamage = this.getToolDamage(detectedTree.getDetectedTreeBlocks(), chopContext.hasSilkTouch());
         if (ConfigurationManager.Setting.PROTECT_TOOL.getBoolean() && !ItemUtils.hasEnoughDurability(tool, toolDamage)) {
             return;
         }
@@ -128,19 +184,24 @@ public class TreeFallManager extends Manager implements Listener {
             return;
 
         // Valid tree and meets all conditions past this point
-        event.setCancelled(true);
+        if (event != null) {
+            event.setCancelled(true);
+        } else {
+            // The initiated block was already broken while the tree was being detected
+            detectedTree.getDetectedTreeBlocks().remove(detectedTree.getDetectedTreeBlocks().getInitialLogBlock());
+        }
 
         detectedTree.getDetectedTreeBlocks().sortAndLimit(maxLogBlocksAllowed);
 
         choppingManager.cooldownPlayer(player);
 
         // Destroy initiated block if enabled
-        if (ConfigurationManager.Setting.DESTROY_INITIATED_BLOCK.getBoolean()) {
+        if (event != null && ConfigurationManager.Setting.DESTROY_INITIATED_BLOCK.getBoolean()) {
             detectedTree.getDetectedTreeBlocks().getInitialLogBlock().getBlock().setType(Material.AIR);
             detectedTree.getDetectedTreeBlocks().remove(detectedTree.getDetectedTreeBlocks().getInitialLogBlock());
         }
 
-        boolean isCreative = player.getGameMode().equals(GameMode.CREATIVE);
+        boolean isCreative = chopContext.isCreative();
 
         if (!isCreative) {
             new SItemStack(tool).addDamage(player, toolDamage, true);
@@ -158,8 +219,8 @@ public class TreeFallManager extends Manager implements Listener {
         for (ITreeBlock<Block> treeBlock : detectedTree.getDetectedTreeBlocks().getAllTreeBlocks())
             LogManager.logRemoval(player, treeBlock.getBlock());
 
-        treeAnimationManager.runAnimation(detectedTree, player);
-        treeDefinitionManager.dropTreeLoot(detectedTree.getTreeDefinition(), detectedTree.getDetectedTreeBlocks().getInitialLogBlock(), player, false, true);
+        treeAnimationManager.runAnimation(detectedTree, chopContext);
+        treeDefinitionManager.dropTreeLoot(detectedTree.getTreeDefinition(), detectedTree.getDetectedTreeBlocks().getInitialLogBlock(), chopContext, true);
 
         // Trigger fell event
         TreeFellEvent treeFellEvent = new TreeFellEvent(player, detectedTree);
@@ -5,8 +5,10 @@ import com.songoda.core.compatibility.ServerVersion;
 import com.songoda.ultimatetimber.tree.ITreeBlock;
 import org.bukkit.Location;
 import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.FallingBlock;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.Vector;
 
 import java.util.Collection;
 import java.util.HashSet;
@@ -27,6 +29,11 @@ public class BlockUtils {
             if (material == null)
                 return drops;
             drops.add(material.getItem());
+        } else if (treeBlock.getBlock() instanceof BlockData) {
+            CompatibleMaterial material = CompatibleMaterial.getMaterial(((BlockData) treeBlock.getBlock()).getMaterial());
+            if (material == null || material.isAir())
+                return drops;
+            drops.add(material.getItem());
         }
         return drops;
     }
@@ -40,10 +47,25 @@ public class BlockUtils {
         return location.getWorld().spawnFallingBlock(location, material.getMaterial(), material.getData());
     }
 
-    public static void configureFallingBlock(FallingBlock fallingBlock) {
-        toggleGravityFallingBlock(fallingBlock, false);
+    /**
+     * Spawns a falling block and configures it right away
+     * Everything is set in the same tick it spawns, so it takes effect before the falling block first moves
+     * Players near it still get the settings as metadata and velocity updates after the spawn packet
+     *
+     * @param location The location to spawn the falling block at
+     * @param material The material of the falling block
+     * @param velocity The initial velocity of the falling block
+     * @param applyGravity If the falling block should be affected by gravity
+     * @return The spawned falling block
+     */
+    public static FallingBlock spawnFallingBlock(Location location, CompatibleMaterial material, Vector velocity, boolean applyGravity) {
+        FallingBlock fallingBlock = spawnFallingBlock(location, material);
+        toggleGravityFallingBlock(fallingBlock, applyGravity);
         fallingBlock.setDropItem(false);
         fallingBlock.setHurtEntities(false);
+        if (velocity.lengthSquared() != 0)
+            fallingBlock.setVelocity(velocity);
+        return fallingBlock;
     }
 
 }
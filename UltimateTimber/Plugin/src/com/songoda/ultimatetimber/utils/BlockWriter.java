@@ -0,0 +1,120 @@
+package com.songoda.ultimatetimber.utils;
+
+import com.songoda.ultimatetimber.tree.TreeBlock;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Collects the tree blocks removed by a tree animation and removes them all at once
+ * Blocks are removed grouped by chunk section with physics turned off, only the blocks at the edge of the removed
+ * area are removed with physics so their neighbours still get a single update
+ */
+public class BlockWriter {
+
+    private static final BlockFace[] NEIGHBOUR_FACES = { BlockFace.UP, BlockFace.DOWN, BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST };
+    private static final Comparator<TreeBlock> SECTION_ORDER = Comparator.comparingLong(BlockWriter::getSectionKey);
+
+    private final boolean vanillaBlockUpdates;
+    private final List<TreeBlock> pendingBlocks;
+    private final LongHashSet pendingKeys;
+
+    public BlockWriter(boolean vanillaBlockUpdates) {
+        this.vanillaBlockUpdates = vanillaBlockUpdates;
+        this.pendingBlocks = new ArrayList<>();
+        this.pendingKeys = new LongHashSet();
+    }
+
+    /**
+     * Queues a tree block to be removed on the next flush
+     *
+     * @param treeBlock The tree block to remove
+     */
+    public void removeBlock(TreeBlock treeBlock) {
+        if (this.pendingKeys.add(treeBlock.getKey()))
+            this.pendingBlocks.add(treeBlock);
+    }
+
+    /**
+     * Checks if a tree block is already waiting to be removed
+     *
+     * @param key The packed block key of the tree block
+     * @return True if the tree block is queued for the next flush, otherwise false
+     */
+    public boolean isQueued(long key) {
+        return this.pendingKeys.contains(key);
+    }
+
+    /**
+     * Checks if there are any blocks waiting to be removed
+     *
+     * @return True if there are blocks waiting to be removed, otherwise false
+     */
+    public boolean isEmpty() {
+        return this.pendingBlocks.isEmpty();
+    }
+
+    /**
+     * Removes all queued blocks from the world
+     *
+     * @param removedCallback Called for each removed tree block once every block has been removed
+     */
+    public void flush(Consumer<TreeBlock> removedCallback) {
+        if (this.pendingBlocks.isEmpty())
+            return;
+
+        if (this.vanillaBlockUpdates) {
+            for (TreeBlock treeBlock : this.pendingBlocks)
+                treeBlock.getBlock().setType(Material.AIR);
+        } else {
+            this.pendingBlocks.sort(SECTION_ORDER);
+
+            // Blocks touching something that isn't being removed have to update their neighbours, so they go last
+            List<Block> edgeBlocks = new ArrayList<>();
+            for (TreeBlock treeBlock : this.pendingBlocks) {
+                Block block = treeBlock.getBlock();
+                if (this.isEdgeBlock(block)) {
+                    edgeBlocks.add(block);
+                } else {
+                    block.setType(Material.AIR, false);
+                }
+            }
+
+            for (Block block : edgeBlocks)
+                block.setType(Material.AIR, true);
+        }
+
+        List<TreeBlock> removedBlocks = new ArrayList<>(this.pendingBlocks);
+        this.pendingBlocks.clear();
+        this.pendingKeys.clear();
+
+        for (TreeBlock treeBlock : removedBlocks)
+            removedCallback.accept(treeBlock);
+    }
+
+    /**
+     * Checks if a block has a neighbour that isn't air and isn't being removed with it
+     *
+     * @param block The block to check
+     * @return True if the block is at the edge of the removed area, otherwise false
+     */
+    private boolean isEdgeBlock(Block block) {
+        for (BlockFace face : NEIGHBOUR_FACES) {
+            Block neighbour = block.getRelative(face);
+            if (!this.pendingKeys.contains(BlockKey.pack(neighbour)) && neighbour.getType() != Material.AIR)
+                return true;
+        }
+        return false;
+    }
+
+    private static long getSectionKey(TreeBlock treeBlock) {
+        long key = treeBlock.getKey();
+        return BlockKey.pack(BlockKey.getX(key) >> 4, BlockKey.getY(key) >> 4, BlockKey.getZ(key) >> 4);
+    }
+
+}
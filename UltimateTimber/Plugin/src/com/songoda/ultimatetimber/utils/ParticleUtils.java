@@ -22,6 +22,8 @@ public class ParticleUtils {
                 blockData = ((Block) treeBlock.getBlock()).getBlockData();
             } else if (treeBlock.getBlock() instanceof FallingBlock) {
                 blockData = ((FallingBlock) treeBlock.getBlock()).getBlockData();
+            } else if (treeBlock.getBlock() instanceof BlockData) {
+                blockData = (BlockData) treeBlock.getBlock();
             } else return;
 
             Location location = treeBlock.getLocation().clone().add(0.5, 0.5, 0.5);
@@ -48,6 +50,8 @@ public class ParticleUtils {
                 blockData = ((Block) treeBlock.getBlock()).getBlockData();
             } else if (treeBlock.getBlock() instanceof FallingBlock) {
                 blockData = ((FallingBlock) treeBlock.getBlock()).getBlockData();
+            } else if (treeBlock.getBlock() instanceof BlockData) {
+                blockData = (BlockData) treeBlock.getBlock();
             } else return;
 
             Location location = treeBlock.getLocation().clone().add(0.5, 0.5, 0.5);